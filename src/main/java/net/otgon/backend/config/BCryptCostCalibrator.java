@@ -0,0 +1,47 @@
+package net.otgon.backend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the BCrypt cost for this machine at startup.
+ * Each cost step doubles the work, so one cheap measurement at a probe cost
+ * is enough to extrapolate the highest cost that stays within the target.
+ */
+public final class BCryptCostCalibrator {
+
+    private static final Logger log = LoggerFactory.getLogger(BCryptCostCalibrator.class);
+
+    private static final int PROBE_COST = 8;
+    private static final int PROBE_RUNS = 3;
+
+    private BCryptCostCalibrator() {
+    }
+
+    public static int calibrate(long targetMs, int minCost, int maxCost) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(PROBE_COST);
+        probe.encode("calibration-warmup");
+
+        // Fastest run is the least disturbed by JIT and other startup work
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_RUNS; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration-probe");
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        int cost = costFor(targetMs, bestNanos / 1e6, minCost, maxCost);
+        log.info("BCrypt cost calibrated to {} (probe cost {} took {} ms, target {} ms)",
+                cost, PROBE_COST, String.format("%.2f", bestNanos / 1e6), targetMs);
+        return cost;
+    }
+
+    static int costFor(long targetMs, double probeMs, int minCost, int maxCost) {
+        if (probeMs <= 0) {
+            return maxCost;
+        }
+        int cost = PROBE_COST + (int) Math.floor(Math.log(targetMs / probeMs) / Math.log(2));
+        return Math.max(minCost, Math.min(maxCost, cost));
+    }
+}
@@ -0,0 +1,35 @@
+package net.otgon.backend.config;
+
+import net.otgon.backend.service.LoopbackInvalidationTransport;
+import net.otgon.backend.service.PostgresInvalidationTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Transport for cross-node cache invalidation (cache.invalidation.transport):
+ * postgres (default) uses LISTEN/NOTIFY on the primary, loopback only reaches
+ * application contexts in the same JVM, none turns invalidation off.
+ */
+@Configuration
+public class CacheInvalidationConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "cache.invalidation.transport", havingValue = "postgres", matchIfMissing = true)
+    public PostgresInvalidationTransport postgresInvalidationTransport(
+            JdbcTemplate jdbcTemplate,
+            @Value("${cache.invalidation.channel:cache_invalidation}") String channel,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username:}") String username,
+            @Value("${spring.datasource.password:}") String password) {
+        return new PostgresInvalidationTransport(jdbcTemplate, channel, url, username, password);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "cache.invalidation.transport", havingValue = "loopback")
+    public LoopbackInvalidationTransport loopbackInvalidationTransport() {
+        return new LoopbackInvalidationTransport();
+    }
+}
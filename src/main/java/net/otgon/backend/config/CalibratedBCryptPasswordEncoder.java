@@ -0,0 +1,42 @@
+package net.otgon.backend.config;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder that asks for a rehash only when a stored hash is cheaper
+ * than this node's cost. Each node calibrates on its own hardware, so costs
+ * differ across a fleet; downgrading too would rehash and write on nearly
+ * every login as a rider's requests move between nodes. Unlike the stock
+ * encoder, a hash that is not BCrypt is left alone rather than rejected.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        Integer cost = costOf(encodedPassword);
+        return cost != null && cost < strength;
+    }
+
+    // $2a$12$<salt+hash>
+    static Integer costOf(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return null;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.otgon.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.Filter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time a request spends inside a security filter chain,
+ * from the first security filter until it is handed to the dispatcher.
+ * Published as security.filterchain.duration tagged with the chain name.
+ */
+public class FilterChainTimer {
+
+    private static final String START_ATTRIBUTE = FilterChainTimer.class.getName() + ".start";
+
+    private final Timer timer;
+
+    public FilterChainTimer(MeterRegistry meterRegistry, String chain) {
+        this.timer = Timer.builder("security.filterchain.duration")
+                .description("Time spent in the security filter chain before dispatch")
+                .tag("chain", chain)
+                .register(meterRegistry);
+    }
+
+    // Placed before the first filter of the chain
+    public Filter startFilter() {
+        return (request, response, chain) -> {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            chain.doFilter(request, response);
+        };
+    }
+
+    // Placed after the last filter of the chain
+    public Filter stopFilter() {
+        return (request, response, chain) -> {
+            Object start = request.getAttribute(START_ATTRIBUTE);
+            if (start instanceof Long startNanos) {
+                timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                request.removeAttribute(START_ATTRIBUTE);
+            }
+            chain.doFilter(request, response);
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package net.otgon.backend.config;
+
+import net.otgon.backend.service.ReadYourWrites;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions and card reads allowed by {@link ReadYourWrites}
+ * to the replica, everything else to the primary. The route is chosen when a
+ * connection is taken, so this must sit behind a LazyConnectionDataSourceProxy:
+ * a transaction's read-only flag is only set after it has asked for one.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route { PRIMARY, REPLICA }
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !readOnly) {
+            return Route.PRIMARY;
+        }
+        if (readYourWrites.pinnedToPrimary()) {
+            return Route.PRIMARY;
+        }
+        return readOnly || readYourWrites.replicaAllowed() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
@@ -0,0 +1,71 @@
+package net.otgon.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import net.otgon.backend.service.ReadYourWrites;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Primary and replica connection pools behind a {@link ReadWriteRoutingDataSource}.
+ * Only active when datasource.replica.url is set; otherwise Boot builds the
+ * single spring.datasource pool as before. The primary pool is configured by
+ * spring.datasource.* as usual, the replica pool by datasource.replica.* and
+ * datasource.replica.hikari.*. Flyway migrates the primary directly.
+ *
+ * Routing is decided per connection, so it needs spring.jpa.open-in-view=false:
+ * with it on, a request holds the first connection it takes for all of its
+ * transactions, and a read-write one can end up on the replica.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReadYourWrites readYourWrites,
+                                 @Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+        if (openInView) {
+            throw new IllegalStateException("datasource.replica.url requires spring.jpa.open-in-view=false");
+        }
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, readYourWrites));
+    }
+}
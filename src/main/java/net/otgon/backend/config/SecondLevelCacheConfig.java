@@ -0,0 +1,85 @@
+package net.otgon.backend.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level cache, held in-process by Caffeine through JCache.
+ * Every region is declared here with a size bound and a TTL
+ * (cache.l2.&lt;region&gt;.max-size / ttl-seconds); an entity mapped to a region
+ * not listed fails at startup instead of getting an unbounded cache.
+ *
+ * Only rarely changing rows are cached: users, the username -> id natural-id
+ * lookup, and devices. Cards are not: the balance changes on every ride and
+ * is always read from the database, under the row lock when it is changed.
+ *
+ * Each region reports cache.gets/puts/evictions and cache.hit.ratio, tagged
+ * with its name. Turned off by hibernate.cache.use_second_level_cache=false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache",
+        havingValue = "true", matchIfMissing = true)
+public class SecondLevelCacheConfig {
+
+    private static final String USERS = "users";
+    private static final String USERS_BY_USERNAME = "users-by-username";
+    private static final String DEVICES = "devices";
+
+    // Region -> default max size and TTL in seconds
+    private static final Map<String, long[]> REGIONS = Map.of(
+            USERS, new long[]{100_000, 600},
+            USERS_BY_USERNAME, new long[]{100_000, 600},
+            DEVICES, new long[]{100_000, 600});
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(Environment env, MeterRegistry meterRegistry) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager();
+        REGIONS.forEach((region, defaults) -> {
+            long maxSize = env.getProperty("cache.l2." + region + ".max-size", Long.class, defaults[0]);
+            long ttlSeconds = env.getProperty("cache.l2." + region + ".ttl-seconds", Long.class, defaults[1]);
+
+            CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+            config.setMaximumSize(OptionalLong.of(maxSize));
+            config.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            config.setNativeStatisticsEnabled(true);
+
+            // The provider's manager is per JVM: a previous application context may have left the region
+            if (cacheManager.getCache(region) != null) {
+                cacheManager.destroyCache(region);
+            }
+            Cache<?, ?> nativeCache = cacheManager.createCache(region, config).unwrap(Cache.class);
+            CaffeineCacheMetrics.monitor(meterRegistry, nativeCache, region);
+            Gauge.builder("cache.hit.ratio", nativeCache, c -> c.stats().hitRate())
+                    .tag("cache", region)
+                    .description("Share of lookups answered by the cache")
+                    .register(meterRegistry);
+        });
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheProperties(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put("hibernate.javax.cache.cache_manager", secondLevelCacheManager);
+            properties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+        };
+    }
+}
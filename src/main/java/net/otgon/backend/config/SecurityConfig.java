@@ -1,37 +1,66 @@
 package net.otgon.backend.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.session.DisableEncodeUrlFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // NFC payment endpoints authenticate by device signature, not by JWT
+    private static final String[] PAYMENT_ENDPOINTS = {"/api/wallet/redeem"};
+
+    // Stored hashes look like {bcrypt}$2a$12$...
+    public static final String PASSWORD_ENCODER_ID = "bcrypt";
+
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
     
     // Read active profile to determine CORS settings
     @Value("${spring.profiles.active:local}")
     private String activeProfile;
 
+    // Cost is measured on this machine unless auth.password.bcrypt-strength pins it
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.password.bcrypt-strength:0}") int fixedStrength,
+                                           @Value("${auth.password.target-ms:250}") long targetMs,
+                                           @Value("${auth.password.min-strength:10}") int minStrength,
+                                           @Value("${auth.password.max-strength:14}") int maxStrength) {
+        int strength = fixedStrength > 0
+                ? fixedStrength
+                : BCryptCostCalibrator.calibrate(targetMs, minStrength, maxStrength);
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(PASSWORD_ENCODER_ID,
+                Map.of(PASSWORD_ENCODER_ID, new CalibratedBCryptPasswordEncoder(strength)));
+        // Rows written before encoder ids existed are plain BCrypt; they get rehashed on next login
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
     }
 
     @Bean
@@ -59,24 +88,69 @@ public class SecurityConfig {
         return source;
     }
 
+    // The JWT filter is a @Component, so Boot would also register it as a plain servlet filter
+    // that runs for every request, redeem included. It only belongs inside the default chain.
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration(
+            JwtAuthenticationFilter filter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    /**
+     * Minimal chain for the NFC payment path. Redeem requests are verified by device
+     * signature in RedeemService, so CORS, CSRF, the request cache and the JWT filter
+     * are skipped here.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain paymentFilterChain(HttpSecurity http) throws Exception {
+        FilterChainTimer timer = new FilterChainTimer(meterRegistry, "payment");
+
+        http
+                .securityMatcher(PAYMENT_ENDPOINTS)
+                .csrf(csrf -> csrf.disable())
+                .requestCache(cache -> cache.disable())
+                .logout(logout -> logout.disable())
+                .authorizeHttpRequests(authz -> authz.anyRequest().permitAll())
+                .sessionManagement(session ->
+                    session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                )
+                .addFilterBefore(timer.startFilter(), DisableEncodeUrlFilter.class)
+                .addFilterAfter(timer.stopFilter(), AuthorizationFilter.class);
+
+        return http.build();
+    }
+
     @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+        FilterChainTimer timer = new FilterChainTimer(meterRegistry, "default");
+
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(authz -> authz
+                        // Export and wallet stream results are written on an async dispatch, and
+                        // errors on an error dispatch; the original request was already authorized
+                        // and the stateless chain has no authentication to restore for them
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+
                         // PUBLIC ENDPOINTS (no authentication required)
                         .requestMatchers("/api/register", "/api/login").permitAll()
-                        .requestMatchers("/api/wallet/redeem").permitAll()  // NFC payments
+                        .requestMatchers("/api/token/refresh", "/api/token/revoke").permitAll()  // Refresh-token auth
+                        .requestMatchers("/api/admin/**").permitAll()  // Admin API key checked in AdminController
                         .requestMatchers("/api/health").permitAll()  // Health check
                         .requestMatchers("/actuator/health").permitAll()  // Spring actuator
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
 
                         // AUTHENTICATED ENDPOINTS (JWT required)
-                        .requestMatchers("/api/transactions").authenticated()
+                        .requestMatchers("/api/transactions", "/api/transactions/export", "/api/transactions/summary").authenticated()
                         .requestMatchers("/api/wallet/**").authenticated()
                         .requestMatchers("/api/device/**").authenticated()
                         .requestMatchers("/api/userinfo").authenticated()
+                        .requestMatchers("/api/bootstrap").authenticated()
 
                         
                         // ALL OTHER REQUESTS
@@ -85,7 +159,9 @@ public class SecurityConfig {
                 .sessionManagement(session -> 
                     session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(timer.startFilter(), DisableEncodeUrlFilter.class)
+                .addFilterAfter(timer.stopFilter(), AuthorizationFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,90 @@
+package net.otgon.backend.controller;
+
+import net.otgon.backend.dto.BulkProvisionResponse;
+import net.otgon.backend.service.LedgerBackfillService;
+import net.otgon.backend.service.RiderProvisioningService;
+import net.otgon.backend.service.RollupRebuildService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Operator endpoints. There are no user roles yet, so callers authenticate
+ * with the shared admin.api-key; with no key configured these endpoints are off.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    public static final String ADMIN_KEY_HEADER = "X-Admin-Key";
+
+    private final RiderProvisioningService riderProvisioningService;
+    private final LedgerBackfillService ledgerBackfillService;
+    private final RollupRebuildService rollupRebuildService;
+    private final String adminApiKey;
+
+    public AdminController(RiderProvisioningService riderProvisioningService,
+                           LedgerBackfillService ledgerBackfillService,
+                           RollupRebuildService rollupRebuildService,
+                           @Value("${admin.api-key:}") String adminApiKey) {
+        this.riderProvisioningService = riderProvisioningService;
+        this.ledgerBackfillService = ledgerBackfillService;
+        this.rollupRebuildService = rollupRebuildService;
+        this.adminApiKey = adminApiKey;
+    }
+
+    // Body is text/csv (header: username,email,password) or application/x-ndjson, streamed
+    @PostMapping(value = "/riders/bulk",
+            consumes = {"text/csv", "application/x-ndjson"},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> provisionRiders(
+            @RequestHeader(value = ADMIN_KEY_HEADER, required = false) String adminKey,
+            @RequestHeader(value = "Content-Type") String contentType,
+            InputStream body) throws IOException {
+
+        if (!isAdmin(adminKey)) {
+            return ResponseEntity.status(403).body("Admin key required");
+        }
+
+        boolean ndjson = contentType.toLowerCase().contains("ndjson");
+        BulkProvisionResponse response = riderProvisioningService.provision(body, ndjson);
+        return ResponseEntity.ok(response);
+    }
+
+    // Migrates every card whose history is still only in the legacy tables
+    @PostMapping(value = "/ledger/backfill", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> backfillLedger(
+            @RequestHeader(value = ADMIN_KEY_HEADER, required = false) String adminKey) {
+
+        if (!isAdmin(adminKey)) {
+            return ResponseEntity.status(403).body("Admin key required");
+        }
+        return ResponseEntity.ok(ledgerBackfillService.backfillAll());
+    }
+
+    // Recomputes every card's daily rollups from the ledger
+    @PostMapping(value = "/rollups/rebuild", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> rebuildRollups(
+            @RequestHeader(value = ADMIN_KEY_HEADER, required = false) String adminKey) {
+
+        if (!isAdmin(adminKey)) {
+            return ResponseEntity.status(403).body("Admin key required");
+        }
+        return ResponseEntity.ok(rollupRebuildService.rebuildAll());
+    }
+
+    private boolean isAdmin(String adminKey) {
+        if (adminApiKey.isBlank() || adminKey == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                adminApiKey.getBytes(StandardCharsets.UTF_8),
+                adminKey.getBytes(StandardCharsets.UTF_8));
+    }
+}
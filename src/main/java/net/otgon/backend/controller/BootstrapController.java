@@ -0,0 +1,52 @@
+package net.otgon.backend.controller;
+
+import net.otgon.backend.dto.BootstrapResponse;
+import net.otgon.backend.exception.DeadlineExceededException;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.ServiceBusyException;
+import net.otgon.backend.service.BootstrapService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api")
+public class BootstrapController {
+
+    private static final int MAX_RECENT = 50;
+
+    private final BootstrapService bootstrapService;
+
+    public BootstrapController(BootstrapService bootstrapService) {
+        this.bootstrapService = bootstrapService;
+    }
+
+    /**
+     * App launch payload: user info, balance, device status and latest transactions
+     * @param authHeader header
+     * @param limit number of recent transactions (1-50)
+     * @return combined response replacing /userinfo + /transactions + device check;
+     *         401 only for a bad token, 503/504 when the backend is busy or slow
+     *         so the app retries instead of logging the rider out
+     */
+    @GetMapping("/bootstrap")
+    public ResponseEntity<BootstrapResponse> bootstrap(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        try {
+            String token = authHeader.replace("Bearer ", "");
+            int recent = Math.max(1, Math.min(MAX_RECENT, limit));
+            return ResponseEntity.ok(bootstrapService.bootstrap(token, recent));
+        } catch (InvalidTokenException e) {
+            return ResponseEntity.status(401).build();
+        } catch (ServiceBusyException e) {
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        } catch (DeadlineExceededException e) {
+            System.err.println("Error building bootstrap: " + e.getMessage());
+            return ResponseEntity.status(504).build();
+        }
+    }
+}
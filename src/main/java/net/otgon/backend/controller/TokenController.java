@@ -0,0 +1,45 @@
+package net.otgon.backend.controller;
+
+import jakarta.validation.Valid;
+import net.otgon.backend.dto.AuthTokens;
+import net.otgon.backend.dto.RefreshTokenRequest;
+import net.otgon.backend.exception.InvalidRefreshTokenException;
+import net.otgon.backend.service.RefreshTokenService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/token")
+public class TokenController {
+
+    private final RefreshTokenService refreshTokenService;
+
+    public TokenController(RefreshTokenService refreshTokenService) {
+        this.refreshTokenService = refreshTokenService;
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and a rotated refresh token
+     * @param request refresh token issued at login or by a previous refresh
+     * @return new token pair, or 401 when the token is unknown, expired or reused
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        try {
+            AuthTokens tokens = refreshTokenService.rotate(request.getRefreshToken());
+            return ResponseEntity.ok(tokens);
+        } catch (InvalidRefreshTokenException e) {
+            // Anything else (database down, busy) is not the token's fault: the app must not log the rider out
+            return ResponseEntity.status(401).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Revokes a refresh token (logout). Always 204 so token validity is not leaked.
+     */
+    @PostMapping("/revoke")
+    public ResponseEntity<Void> revoke(@Valid @RequestBody RefreshTokenRequest request) {
+        refreshTokenService.revoke(request.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
+}
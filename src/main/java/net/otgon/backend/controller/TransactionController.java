@@ -1,42 +1,170 @@
 package net.otgon.backend.controller;
 
+import net.otgon.backend.dto.HistoryFilter;
 import net.otgon.backend.dto.TransactionResponseDto;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.ValidationException;
+import net.otgon.backend.service.LedgerVersionService;
+import net.otgon.backend.service.TransactionExportService;
 import net.otgon.backend.service.TransactionService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api")
 public class TransactionController {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final TransactionService transactionService;
+    private final TransactionExportService transactionExportService;
+    private final LedgerVersionService ledgerVersionService;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService,
+                                 TransactionExportService transactionExportService,
+                                 LedgerVersionService ledgerVersionService) {
         this.transactionService = transactionService;
+        this.transactionExportService = transactionExportService;
+        this.ledgerVersionService = ledgerVersionService;
     }
 
     /**
-     * Get all transactions (deductions + top-ups) for the authenticated user
+     * Get transactions (deductions + top-ups) for the authenticated user.
+     * With limit and/or cursor, returns one keyset page ({items, nextCursor});
+     * without either, the full list as before (kept for existing app versions).
+     * Any of type, from, to, minAmount, maxAmount or status narrows the result
+     * and always returns a page.
+     * Carries the card's ledger version as ETag, read from the same database as
+     * the history; a matching If-None-Match gets 304 before any history is read.
      * @param authHeader header
-     * @return List of unified transactions sorted by date (newest first)
+     * @param limit page size (1-100)
+     * @param cursor nextCursor from the previous page
+     * @param filter optional type / from / to (ISO dates) / minAmount / maxAmount / status
+     * @return unified transactions sorted by date (newest first); 401 only for
+     *         a bad token, other failures go to the global handler
      */
     @GetMapping("/transactions")
-    public ResponseEntity<List<TransactionResponseDto>> getUserTransactions(
-            @RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getUserTransactions(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            HistoryFilter filter,
+            WebRequest webRequest) {
 
         try {
             String token = authHeader.replace("Bearer ", "");
 
+            String etag = ledgerVersionService.historyEtagFor(token);
+            if (etag != null && webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            CacheControl revalidate = CacheControl.noCache().cachePrivate();
+
+            if (!filter.isEmpty()) {
+                int pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, limit != null ? limit : DEFAULT_PAGE_SIZE));
+                return ResponseEntity.ok().cacheControl(revalidate)
+                        .body(transactionService.searchTransactions(token, filter, cursor, pageSize));
+            }
+
+            if (limit != null || cursor != null) {
+                int pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, limit != null ? limit : DEFAULT_PAGE_SIZE));
+                return ResponseEntity.ok().cacheControl(revalidate)
+                        .body(transactionService.getTransactionPage(token, cursor, pageSize));
+            }
+
             List<TransactionResponseDto> transactions =
                     transactionService.getAllUserTransactions(token);
 
-            return ResponseEntity.ok(transactions);
-        } catch (Exception e) {
-            System.err.println("Error fetching transactions: " + e.getMessage());
-            e.printStackTrace();
+            return ResponseEntity.ok().cacheControl(revalidate).body(transactions);
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (InvalidTokenException e) {
+            return ResponseEntity.status(401).build();
+        }
+    }
+
+    /**
+     * Spent / topped-up totals and per-day breakdown, from the daily rollups.
+     * @param authHeader header
+     * @param from first day (ISO date), default 29 days before to
+     * @param to last day (ISO date, inclusive), default today
+     * @return the summary; 401 only for a bad token, other failures go to
+     *         the global handler (503 when busy, 500 otherwise)
+     */
+    @GetMapping("/transactions/summary")
+    public ResponseEntity<?> getSummary(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        try {
+            String token = authHeader.replace("Bearer ", "");
+            LocalDate end = to != null ? to : LocalDate.now();
+            LocalDate start = from != null ? from : end.minusDays(29);
+            return ResponseEntity.ok(transactionService.getSummary(token, start, end));
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (InvalidTokenException e) {
+            System.err.println("Error fetching summary: " + e.getMessage());
+            return ResponseEntity.status(401).build();
+        }
+    }
+
+    /**
+     * Full statement, oldest first, streamed as it is read from the database.
+     * Compressed on the fly when the client sends Accept-Encoding: gzip.
+     * @param authHeader header
+     * @param format ndjson (default) or csv
+     * @return the export stream; 401 only for a bad token
+     */
+    @GetMapping("/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestParam(required = false) String format) {
+
+        TransactionExportService.Format exportFormat = TransactionExportService.Format.parse(format);
+
+        String cardId;
+        try {
+            cardId = transactionExportService.resolveCardId(authHeader.replace("Bearer ", ""));
+        } catch (InvalidTokenException e) {
+            System.err.println("Error exporting transactions: " + e.getMessage());
             return ResponseEntity.status(401).build();
         }
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        boolean csv = exportFormat == TransactionExportService.Format.CSV;
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+                transactionExportService.export(cardId, exportFormat, compressed);
+                compressed.finish();
+            } else {
+                transactionExportService.export(cardId, exportFormat, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv") : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transactions." + (csv ? "csv" : "ndjson") + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
-}
\ No newline at end of file
+}
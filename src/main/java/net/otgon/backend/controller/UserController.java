@@ -1,24 +1,42 @@
 package net.otgon.backend.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import net.otgon.backend.dto.AuthTokens;
 import net.otgon.backend.dto.LoginRequestDto;
 import net.otgon.backend.dto.RegisterRequestDto;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.ServiceBusyException;
+import net.otgon.backend.exception.TooManyRequestsException;
+import net.otgon.backend.service.LedgerVersionService;
 import net.otgon.backend.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api")
 public class UserController {
 
+    // Body stays the bare access token for existing clients; the refresh token rides in a header
+    public static final String REFRESH_TOKEN_HEADER = "X-Refresh-Token";
+
     private UserService userService;
+    private LedgerVersionService ledgerVersionService;
 
     @Autowired
     public void setUserService(UserService userService) {
         this.userService = userService;
     }
 
+    @Autowired
+    public void setLedgerVersionService(LedgerVersionService ledgerVersionService) {
+        this.ledgerVersionService = ledgerVersionService;
+    }
+
     //Returning JWT as a response which will used to log in automatically
     @PostMapping("/register")
     public ResponseEntity<String> register(@Valid @RequestBody RegisterRequestDto userDto) {
@@ -26,16 +44,21 @@ public class UserController {
             return ResponseEntity.badRequest().body("Username and password required");
         }
         try {
-            String token = userService
+            AuthTokens tokens = userService
                     .register(userDto.getUsername(), userDto.getPassword(), userDto.getEmail());
-            return ResponseEntity.ok(token);
+            return ResponseEntity.ok()
+                    .header(REFRESH_TOKEN_HEADER, tokens.getRefreshToken())
+                    .body(tokens.getAccessToken());
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
     @PostMapping("/login")
-    public ResponseEntity<String> login(@Valid @RequestBody LoginRequestDto userLogInDto) {
+    public ResponseEntity<String> login(@Valid @RequestBody LoginRequestDto userLogInDto,
+                                        HttpServletRequest request) {
 
         if (userLogInDto.getUsername() == null || userLogInDto.getPassword() == null) {
             return ResponseEntity.badRequest().body("Username and password required");
@@ -46,10 +69,17 @@ public class UserController {
 
         System.out.println("[LogIn] Incoming username: " + userLogInDto.getUsername());
 
-        String token;
+        AuthTokens tokens;
 
         try {
-            token = userService.loginWithPassword(username, password);
+            // The client's address, not the load balancer's: server.forward-headers-strategy in prod
+            tokens = userService.loginWithPassword(username, password, request.getRemoteAddr());
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             if (e.getMessage().equals("User not found")) {
                 return ResponseEntity.status(404).body("User not found");
@@ -57,19 +87,35 @@ public class UserController {
             return ResponseEntity.status(401).body("Invalid credentials");
         }
 
-        System.out.println("[LogIn] Sending token: " + token);
+        System.out.println("[LogIn] Sending token for: " + username);
 
-        return ResponseEntity.ok(token);
+        return ResponseEntity.ok()
+                .header(REFRESH_TOKEN_HEADER, tokens.getRefreshToken())
+                .body(tokens.getAccessToken());
+    }
+
+    private ResponseEntity<String> busy(ServiceBusyException e) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
     }
     //POST /api/cards/{cardId}/qrcode
 
+    // Polled by the app: If-None-Match on the ledger version answers 304 without loading the user.
+    // 401 only for a bad token; other failures go to the global handler
     @GetMapping("/userinfo")
-    public ResponseEntity<?> getUserInfo(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getUserInfo(@RequestHeader("Authorization") String authHeader,
+                                         WebRequest webRequest) {
         try {
             String token = authHeader.replace("Bearer ", "");
-            System.out.println("Getting user info: " + token);
-            return ResponseEntity.ok(userService.getUserInfo(token));
-        } catch (Exception e) {
+            String etag = ledgerVersionService.etagFor(token);
+            if (etag != null && webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(userService.getUserInfo(token));
+        } catch (InvalidTokenException e) {
             return ResponseEntity.status(401).body("Invalid or missing token");
         }
     }
@@ -4,11 +4,16 @@ package net.otgon.backend.controller;
 import lombok.AllArgsConstructor;
 import jakarta.validation.Valid;
 import net.otgon.backend.dto.*;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.ServiceBusyException;
 import net.otgon.backend.service.RedeemService;
 import net.otgon.backend.service.WalletService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
 @RestController
@@ -37,7 +42,24 @@ public class WalletController {
         return ResponseEntity.ok(response);
     }
 
+    // Server-sent events: a snapshot on connect, then one event per committed redeem/top-up
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader("Authorization") String authHeader) {
+        String token = authHeader.replace("Bearer ", "");
+        return walletService.openStream(token);
+    }
+
     // Global exception handler for this controller
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<String> handleServiceBusy(ServiceBusyException ex) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+    @ExceptionHandler(InvalidTokenException.class)
+    public ResponseEntity<String> handleInvalidToken(InvalidTokenException ex) {
+        return ResponseEntity.status(401).body(ex.getMessage());
+    }
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<String> handleResponseStatusException(ResponseStatusException ex) {
         return ResponseEntity
@@ -0,0 +1,18 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class AuthTokens {
+
+    private String accessToken;
+    private String refreshToken;
+    private long expiresIn;     // Access token lifetime in seconds
+
+}
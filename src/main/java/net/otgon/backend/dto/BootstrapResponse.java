@@ -0,0 +1,21 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Everything the app needs on launch, in one round trip
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BootstrapResponse {
+
+    private UserInfoView user;                              // Profile, card id and balance
+    private String deviceId;                                // Null when no device is registered
+    private String deviceStatus;                            // "REGISTERED" or "NOT_REGISTERED"
+    private List<TransactionResponseDto> recentTransactions; // Newest first
+}
@@ -0,0 +1,21 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkProvisionResponse {
+
+    private int total;
+    private int created;
+    private int rejected;
+    private long durationMs;
+    private List<BulkRiderResult> results;
+}
@@ -0,0 +1,19 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRiderResult {
+
+    private int line;           // 1-based line in the upload (CSV header is line 1)
+    private String username;
+    private String status;      // "CREATED" or "REJECTED"
+    private String message;     // Reason when rejected
+    private String cardId;      // Set when created
+}
@@ -0,0 +1,18 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// One rider from a bulk provisioning upload (CSV row or NDJSON line)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRiderRow {
+
+    private String username;
+    private String email;
+    private String password;
+}
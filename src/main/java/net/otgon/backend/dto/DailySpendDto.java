@@ -0,0 +1,21 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySpendDto {
+
+    private LocalDate day;
+    private double spent;
+    private int trips;
+    private double toppedUp;
+    private int topUps;
+}
@@ -0,0 +1,37 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.otgon.backend.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a newest-first history listing: the ledger seq of the last
+ * entry already returned. Clients get it as an opaque base64url string.
+ */
+@Getter
+@AllArgsConstructor
+public class HistoryCursor {
+
+    private final long seq;
+
+    public String encode() {
+        String raw = Long.toString(seq);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static HistoryCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            long seq = Long.parseLong(raw);
+            if (seq <= 0) {
+                throw new ValidationException("Invalid cursor");
+            }
+            return new HistoryCursor(seq);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+}
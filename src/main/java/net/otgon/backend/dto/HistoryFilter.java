@@ -0,0 +1,57 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import net.otgon.backend.exception.ValidationException;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Optional history filters, bound from /api/transactions query parameters.
+ * Amounts are positive (as shown to the rider) whatever the entry type.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryFilter {
+
+    private static final Set<String> TYPES = Set.of("DEDUCT", "TOPUP");
+
+    private String type;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+
+    /** Inclusive */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+
+    private Double minAmount;
+    private Double maxAmount;
+    private String status;
+
+    public boolean isEmpty() {
+        return type == null && from == null && to == null
+                && minAmount == null && maxAmount == null && status == null;
+    }
+
+    public void validate() {
+        if (type != null && !TYPES.contains(type)) {
+            throw new ValidationException("type must be DEDUCT or TOPUP");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ValidationException("from must not be after to");
+        }
+        if ((minAmount != null && minAmount < 0) || (maxAmount != null && maxAmount < 0)) {
+            throw new ValidationException("Amounts must not be negative");
+        }
+        if (minAmount != null && maxAmount != null && minAmount > maxAmount) {
+            throw new ValidationException("minAmount must not be above maxAmount");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerBackfillResponse {
+
+    private int cards;
+    private int migrated;
+    private int failed;
+    private long durationMs;
+}
@@ -0,0 +1,27 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Totals over [from, to] (inclusive); days without activity are omitted.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpendSummaryResponse {
+
+    private LocalDate from;
+    private LocalDate to;
+    private double spent;
+    private int trips;
+    private double toppedUp;
+    private int topUps;
+    private List<DailySpendDto> days;
+}
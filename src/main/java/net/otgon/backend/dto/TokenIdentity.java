@@ -0,0 +1,23 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Identity carried by an access token; userId/cardId are null for tokens issued before the claims existed
+@Getter
+@AllArgsConstructor
+public class TokenIdentity {
+
+    private final String username;
+    private final String userId;
+    private final String cardId;
+
+    public boolean hasCard() {
+        return userId != null && cardId != null;
+    }
+
+    // False when the claims name another user or card than the one on record, e.g. after card reassignment
+    public boolean matches(String currentUserId, String currentCardId) {
+        return !hasCard() || (userId.equals(currentUserId) && cardId.equals(currentCardId));
+    }
+}
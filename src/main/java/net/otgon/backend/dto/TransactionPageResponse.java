@@ -0,0 +1,18 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPageResponse {
+
+    private List<TransactionResponseDto> items;  // Newest first
+    private String nextCursor;                   // Null on the last page
+}
@@ -0,0 +1,24 @@
+package net.otgon.backend.dto;
+
+import lombok.Getter;
+
+/**
+ * Read model behind GET /api/userinfo, filled by a single JPQL projection.
+ * Immutable so one instance can be shared from the cache across requests.
+ */
+@Getter
+public final class UserInfoView {
+
+    private final String username;
+    private final String email;
+    private final String cardId;
+    private final double balance;
+
+    // Balance is boxed because the card is left-joined
+    public UserInfoView(String username, String email, String cardId, Double balance) {
+        this.username = username;
+        this.email = email;
+        this.cardId = cardId;
+        this.balance = balance != null ? balance : 0;
+    }
+}
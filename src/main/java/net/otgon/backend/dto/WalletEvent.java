@@ -0,0 +1,23 @@
+package net.otgon.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Pushed on /api/wallet/stream. The first event after connecting is a
+ * snapshot (entry is null); each later one carries the ledger entry that
+ * produced the new balance, or is another snapshot when the change was made
+ * on another node. seq is the ledger version and the SSE event id.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletEvent {
+
+    private long seq;
+    private double balance;
+    private TransactionResponseDto entry;
+}
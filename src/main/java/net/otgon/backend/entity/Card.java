@@ -6,7 +6,13 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
+/**
+ * Deliberately not in the second-level cache: the balance changes on every
+ * ride and top-up, and another node's cached copy would serve it stale.
+ * Writers lock the row (LedgerService) and read the balance from it.
+ */
 @Entity
 @Table(name = "cards")
 @Getter
@@ -16,15 +22,24 @@ import lombok.Setter;
 public class Card {
 
     @Id
-    @Column(length = 36)
-    private String id; // UUID for card
+    @Column(columnDefinition = "uuid")
+    private String id; // Time-ordered UUID, assigned at registration
 
-    @OneToOne
-    @JoinColumn(name = "user_id", nullable = false, unique = true)
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false, unique = true, columnDefinition = "uuid")
     @JsonIgnore
     private User user;
 
     @Column(name = "balance")
     private double balance = 0.0;
 
+    /**
+     * Seq of the newest ledger entry; 0 until the card's history is in the ledger.
+     * Only changed while the card row is locked.
+     */
+    @Column(name = "ledger_seq", nullable = false)
+    @ColumnDefault("0")
+    @JsonIgnore
+    private long ledgerSeq = 0;
+
 }
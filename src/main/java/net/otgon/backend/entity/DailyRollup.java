@@ -0,0 +1,70 @@
+package net.otgon.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Per-card, per-day totals of successful ledger entries. Updated in the
+ * ledger append's transaction (under the card lock), so it always agrees
+ * with ledger_entries; RollupRebuildService recomputes it from scratch.
+ */
+@Entity
+@Table(name = "card_daily_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+public class DailyRollup {
+
+    @EmbeddedId
+    private Key id;
+
+    /** Sum of successful deductions (positive) */
+    @Column(nullable = false)
+    private double spent;
+
+    @Column(name = "trip_count", nullable = false)
+    private int tripCount;
+
+    @Column(name = "topped_up", nullable = false)
+    private double toppedUp;
+
+    @Column(name = "topup_count", nullable = false)
+    private int topUpCount;
+
+    public DailyRollup(String cardId, LocalDate day) {
+        this.id = new Key(cardId, day);
+    }
+
+    /** Adds one successful ledger entry's signed amount */
+    public void add(String type, double signedAmount) {
+        if (LedgerEntry.TOPUP.equals(type)) {
+            toppedUp += signedAmount;
+            topUpCount++;
+        } else {
+            spent -= signedAmount;
+            tripCount++;
+        }
+    }
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "card_id", nullable = false, columnDefinition = "uuid")
+        private String cardId;
+
+        // "day" is a keyword in H2
+        @Column(name = "rollup_date", nullable = false)
+        private LocalDate day;
+    }
+}
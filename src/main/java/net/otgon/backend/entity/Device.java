@@ -2,10 +2,17 @@ package net.otgon.backend.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import java.time.LocalDateTime;
 
+/** Held in the second-level cache: every redeem looks up its device's key */
 @Entity
-@Table(name = "devices")
+@Table(name = "devices", indexes = {
+        @Index(name = "idx_devices_user", columnList = "user_id")
+})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "devices")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -13,14 +20,15 @@ import java.time.LocalDateTime;
 public class Device {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
+    @Column(columnDefinition = "uuid")
     private String id;
 
     @Column(length = 2048)
     private String publicKey;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id", nullable = false, columnDefinition = "uuid")
     private User user;
 
     @Column(nullable = false)
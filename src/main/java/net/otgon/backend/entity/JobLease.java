@@ -0,0 +1,36 @@
+package net.otgon.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Lease on a cluster-wide scheduled job, written by JobLeaseService through
+ * JDBC. Mapped so the schema is validated and created in tests; Instant
+ * maps to timestamp with time zone.
+ */
+@Entity
+@Table(name = "job_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobLease {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(name = "locked_until", nullable = false)
+    private Instant lockedUntil;
+
+    @Column(name = "locked_at", nullable = false)
+    private Instant lockedAt;
+
+    @Column(name = "locked_by", nullable = false)
+    private String lockedBy;
+}
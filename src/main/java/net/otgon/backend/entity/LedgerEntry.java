@@ -0,0 +1,83 @@
+package net.otgon.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * One balance change on a card. Rows are only ever inserted.
+ * Written in the same transaction as the balance update, so balanceAfter is
+ * exact and seq (1, 2, 3... per card) gives a gap-free order.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries", uniqueConstraints = {
+        // Also the index behind newest-first history reads
+        @UniqueConstraint(name = "uk_ledger_card_seq", columnNames = {"card_id", "seq"}),
+        // Makes backfill from the legacy tables idempotent
+        @UniqueConstraint(name = "uk_ledger_source", columnNames = {"source_id"})
+}, indexes = {
+        // Filtered history search (LedgerSearchRepo): date ranges, and type + amount lookups
+        @Index(name = "idx_ledger_card_created", columnList = "card_id, created_at"),
+        @Index(name = "idx_ledger_card_type_amount", columnList = "card_id, type, amount")
+})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class LedgerEntry {
+
+    public static final String DEDUCT = "DEDUCT";
+    public static final String TOPUP = "TOPUP";
+
+    // Generated at persist, so save() and the backfill's saveAll() insert (and batch)
+    // instead of merging, which would first select each id
+    @Id
+    @TimeOrderedId
+    @Column(columnDefinition = "uuid")
+    private String id;
+
+    @Column(name = "card_id", nullable = false, columnDefinition = "uuid")
+    private String cardId;
+
+    @Column(nullable = false)
+    private long seq;
+
+    @Column(nullable = false, length = 20)
+    private String type;
+
+    /**
+     * Signed: negative for deductions, positive for top-ups.
+     */
+    @Column(nullable = false)
+    private double amount;
+
+    @Column(name = "balance_after", nullable = false)
+    private double balanceAfter;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    /**
+     * Id of the Transaction / TopUpTransaction row this entry records.
+     */
+    @Column(name = "source_id", columnDefinition = "uuid")
+    private String sourceId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public LedgerEntry(String cardId, long seq, String type, double amount, double balanceAfter,
+                       String status, String sourceId, LocalDateTime createdAt) {
+        this.cardId = cardId;
+        this.seq = seq;
+        this.type = type;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.status = status;
+        this.sourceId = sourceId;
+        this.createdAt = createdAt;
+    }
+}
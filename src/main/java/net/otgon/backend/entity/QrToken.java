@@ -17,7 +17,7 @@ public class QrToken {
     @Column(length = 36, nullable = false, unique = true)
     private String jti;   // UUID as string
 
-    @Column(name = "card_id", length = 36, nullable = false)
+    @Column(name = "card_id", nullable = false, columnDefinition = "uuid")
     private String cardId;   // Reference to user card
 
     @Column(name = "issued_at", nullable = false)
@@ -0,0 +1,62 @@
+package net.otgon.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * A tx_id that has been redeemed, kept only while its payload timestamp is
+ * still inside the window RedeemService accepts. Older replays are rejected
+ * by the timestamp check, so expired rows are purged.
+ *
+ * Keyed by the tx_id itself, so it tells Spring Data it is new: save()
+ * inserts instead of merging, which would first select the row RedeemService
+ * has just checked for.
+ */
+@Entity
+@Table(name = "redeemed_tx_ids", indexes = {
+        @Index(name = "idx_redeemed_tx_ids_expires", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class RedeemedTxId implements Persistable<String> {
+
+    @Id
+    @Column(name = "tx_id", length = 64)
+    private String txId;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    public RedeemedTxId(String txId, LocalDateTime expiresAt) {
+        this.txId = txId;
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public String getId() {
+        return txId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,59 @@
+package net.otgon.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_tokens_family", columnList = "family_id"),
+        @Index(name = "idx_refresh_tokens_user", columnList = "user_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken {
+
+    // Generated at persist, so save() inserts instead of merging, which would first select the id
+    @Id
+    @TimeOrderedId
+    @Column(columnDefinition = "uuid")
+    private String id;
+
+    /**
+     * SHA-256 (hex) of the opaque token handed to the client.
+     * The raw value is never stored.
+     */
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    /**
+     * All tokens produced by rotating one login share a family,
+     * so a replayed token can revoke the whole chain.
+     */
+    @Column(name = "family_id", nullable = false, columnDefinition = "uuid")
+    private String familyId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, columnDefinition = "uuid")
+    private User user;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    /** Set when the token is rotated or revoked */
+    private LocalDateTime revokedAt;
+
+    public boolean isRevoked() {
+        return revokedAt != null;
+    }
+
+}
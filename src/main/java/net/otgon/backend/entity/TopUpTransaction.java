@@ -7,28 +7,33 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
+/** Range-partitioned by month on created_at (see V4 migration) */
 @Entity
-@Table(name = "topup_transactions")
+@Table(name = "topup_transactions", indexes = {
+        @Index(name = "idx_topups_card_created", columnList = "card_id, created_at, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class TopUpTransaction {
 
+    // Generated at persist, so save() inserts instead of merging, which would
+    // first select the id across every partition
     @Id
-    @Column(length = 36)
-    private String id = UUID.randomUUID().toString(); // primary key
+    @TimeOrderedId
+    @Column(columnDefinition = "uuid")
+    private String id; // primary key
 
-    @ManyToOne
-    @JoinColumn(name = "card_id", nullable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "card_id", nullable = false, columnDefinition = "uuid")
     private Card card;
 
     @Column(nullable = false)
     private double amount;
 
-    /** Time when top-up occurred */
+    /** Time when top-up occurred. Partition key. */
     @Column(nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
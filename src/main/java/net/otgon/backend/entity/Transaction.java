@@ -4,21 +4,31 @@ import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 
+/**
+ * Range-partitioned by month on synced_at (see V4 migration), so the primary
+ * key in the database is (id, synced_at) and tx_id is not unique here:
+ * replays are rejected through {@link RedeemedTxId}.
+ */
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        // Keyset pagination of card history: WHERE card_id = ? AND (synced_at, id) < (?, ?)
+        @Index(name = "idx_transactions_card_synced", columnList = "card_id, synced_at, id")
+})
 @Getter @Setter
 @NoArgsConstructor @AllArgsConstructor
 public class Transaction {
 
+    // Generated at persist, so save() inserts instead of merging, which would
+    // first select the id across every partition
     @Id
-    @Column(length = 36)
-    private String id = java.util.UUID.randomUUID().toString();
+    @TimeOrderedId
+    @Column(columnDefinition = "uuid")
+    private String id;
 
     /**
-     * Unique transaction ID generated on the phone.
-     * Prevents duplicates when syncing later.
+     * Transaction ID generated on the phone.
      */
-    @Column(name = "tx_id", unique = true, nullable = false, length = 64)
+    @Column(name = "tx_id", nullable = false, length = 64)
     private String txId;
 
 
@@ -45,9 +55,9 @@ public class Transaction {
     private Long Timestamp;
 
     /**
-     * When backend processed it.
+     * When backend processed it. Partition key.
      */
-    @Column(name = "synced_at")
+    @Column(name = "synced_at", nullable = false)
     private LocalDateTime syncedAt = LocalDateTime.now();
 
     /**
@@ -62,7 +72,7 @@ public class Transaction {
     /**
      * Relationship to card
      */
-    @ManyToOne
-    @JoinColumn(name = "card_id")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "card_id", columnDefinition = "uuid")
     private Card card;
 }
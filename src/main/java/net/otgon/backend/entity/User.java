@@ -5,11 +5,21 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.LocalDateTime;
 
+/**
+ * Held in the second-level cache: rows change only on a password rehash. The
+ * card is not part of the cached state (see Card).
+ */
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "users-by-username")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -17,9 +27,12 @@ import java.time.LocalDateTime;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedId
+    @Column(columnDefinition = "uuid")
     private String id;
 
+    // Immutable: tokens carry it, and the natural-id cache maps it to the id
+    @NaturalId
     @Column(nullable = false, unique = true, length = 50)
     private String username;
 
@@ -29,7 +42,14 @@ public class User {
     @Column(nullable = false)
     private String password;
 
-    @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
+    /**
+     * Inverse side: without bytecode enhancement Hibernate cannot proxy it and
+     * falls back to a second select, so queries that need the card fetch it
+     * with an entity graph (see UserRepo, RefreshTokenRepo). Redeem loads the
+     * device from the second-level cache and locks the card by user id
+     * (LedgerService.lockCardOf), so it never goes through this association.
+     */
+    @OneToOne(mappedBy = "user", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
     private Card card;
 
     @Column(nullable = false)
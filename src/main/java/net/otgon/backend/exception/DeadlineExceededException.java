@@ -0,0 +1,12 @@
+package net.otgon.backend.exception;
+
+/**
+ * Thrown when work the request waits on did not finish within its deadline.
+ * Mapped to 504.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package net.otgon.backend.exception;
+
+/**
+ * The access token is missing, malformed, expired, or names an account that
+ * no longer exists. The only failure controllers answer with 401.
+ */
+public class InvalidTokenException extends RuntimeException {
+
+    public InvalidTokenException(String message) {
+        super(message);
+    }
+
+    public InvalidTokenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,18 @@
+package net.otgon.backend.exception;
+
+/**
+ * Thrown when a caller is over its rate limit. Mapped to 429 with a Retry-After header.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
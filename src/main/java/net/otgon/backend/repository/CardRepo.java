@@ -2,6 +2,14 @@ package net.otgon.backend.repository;
 
 import net.otgon.backend.entity.Card;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
 
 public interface CardRepo extends JpaRepository<Card, String> {
+
+    // Ledger version for conditional GETs: one primary-key lookup, no entity load
+    @Query("SELECT c.ledgerSeq FROM Card c WHERE c.id = :cardId")
+    Optional<Long> findLedgerSeqById(@Param("cardId") String cardId);
 }
@@ -0,0 +1,20 @@
+package net.otgon.backend.repository;
+
+import net.otgon.backend.entity.DailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyRollupRepo extends JpaRepository<DailyRollup, DailyRollup.Key> {
+
+    // Primary-key range scan: (card_id, rollup_date)
+    List<DailyRollup> findByIdCardIdAndIdDayBetweenOrderByIdDayAsc(String cardId, LocalDate from, LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM DailyRollup r WHERE r.id.cardId = :cardId")
+    int deleteByCardId(@Param("cardId") String cardId);
+}
@@ -3,12 +3,15 @@ package net.otgon.backend.repository;
 import net.otgon.backend.entity.Device;
 import net.otgon.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface DeviceRepo extends JpaRepository<Device, String> {
 
-    Optional<Device> findById(String id);
-
     Optional<Device> findByUser(User user);
+
+    @Query("SELECT d.id FROM Device d WHERE d.user.id = :userId")
+    Optional<String> findIdByUserId(@Param("userId") String userId);
 }
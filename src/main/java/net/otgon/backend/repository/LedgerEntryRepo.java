@@ -0,0 +1,17 @@
+package net.otgon.backend.repository;
+
+import net.otgon.backend.entity.LedgerEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface LedgerEntryRepo extends JpaRepository<LedgerEntry, String> {
+
+    List<LedgerEntry> findByCardIdOrderBySeqDesc(String cardId);
+
+    List<LedgerEntry> findByCardIdOrderBySeqDesc(String cardId, Pageable pageable);
+
+    // Keyset page: entries older than the cursor, served from uk_ledger_card_seq
+    List<LedgerEntry> findByCardIdAndSeqLessThanOrderBySeqDesc(String cardId, long seq, Pageable pageable);
+}
@@ -0,0 +1,48 @@
+package net.otgon.backend.repository;
+
+import net.otgon.backend.dto.TransactionResponseDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.function.Consumer;
+
+/**
+ * Streams a card's whole ledger oldest-first without materializing it.
+ *
+ * Rows come off a server-side cursor {@code fetchSize} at a time (Postgres only
+ * does this inside a transaction, so callers must open one) and are handed to
+ * the consumer one by one.
+ */
+@Repository
+public class LedgerExportRepo {
+
+    private static final String EXPORT_SQL = """
+            SELECT source_id, id, type, amount, balance_after, created_at, status
+              FROM ledger_entries
+             WHERE card_id = ?
+             ORDER BY seq
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerExportRepo(JdbcTemplate jdbcTemplate,
+                            @Value("${ledger.export.fetch-size:500}") int fetchSize) {
+        // Own copy: the fetch size must not leak into other users of the shared template
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public void forEachByCard(String cardId, Consumer<TransactionResponseDto> action) {
+        jdbcTemplate.query(EXPORT_SQL, rs -> {
+            String sourceId = rs.getString("source_id");
+            action.accept(new TransactionResponseDto(
+                    sourceId != null ? sourceId : rs.getString("id"),
+                    rs.getString("type"),
+                    Math.abs(rs.getDouble("amount")),
+                    rs.getDouble("balance_after"),
+                    rs.getTimestamp("created_at").toLocalDateTime(),
+                    rs.getString("status")));
+        }, cardId);
+    }
+}
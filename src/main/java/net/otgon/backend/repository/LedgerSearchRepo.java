@@ -0,0 +1,120 @@
+package net.otgon.backend.repository;
+
+import net.otgon.backend.dto.HistoryFilter;
+import net.otgon.backend.dto.TransactionResponseDto;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Filtered, keyset-paginated history search over one card's ledger.
+ *
+ * Every predicate is a range on a column of a (card_id, ...) index:
+ * idx_ledger_card_created for date ranges, idx_ledger_card_type_amount for
+ * type/amount, uk_ledger_card_seq for the cursor. So a search only reads
+ * that card's slice of the index, never the table at large. Amounts are
+ * stored signed; with a type the positive bounds become a signed range on
+ * the index, without one they are applied to ABS(amount) within the card.
+ */
+@Repository
+public class LedgerSearchRepo {
+
+    private static final String SELECT = """
+            SELECT seq, source_id, id, type, amount, balance_after, created_at, status
+              FROM ledger_entries
+             WHERE card_id = :cardId
+               AND seq < :beforeSeq""";
+
+    private static final RowMapper<Row> ROW_MAPPER = (rs, rowNum) -> {
+        String sourceId = rs.getString("source_id");
+        return new Row(rs.getLong("seq"), new TransactionResponseDto(
+                sourceId != null ? sourceId : rs.getString("id"),
+                rs.getString("type"),
+                Math.abs(rs.getDouble("amount")),
+                rs.getDouble("balance_after"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                rs.getString("status")));
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public LedgerSearchRepo(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Matching entries with seq below {@code beforeSeq}, newest first */
+    public List<Row> search(String cardId, HistoryFilter filter, long beforeSeq, int limit) {
+        Query query = buildQuery(cardId, filter, beforeSeq, limit);
+        return jdbcTemplate.query(query.sql(), query.params(), ROW_MAPPER);
+    }
+
+    /** The SQL and parameters {@link #search} runs; exposed for query-plan tests */
+    public Query buildQuery(String cardId, HistoryFilter filter, long beforeSeq, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cardId", cardId)
+                .addValue("beforeSeq", beforeSeq)
+                .addValue("limit", limit);
+
+        if (filter.getType() != null) {
+            sql.append("\n   AND type = :type");
+            params.addValue("type", filter.getType());
+        }
+        if (filter.getFrom() != null) {
+            sql.append("\n   AND created_at >= :fromTs");
+            params.addValue("fromTs", Timestamp.valueOf(filter.getFrom().atStartOfDay()));
+        }
+        if (filter.getTo() != null) {
+            sql.append("\n   AND created_at < :toTs");
+            params.addValue("toTs", Timestamp.valueOf(filter.getTo().plusDays(1).atStartOfDay()));
+        }
+        appendAmountRange(sql, params, filter);
+        if (filter.getStatus() != null) {
+            sql.append("\n   AND status = :status");
+            params.addValue("status", filter.getStatus());
+        }
+        sql.append("\n ORDER BY seq DESC\n LIMIT :limit");
+        return new Query(sql.toString(), params);
+    }
+
+    private void appendAmountRange(StringBuilder sql, MapSqlParameterSource params, HistoryFilter filter) {
+        Double min = filter.getMinAmount();
+        Double max = filter.getMaxAmount();
+        if (min == null && max == null) {
+            return;
+        }
+        if (filter.getType() == null) {
+            if (min != null) {
+                sql.append("\n   AND ABS(amount) >= :minAmount");
+                params.addValue("minAmount", min);
+            }
+            if (max != null) {
+                sql.append("\n   AND ABS(amount) <= :maxAmount");
+                params.addValue("maxAmount", max);
+            }
+            return;
+        }
+        // Deductions are stored negative: |amount| in [min, max] is amount in [-max, -min]
+        boolean deduct = "DEDUCT".equals(filter.getType());
+        Double low = deduct ? (max != null ? -max : null) : min;
+        Double high = deduct ? (min != null ? -min : null) : max;
+        if (low != null) {
+            sql.append("\n   AND amount >= :lowAmount");
+            params.addValue("lowAmount", low);
+        }
+        if (high != null) {
+            sql.append("\n   AND amount <= :highAmount");
+            params.addValue("highAmount", high);
+        }
+    }
+
+    public record Row(long seq, TransactionResponseDto dto) {
+    }
+
+    public record Query(String sql, MapSqlParameterSource params) {
+    }
+}
@@ -0,0 +1,19 @@
+package net.otgon.backend.repository;
+
+import net.otgon.backend.entity.RedeemedTxId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface RedeemedTxIdRepo extends JpaRepository<RedeemedTxId, String> {
+
+    // Own transaction: the scheduled sweeps call it outside one
+    @Transactional
+    @Modifying
+    @Query("delete from RedeemedTxId r where r.expiresAt < :cutoff")
+    int deleteExpiredBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,37 @@
+package net.otgon.backend.repository;
+
+import net.otgon.backend.entity.RefreshToken;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface RefreshTokenRepo extends JpaRepository<RefreshToken, String> {
+
+    // Rotation signs a new access token with the user's card id
+    @EntityGraph(attributePaths = {"user", "user.card"})
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Conditional, so of two concurrent rotations of one token only one succeeds
+    @Modifying
+    @Query("update RefreshToken t set t.revokedAt = :now where t.id = :id and t.revokedAt is null")
+    int revokeIfActive(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    // A rotated family has exactly one live token; a logged-out or reused one has none
+    boolean existsByFamilyIdAndRevokedAtIsNull(String familyId);
+
+    @Modifying
+    @Query("update RefreshToken t set t.revokedAt = :now where t.familyId = :familyId and t.revokedAt is null")
+    int revokeFamily(@Param("familyId") String familyId, @Param("now") LocalDateTime now);
+
+    // Own transaction: the scheduled sweeps call it outside one
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt < :cutoff")
+    int deleteExpiredBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -8,4 +8,5 @@ import java.util.List;
 
 public interface TopUpTransactionRepo extends JpaRepository<TopUpTransaction, String> {
     List<TopUpTransaction> findByCardOrderByCreatedAtDesc(Card card);
+    List<TopUpTransaction> findByCardIdOrderByCreatedAtDesc(String cardId);
 }
@@ -8,7 +8,7 @@ import java.util.List;
 
 public interface TransactionRepo extends JpaRepository<Transaction, String> {
 
-    boolean existsByTxId(String txId);
     List<Transaction> findByCardOrderBySyncedAtDesc(Card card);
+    List<Transaction> findByCardIdOrderBySyncedAtDesc(String cardId);
     //List<Transaction> findRecent5Transactions(Card card);
 }
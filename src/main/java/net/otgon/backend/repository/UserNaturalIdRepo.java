@@ -0,0 +1,13 @@
+package net.otgon.backend.repository;
+
+import java.util.Optional;
+
+/** Username lookups answered from the natural-id cache, mixed into {@link UserRepo} */
+public interface UserNaturalIdRepo {
+
+    /**
+     * Id of the user with this username, without loading the user. On a warm
+     * cache this costs no statement; otherwise one select of the id.
+     */
+    Optional<String> findIdByUsername(String username);
+}
@@ -0,0 +1,23 @@
+package net.otgon.backend.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import net.otgon.backend.entity.User;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+class UserNaturalIdRepoImpl implements UserNaturalIdRepo {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<String> findIdByUsername(String username) {
+        // A reference: the id is resolved, the user row is not read
+        User user = entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(User.class)
+                .getReference(username);
+        return Optional.ofNullable(user).map(User::getId);
+    }
+}
@@ -1,13 +1,37 @@
 package net.otgon.backend.repository;
 
+import net.otgon.backend.dto.UserInfoView;
 import net.otgon.backend.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepo extends JpaRepository<User, String> {
+public interface UserRepo extends JpaRepository<User, String>, UserNaturalIdRepo {
+
+    // Login, top-up and old-token resolution all need the card: one joined select
+    @EntityGraph(attributePaths = "card")
     Optional<User> findByUsername(String username);
+
     Optional<User> findByEmail(String email);
+
+    // Userinfo read model: only the four displayed columns, user and card in one statement
+    @Query("SELECT new net.otgon.backend.dto.UserInfoView(u.username, u.email, c.id, c.balance) " +
+            "FROM User u LEFT JOIN u.card c WHERE u.id = :userId")
+    Optional<UserInfoView> findUserInfoById(@Param("userId") String userId);
+
+    @Query("SELECT new net.otgon.backend.dto.UserInfoView(u.username, u.email, c.id, c.balance) " +
+            "FROM User u LEFT JOIN u.card c WHERE u.username = :username")
+    Optional<UserInfoView> findUserInfoByUsername(@Param("username") String username);
+
+    // Set-based uniqueness checks for bulk provisioning
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
 }
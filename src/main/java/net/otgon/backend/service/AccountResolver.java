@@ -0,0 +1,42 @@
+package net.otgon.backend.service;
+
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.entity.Card;
+import net.otgon.backend.entity.User;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.repository.UserRepo;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves the card behind an access token.
+ * Tokens carrying uid/cid claims are resolved without touching the database;
+ * older tokens fall back to a username lookup.
+ */
+@Service
+public class AccountResolver {
+
+    private final JwtService jwtService;
+    private final UserRepo userRepo;
+
+    public AccountResolver(JwtService jwtService, UserRepo userRepo) {
+        this.jwtService = jwtService;
+        this.userRepo = userRepo;
+    }
+
+    public TokenIdentity resolve(String token) {
+        TokenIdentity identity = jwtService.extractIdentity(token);
+        if (identity.hasCard()) {
+            return identity;
+        }
+
+        // Fallback for tokens issued before identity claims were added
+        User user = userRepo.findByUsername(identity.getUsername())
+                .orElseThrow(() -> new InvalidTokenException("User not found"));
+
+        Card card = user.getCard();
+        if (card == null) {
+            throw new InvalidTokenException("Card not found for user");
+        }
+        return new TokenIdentity(user.getUsername(), user.getId(), card.getId());
+    }
+}
@@ -0,0 +1,123 @@
+package net.otgon.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how much CPU goes into password hashing versus cheap token refreshes.
+ * Exposes auth.password.cpu.per.active.user for the current day and logs
+ * a summary at midnight before starting a new day.
+ */
+@Component
+public class AuthMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthMetrics.class);
+
+    private final MeterRegistry meterRegistry;
+    private final Timer passwordHashTimer;
+    private final Timer hashQueueWaitTimer;
+    private final Counter hashRejectedCounter;
+    private final Counter refreshCounter;
+    private final Counter cpuAvoidedCounter;
+
+    // Reset daily
+    private final Set<String> activeUsers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong passwordNanosToday = new AtomicLong();
+
+    public AuthMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.passwordHashTimer = Timer.builder("auth.password.hash")
+                .description("Time spent in password encode/verify")
+                .register(meterRegistry);
+        this.hashQueueWaitTimer = Timer.builder("auth.password.queue.wait")
+                .description("Time a password hash waited for a hashing thread")
+                .register(meterRegistry);
+        this.hashRejectedCounter = Counter.builder("auth.password.rejected")
+                .description("Password hashes shed because the hashing pool was saturated")
+                .register(meterRegistry);
+        this.cpuAvoidedCounter = Counter.builder("auth.login.cpu.avoided")
+                .description("Estimated password hashing seconds saved by throttled logins")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.refreshCounter = Counter.builder("auth.token.refresh")
+                .description("Access tokens renewed with a refresh token")
+                .register(meterRegistry);
+        Gauge.builder("auth.active.users", activeUsers, Set::size)
+                .description("Distinct users that logged in or refreshed today")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.cpu.per.active.user", this, AuthMetrics::passwordSecondsPerActiveUser)
+                .description("Password hashing seconds per active user today")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public void recordPasswordHash(String username, long nanos) {
+        passwordHashTimer.record(nanos, TimeUnit.NANOSECONDS);
+        passwordNanosToday.addAndGet(nanos);
+        activeUsers.add(username);
+    }
+
+    public void recordHashQueueWait(long nanos) {
+        hashQueueWaitTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHashRejected() {
+        hashRejectedCounter.increment();
+    }
+
+    /** A throttled login skipped one password verify; reason is username or address */
+    public void recordLoginBlocked(String reason) {
+        Counter.builder("auth.login.blocked")
+                .description("Login attempts rejected by the throttle before hashing")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        cpuAvoidedCounter.increment(meanPasswordHashSeconds());
+    }
+
+    public void bindHashingPool(ThreadPoolExecutor executor) {
+        Gauge.builder("auth.password.pool.queued", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.pool.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes currently running")
+                .register(meterRegistry);
+    }
+
+    public void recordRefresh(String username) {
+        refreshCounter.increment();
+        activeUsers.add(username);
+    }
+
+    /** Mean wall time of one password hash, or 0 before the first one */
+    public double meanPasswordHashSeconds() {
+        return passwordHashTimer.mean(TimeUnit.SECONDS);
+    }
+
+    double passwordSecondsPerActiveUser() {
+        int users = activeUsers.size();
+        return users == 0 ? 0.0 : passwordNanosToday.get() / 1e9 / users;
+    }
+
+    @Scheduled(cron = "${auth.metrics.report-cron:0 0 0 * * *}")
+    public void reportDaily() {
+        log.info("Login CPU report: {} active users, {}s password hashing, {}s per active user",
+                activeUsers.size(),
+                String.format("%.3f", passwordNanosToday.get() / 1e9),
+                String.format("%.4f", passwordSecondsPerActiveUser()));
+        activeUsers.clear();
+        passwordNanosToday.set(0);
+    }
+}
@@ -0,0 +1,119 @@
+package net.otgon.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import net.otgon.backend.dto.BootstrapResponse;
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.dto.TransactionResponseDto;
+import net.otgon.backend.dto.UserInfoView;
+import net.otgon.backend.exception.DeadlineExceededException;
+import net.otgon.backend.exception.ServiceBusyException;
+import net.otgon.backend.repository.DeviceRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the app launch payload. The token is resolved once, then the three
+ * independent reads (profile, device, recent activity) run concurrently.
+ * The pool's queue is capped: a bootstrap that cannot be queued is shed with
+ * a {@link ServiceBusyException} rather than waiting out its deadline in line.
+ */
+@Service
+public class BootstrapService {
+
+    public static final String DEVICE_REGISTERED = "REGISTERED";
+    public static final String DEVICE_NOT_REGISTERED = "NOT_REGISTERED";
+
+    private final AccountResolver accountResolver;
+    private final UserService userService;
+    private final TransactionService transactionService;
+    private final DeviceRepo deviceRepo;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    public BootstrapService(AccountResolver accountResolver,
+                            UserService userService,
+                            TransactionService transactionService,
+                            DeviceRepo deviceRepo,
+                            @Value("${bootstrap.threads:8}") int threads,
+                            @Value("${bootstrap.queue-capacity:64}") int queueCapacity,
+                            @Value("${bootstrap.timeout-ms:3000}") long timeoutMs) {
+        this.accountResolver = accountResolver;
+        this.userService = userService;
+        this.transactionService = transactionService;
+        this.deviceRepo = deviceRepo;
+        this.timeoutMs = timeoutMs;
+
+        // Each read holds a pooled DB connection, so keep this well below the Hikari pool size
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "bootstrap-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public BootstrapResponse bootstrap(String token, int recentLimit) {
+        TokenIdentity identity = accountResolver.resolve(token);
+
+        CompletableFuture<UserInfoView> user = null;
+        CompletableFuture<Optional<String>> device = null;
+        CompletableFuture<List<TransactionResponseDto>> recent;
+        try {
+            user = CompletableFuture.supplyAsync(
+                    () -> userService.getUserInfo(identity), executor);
+            device = CompletableFuture.supplyAsync(
+                    () -> deviceRepo.findIdByUserId(identity.getUserId()), executor);
+            recent = CompletableFuture.supplyAsync(
+                    () -> transactionService.getRecentTransactions(identity.getCardId(), recentLimit), executor);
+        } catch (RejectedExecutionException e) {
+            // Don't leave the reads that did get queued to run for nobody
+            cancel(user, device);
+            throw new ServiceBusyException("Bootstrap busy, retry shortly", 1);
+        }
+
+        try {
+            CompletableFuture.allOf(user, device, recent).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(user, device, recent);
+            throw new DeadlineExceededException("Bootstrap timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Bootstrap interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+
+        String deviceId = device.join().orElse(null);
+        return new BootstrapResponse(
+                user.join(),
+                deviceId,
+                deviceId != null ? DEVICE_REGISTERED : DEVICE_NOT_REGISTERED,
+                recent.join());
+    }
+
+    private static void cancel(CompletableFuture<?>... futures) {
+        for (CompletableFuture<?> future : futures) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,298 @@
+package net.otgon.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import net.otgon.backend.entity.Device;
+import net.otgon.backend.entity.User;
+import net.otgon.backend.util.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the in-process caches of all nodes coherent. The node that writes
+ * updates its own caches at commit as before; this tells the other nodes to
+ * evict what the write made stale.
+ *
+ * Messages are compact text, several items per message:
+ * {@code <node> <seq> c:<cardId>:<userId>,d:<deviceId>,u:<userId>}.
+ * A sender thread batches them off the request path. Each node numbers its
+ * messages, and anything lost (a full outbox, a failed send) leaves a hole in
+ * the numbering. A receiver that sees a hole flushes everything, as it does
+ * whenever its listener (re)connects, since messages sent while it was not
+ * listening are gone. A card change also refreshes the wallet streams open on
+ * the receiving node.
+ *
+ * Without a transport (cache.invalidation.transport=none) nothing is sent.
+ */
+@Component
+public class CacheInvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    // Keeps a message well under the 8000-byte NOTIFY payload limit
+    private static final int MAX_ITEMS_PER_MESSAGE = 64;
+
+    private final InvalidationTransport transport;
+    private final UserInfoCache userInfoCache;
+    private final HistoryCache historyCache;
+    private final ReadYourWrites readYourWrites;
+    private final WalletEventHub walletEventHub;
+    private final LedgerService ledgerService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final MeterRegistry meterRegistry;
+    private final long pollMs;
+    private final long retryMs;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final BlockingQueue<String> outbox;
+    private final AtomicLong seq = new AtomicLong();
+    // Listener thread only
+    private final Map<String, Long> lastSeqByNode = new HashMap<>();
+
+    private final Counter sent;
+    private final Counter received;
+    private final Counter dropped;
+    private final Counter reconnects;
+
+    private volatile boolean running;
+    private Thread sender;
+    private Thread listener;
+
+    public CacheInvalidationBus(ObjectProvider<InvalidationTransport> transport,
+                                UserInfoCache userInfoCache,
+                                HistoryCache historyCache,
+                                ReadYourWrites readYourWrites,
+                                WalletEventHub walletEventHub,
+                                LedgerService ledgerService,
+                                EntityManagerFactory entityManagerFactory,
+                                MeterRegistry meterRegistry,
+                                @Value("${cache.invalidation.outbox-capacity:10000}") int outboxCapacity,
+                                @Value("${cache.invalidation.poll-ms:10000}") long pollMs,
+                                @Value("${cache.invalidation.retry-ms:2000}") long retryMs) {
+        this.transport = transport.getIfAvailable();
+        this.userInfoCache = userInfoCache;
+        this.historyCache = historyCache;
+        this.readYourWrites = readYourWrites;
+        this.walletEventHub = walletEventHub;
+        this.ledgerService = ledgerService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.meterRegistry = meterRegistry;
+        this.pollMs = pollMs;
+        this.retryMs = retryMs;
+        this.outbox = new ArrayBlockingQueue<>(outboxCapacity);
+        this.sent = Counter.builder("cache.invalidation.sent")
+                .description("Invalidation items sent to other nodes").register(meterRegistry);
+        this.received = Counter.builder("cache.invalidation.received")
+                .description("Invalidation items applied from other nodes").register(meterRegistry);
+        this.dropped = Counter.builder("cache.invalidation.dropped")
+                .description("Items lost to a full outbox or a failed send").register(meterRegistry);
+        this.reconnects = Counter.builder("cache.invalidation.reconnects")
+                .description("Times the listener lost its connection").register(meterRegistry);
+    }
+
+    /** After commit, tells the other nodes the card's balance and ledger changed */
+    public void cardChangedAfterCommit(String cardId, String userId) {
+        publishAfterCommit("c:" + cardId + ":" + userId);
+    }
+
+    /** After commit, tells the other nodes the device row changed */
+    public void deviceChangedAfterCommit(String deviceId) {
+        publishAfterCommit("d:" + deviceId);
+    }
+
+    /** After commit, tells the other nodes the user row changed */
+    public void userChangedAfterCommit(String userId) {
+        publishAfterCommit("u:" + userId);
+    }
+
+    private void publishAfterCommit(String item) {
+        if (transport == null) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            if (!outbox.offer(item)) {
+                // Burn a number: receivers see the hole and flush
+                seq.incrementAndGet();
+                dropped.increment();
+            }
+        });
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (transport == null || running) {
+            return;
+        }
+        running = true;
+        sender = daemon("cache-invalidation-sender", this::sendLoop);
+        listener = daemon("cache-invalidation-listener", this::listenLoop);
+        log.info("Cache invalidation bus started as node {}", nodeId);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        for (Thread thread : new Thread[]{sender, listener}) {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private void sendLoop() {
+        List<String> items = new ArrayList<>(MAX_ITEMS_PER_MESSAGE);
+        while (running) {
+            try {
+                String first = outbox.poll(pollMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                items.add(first);
+                outbox.drainTo(items, MAX_ITEMS_PER_MESSAGE - 1);
+                send(items);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                items.clear();
+            }
+        }
+    }
+
+    private void send(List<String> items) throws InterruptedException {
+        // Numbered before sending, so a message that never arrives leaves a hole
+        String payload = nodeId + " " + seq.incrementAndGet() + " " + String.join(",", items);
+        try {
+            transport.send(payload);
+            sent.increment(items.size());
+        } catch (Exception e) {
+            dropped.increment(items.size());
+            log.warn("Could not send cache invalidation: {}", e.getMessage());
+            Thread.sleep(retryMs);
+        }
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (InvalidationTransport.Subscription subscription = transport.subscribe()) {
+                // Whatever was sent while this node was not listening is lost
+                lastSeqByNode.clear();
+                flushAll("connect");
+                while (running) {
+                    for (String payload : subscription.poll(pollMs)) {
+                        handle(payload);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                reconnects.increment();
+                log.warn("Cache invalidation listener disconnected, retrying in {} ms: {}", retryMs, e.getMessage());
+                try {
+                    Thread.sleep(retryMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void handle(String payload) {
+        String[] parts = payload.split(" ", 3);
+        long messageSeq;
+        try {
+            messageSeq = Long.parseLong(parts[1]);
+        } catch (RuntimeException e) {
+            log.warn("Malformed cache invalidation message: {}", payload);
+            flushAll("malformed");
+            return;
+        }
+        String sender = parts[0];
+        if (sender.equals(nodeId) || parts.length < 3) {
+            // This node applied its own writes at commit
+            return;
+        }
+        Long previous = lastSeqByNode.put(sender, messageSeq);
+        if (previous != null && messageSeq != previous + 1) {
+            log.warn("Missed cache invalidations from node {} ({} -> {}), flushing", sender, previous, messageSeq);
+            flushAll("gap");
+            return;
+        }
+        for (String item : parts[2].split(",")) {
+            apply(item);
+        }
+    }
+
+    private void apply(String item) {
+        String[] fields = item.split(":");
+        switch (fields[0]) {
+            case "c" -> {
+                historyCache.evict(fields[1]);
+                userInfoCache.evict(fields[2]);
+                // The write may not have reached the replica yet
+                readYourWrites.pin(fields[1]);
+                refreshStreams(fields[1]);
+            }
+            case "d" -> entityManagerFactory.getCache().evict(Device.class, fields[1]);
+            case "u" -> entityManagerFactory.getCache().evict(User.class, fields[1]);
+            default -> {
+                log.warn("Unknown cache invalidation item: {}", item);
+                return;
+            }
+        }
+        received.increment();
+    }
+
+    // The writer's node pushed the change to its own streams; streams here only hear of it now
+    private void refreshStreams(String cardId) {
+        try {
+            // From the primary: the replica may not have the change this message is about
+            walletEventHub.refresh(cardId, () -> ledgerService.walletState(cardId)
+                    .orElseThrow(() -> new IllegalStateException("Card not found: " + cardId)));
+        } catch (RuntimeException e) {
+            // The app still sees the change on its next poll or reconnect
+            log.warn("Could not refresh wallet streams for card {}: {}", cardId, e.getMessage());
+        }
+    }
+
+    private void flushAll(String reason) {
+        userInfoCache.evictAll();
+        historyCache.evictAll();
+        entityManagerFactory.getCache().evictAll();
+        meterRegistry.counter("cache.invalidation.flushes", "reason", reason).increment();
+        log.info("Flushed local caches ({})", reason);
+    }
+
+    private static Thread daemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
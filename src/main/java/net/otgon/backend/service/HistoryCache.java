@@ -0,0 +1,149 @@
+package net.otgon.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import net.otgon.backend.entity.LedgerEntry;
+import net.otgon.backend.util.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Newest ledger entries per card, keyed by card id.
+ *
+ * A card's window (up to {@code entries-per-card} entries, newest first) is
+ * loaded on the first history read. Ledger appends extend it in place after
+ * commit, so active riders keep reading from memory. The cache is bounded by
+ * a total entry budget, and the least recently used cards are evicted first.
+ * A read the window cannot answer (a cursor older than the window) counts as
+ * a miss and goes to the database.
+ */
+@Component
+public class HistoryCache {
+
+    private final Cache<String, CardHistory> cache;
+    private final int windowSize;
+    private final Counter hits;
+    private final Counter misses;
+
+    public HistoryCache(MeterRegistry meterRegistry,
+                        @Value("${cache.history.entries-per-card:50}") int windowSize,
+                        @Value("${cache.history.max-entries:200000}") long maxEntries) {
+        this.windowSize = windowSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxEntries)
+                .weigher((String cardId, CardHistory history) -> Math.max(1, history.entries().size()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "history");
+        this.hits = Counter.builder("cache.history.reads").tag("result", "hit")
+                .description("History reads served from memory").register(meterRegistry);
+        this.misses = Counter.builder("cache.history.reads").tag("result", "miss")
+                .description("History reads that went to the database").register(meterRegistry);
+    }
+
+    /** Entries per card the loader must return (newest first) */
+    public int windowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Up to {@code limit} entries with seq below {@code beforeSeq}, newest
+     * first; empty when the window cannot answer.
+     */
+    public Optional<List<LedgerEntry>> newest(String cardId, long beforeSeq, int limit,
+                                              Function<String, List<LedgerEntry>> loader) {
+        CardHistory history = load(cardId, loader);
+        List<LedgerEntry> page = new ArrayList<>(Math.min(limit, history.entries().size()));
+        for (LedgerEntry entry : history.entries()) {
+            if (entry.getSeq() < beforeSeq) {
+                page.add(entry);
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+        }
+        if (page.size() == limit || history.complete()) {
+            hits.increment();
+            return Optional.of(page);
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /** The card's whole history, if it fits in the window */
+    public Optional<List<LedgerEntry>> all(String cardId, Function<String, List<LedgerEntry>> loader) {
+        CardHistory history = load(cardId, loader);
+        if (history.complete()) {
+            hits.increment();
+            return Optional.of(history.entries());
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Adds a just-written entry to its card's window once the transaction
+     * commits. Cards not in the cache are left alone. If the entry is not
+     * the next seq (commits finished out of order, or a backfill ran), the
+     * window is dropped and reloaded on the next read.
+     */
+    public void appendAfterCommit(LedgerEntry entry) {
+        AfterCommit.run(() -> cache.asMap().computeIfPresent(entry.getCardId(), (cardId, history) -> {
+            if (entry.getSeq() <= history.topSeq()) {
+                return history;
+            }
+            if (entry.getSeq() != history.topSeq() + 1) {
+                return null;
+            }
+            return history.prepend(entry, windowSize);
+        }));
+    }
+
+    /** Drops the card's window; for entries appended on another node */
+    public void evict(String cardId) {
+        cache.invalidate(cardId);
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    private CardHistory load(String cardId, Function<String, List<LedgerEntry>> loader) {
+        CardHistory cached = cache.getIfPresent(cardId);
+        if (cached != null) {
+            return cached;
+        }
+        // Loaded under the key's lock, so an append committing meanwhile is applied after the load
+        return cache.get(cardId, id -> {
+            List<LedgerEntry> entries = loader.apply(id);
+            return new CardHistory(List.copyOf(entries), entries.size() < windowSize);
+        });
+    }
+
+    /** Newest-first entries; complete when they are the card's whole history */
+    record CardHistory(List<LedgerEntry> entries, boolean complete) {
+
+        long topSeq() {
+            return entries.isEmpty() ? 0 : entries.get(0).getSeq();
+        }
+
+        CardHistory prepend(LedgerEntry entry, int windowSize) {
+            List<LedgerEntry> updated = new ArrayList<>(Math.min(entries.size() + 1, windowSize));
+            updated.add(entry);
+            for (int i = 0; i < entries.size() && updated.size() < windowSize; i++) {
+                updated.add(entries.get(i));
+            }
+            // Dropping the oldest entry means the window no longer holds everything
+            boolean stillComplete = complete && entries.size() + 1 <= windowSize;
+            return new CardHistory(List.copyOf(updated), stillComplete);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package net.otgon.backend.service;
+
+import java.util.List;
+
+/**
+ * Carries cache invalidation messages between nodes for
+ * {@link CacheInvalidationBus}. Delivery is best effort: the bus numbers its
+ * messages and flushes its caches when one may have been lost.
+ */
+public interface InvalidationTransport {
+
+    /** Sends one message to every node, this one included */
+    void send(String payload) throws Exception;
+
+    /** Starts receiving; messages sent before this call are not delivered */
+    Subscription subscribe() throws Exception;
+
+    interface Subscription extends AutoCloseable {
+
+        /** Messages received so far, waiting up to timeoutMs for the first; throws once the connection is lost */
+        List<String> poll(long timeoutMs) throws Exception;
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,187 @@
+package net.otgon.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs a scheduled job on one node of the cluster. Every node's trigger
+ * fires, and each one tries to take the job's lease in job_leases (V5
+ * migration). The node that takes it runs the job, and the others skip that
+ * run.
+ *
+ * A lease is held for at least min-hold from the start, so a node whose
+ * trigger fires a little late does not run the job a second time. If the
+ * node running a job dies, its lease runs out after max-hold, and the next
+ * trigger on any live node runs the job. Times come from the database clock,
+ * so clock skew between nodes does not matter, and are absolute
+ * (CURRENT_TIMESTAMP into timestamptz columns), so neither does the session
+ * time zone of each node's connections. A random delay of up to jitter before
+ * each attempt means the same node does not always win.
+ *
+ * Runs are counted in scheduled.job.runs, tagged with the job, the node and
+ * the outcome (ran, skipped, failed).
+ */
+@Service
+public class JobLeaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobLeaseService.class);
+
+    private static final String NOW_SQL = "SELECT CURRENT_TIMESTAMP";
+
+    private static final String TAKE_SQL = """
+            UPDATE job_leases SET locked_until = ?, locked_at = ?, locked_by = ?
+             WHERE name = ? AND locked_until <= ?
+            """;
+
+    private static final String CREATE_SQL = """
+            INSERT INTO job_leases (name, locked_until, locked_at, locked_by)
+            SELECT CAST(? AS VARCHAR(100)), CAST(? AS TIMESTAMP WITH TIME ZONE), CAST(? AS TIMESTAMP WITH TIME ZONE),
+                   CAST(? AS VARCHAR(255))
+             WHERE NOT EXISTS (SELECT 1 FROM job_leases WHERE name = ?)
+            """;
+
+    // Only the run that took the lease may shorten it
+    private static final String RELEASE_SQL = """
+            UPDATE job_leases SET locked_until = ?
+             WHERE name = ? AND locked_by = ? AND locked_at = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate ownTransaction;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final Duration minHold;
+    private final Duration maxHold;
+    private final Duration jitter;
+
+    public JobLeaseService(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${scheduling.node-id:}") String nodeId,
+                           @Value("${scheduling.lease.min-hold:1m}") Duration minHold,
+                           @Value("${scheduling.lease.max-hold:30m}") Duration maxHold,
+                           @Value("${scheduling.lease.jitter:10s}") Duration jitter) {
+        if (!jitter.minus(minHold).isNegative()) {
+            throw new IllegalArgumentException("scheduling.lease.jitter must be shorter than min-hold");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        // Leases commit on their own, whatever transaction the job runs in
+        this.ownTransaction = new TransactionTemplate(transactionManager);
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.nodeId = nodeId.isBlank() ? hostName() : nodeId;
+        this.minHold = minHold;
+        this.maxHold = maxHold;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Runs the task if this node takes the job's lease; true if it ran.
+     * An exception from the task is rethrown once the lease is released.
+     */
+    public boolean runExclusive(String job, Runnable task) {
+        return sleepJitter() && runExclusiveNow(job, task);
+    }
+
+    /**
+     * As {@link #runExclusive}, without the jitter: for runs that no other
+     * node's trigger fires with, such as one at startup.
+     */
+    public boolean runExclusiveNow(String job, Runnable task) {
+        OffsetDateTime lockedAt = tryAcquire(job);
+        if (lockedAt == null) {
+            log.debug("Job {} skipped: another node holds the lease", job);
+            count(job, "skipped");
+            return false;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failed";
+        try {
+            task.run();
+            outcome = "ran";
+            return true;
+        } finally {
+            release(job, lockedAt);
+            sample.stop(meterRegistry.timer("scheduled.job.duration", "job", job, "node", nodeId));
+            count(job, outcome);
+            log.info("Job {} {} on node {}", job, outcome, nodeId);
+        }
+    }
+
+    /** Takes the job's lease for max-hold; the database time it was taken, or null if held elsewhere */
+    OffsetDateTime tryAcquire(String job) {
+        try {
+            return ownTransaction.execute(status -> {
+                OffsetDateTime now = jdbcTemplate.queryForObject(NOW_SQL, OffsetDateTime.class);
+                OffsetDateTime until = now.plus(maxHold);
+                int taken = jdbcTemplate.update(TAKE_SQL, until, now, nodeId, job, now);
+                if (taken == 0) {
+                    taken = jdbcTemplate.update(CREATE_SQL, job, until, now, nodeId, job);
+                }
+                return taken == 1 ? now : null;
+            });
+        } catch (DuplicateKeyException e) {
+            // Another node created the row first
+            return null;
+        }
+    }
+
+    // Keeps the lease until min-hold after the start, then lets it go
+    private void release(String job, OffsetDateTime lockedAt) {
+        try {
+            ownTransaction.executeWithoutResult(status -> {
+                OffsetDateTime now = jdbcTemplate.queryForObject(NOW_SQL, OffsetDateTime.class);
+                OffsetDateTime earliest = lockedAt.plus(minHold);
+                jdbcTemplate.update(RELEASE_SQL, now.isAfter(earliest) ? now : earliest, job, nodeId, lockedAt);
+            });
+        } catch (RuntimeException e) {
+            // The lease then runs out at max-hold
+            log.warn("Could not release lease on job {}: {}", job, e.getMessage());
+        }
+    }
+
+    private boolean sleepJitter() {
+        if (jitter.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void count(String job, String outcome) {
+        meterRegistry.counter("scheduled.job.runs", "job", job, "node", nodeId, "outcome", outcome).increment();
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString().substring(0, 8);
+        }
+    }
+}
@@ -4,6 +4,10 @@ import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.entity.Card;
+import net.otgon.backend.entity.User;
+import net.otgon.backend.exception.InvalidTokenException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -13,9 +17,17 @@ import java.security.Key;
 @Service
 public class JwtService {
 
+    // Stable identifiers embedded in the token so hot reads can skip the users-table lookup
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_CARD_ID = "cid";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
+    // Access token lifetime; renewal goes through refresh tokens, not a password login
+    @Value("${jwt.expiration:3600000}")
+    private long expirationMs = 3600000;
+
     @Getter
     private Key secretKey;
 
@@ -34,21 +46,41 @@ public class JwtService {
         init();
     }
 
+    public long getExpirationSeconds() {
+        return expirationMs / 1000;
+    }
+
     public String extractUsername(String token) {
+        return parseClaims(token).getSubject();
+    }
+
+    /**
+     * Reads username, user id and card id from the token.
+     * Tokens issued before the identity claims existed return null ids.
+     */
+    public TokenIdentity extractIdentity(String token) {
+        Claims claims = parseClaims(token);
+        return new TokenIdentity(
+                claims.getSubject(),
+                claims.get(CLAIM_USER_ID, String.class),
+                claims.get(CLAIM_CARD_ID, String.class));
+    }
+
+    private Claims parseClaims(String token) {
         try {
             Jws<Claims> claimsJws = Jwts.parserBuilder()
                     .setSigningKey(secretKey)
                     .build()
                     .parseClaimsJws(token);
-            return claimsJws.getBody().getSubject();
+            return claimsJws.getBody();
         } catch (ExpiredJwtException e) {
             System.out.println("[JWT] Token expired for user: " + e.getClaims().getSubject());
-            throw new RuntimeException("Token expired", e);
+            throw new InvalidTokenException("Token expired", e);
         } catch (JwtException e) {
             System.out.println("[JWT] Invalid token: " + e.getMessage());
-            throw new RuntimeException("Invalid token", e);
+            throw new InvalidTokenException("Invalid token", e);
         } catch (Exception e) {
-            throw new RuntimeException("[JWT] Unexpected exception", e);
+            throw new InvalidTokenException("[JWT] Unexpected exception", e);
         }
     }
 
@@ -56,7 +88,26 @@ public class JwtService {
         return Jwts.builder()
                 .setSubject(username)
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + 3600000)) 
+                .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
+                .signWith(getSecretKey(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    public String generateToken(User user) {
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(user.getUsername())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + expirationMs));
+
+        if (user.getId() != null) {
+            builder.claim(CLAIM_USER_ID, user.getId());
+        }
+        Card card = user.getCard();
+        if (card != null && card.getId() != null) {
+            builder.claim(CLAIM_CARD_ID, card.getId());
+        }
+
+        return builder
                 .signWith(getSecretKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
@@ -0,0 +1,125 @@
+package net.otgon.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import net.otgon.backend.dto.LedgerBackfillResponse;
+import net.otgon.backend.exception.ServiceBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves legacy deduction/top-up history into the ledger for every card that
+ * has not been migrated yet. Cards are independent, so they run in parallel,
+ * one short transaction each. Reads and writes migrate lazily as well, so this
+ * only has to finish eventually. The startup run then fills in daily rollups
+ * for cards whose ledger predates them.
+ */
+@Service
+public class LedgerBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerBackfillService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerService ledgerService;
+    private final RollupRebuildService rollupRebuildService;
+    private final boolean onStartup;
+    private final ExecutorService pool;
+    private final Semaphore running = new Semaphore(1);
+
+    public LedgerBackfillService(JdbcTemplate jdbcTemplate,
+                                 LedgerService ledgerService,
+                                 RollupRebuildService rollupRebuildService,
+                                 @Value("${ledger.backfill.threads:4}") int threads,
+                                 @Value("${ledger.backfill.on-startup:true}") boolean onStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerService = ledgerService;
+        this.rollupRebuildService = rollupRebuildService;
+        this.onStartup = onStartup;
+
+        // Each worker holds a pooled DB connection, so keep this well below the Hikari pool size
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ledger-backfill-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!onStartup) {
+            return;
+        }
+        Thread t = new Thread(() -> {
+            try {
+                backfillAll();
+                rollupRebuildService.rebuildMissing();
+            } catch (ServiceBusyException e) {
+                log.info("Ledger backfill or rollup rebuild already running");
+            } catch (RuntimeException e) {
+                log.error("Ledger backfill failed", e);
+            }
+        }, "ledger-backfill-start");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public LedgerBackfillResponse backfillAll() {
+        if (!running.tryAcquire()) {
+            throw new ServiceBusyException("Ledger backfill already running", 30);
+        }
+        try {
+            return doBackfill();
+        } finally {
+            running.release();
+        }
+    }
+
+    private LedgerBackfillResponse doBackfill() {
+        long start = System.currentTimeMillis();
+        List<String> cardIds = jdbcTemplate.queryForList("SELECT id FROM cards WHERE ledger_seq = 0", String.class);
+
+        List<Future<Boolean>> futures = new ArrayList<>(cardIds.size());
+        for (String cardId : cardIds) {
+            futures.add(pool.submit(() -> ledgerService.ensureBackfilled(cardId)));
+        }
+
+        int migrated = 0;
+        int failed = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                if (futures.get(i).get()) {
+                    migrated++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Ledger backfill interrupted", e);
+            } catch (Exception e) {
+                failed++;
+                log.warn("Ledger backfill failed for card {}: {}", cardIds.get(i), e.getMessage());
+            }
+        }
+
+        long durationMs = System.currentTimeMillis() - start;
+        log.info("Ledger backfill: {} cards checked, {} migrated, {} failed in {} ms",
+                cardIds.size(), migrated, failed, durationMs);
+        return new LedgerBackfillResponse(cardIds.size(), migrated, failed, durationMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,207 @@
+package net.otgon.backend.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import net.otgon.backend.dto.WalletEvent;
+import net.otgon.backend.entity.Card;
+import net.otgon.backend.entity.DailyRollup;
+import net.otgon.backend.entity.LedgerEntry;
+import net.otgon.backend.entity.TopUpTransaction;
+import net.otgon.backend.entity.Transaction;
+import net.otgon.backend.repository.LedgerEntryRepo;
+import net.otgon.backend.repository.TopUpTransactionRepo;
+import net.otgon.backend.repository.TransactionRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes the per-card ledger. Callers lock the card with {@link #lockForUpdate}
+ * or {@link #lockCardOf} before reading its balance, change the balance, then {@link #append} in the
+ * same transaction.
+ */
+@Service
+public class LedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerService.class);
+
+    private static final String SUCCESS = "SUCCESS";
+    private static final LocalDateTime UNKNOWN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final LedgerEntryRepo ledgerEntryRepo;
+    private final TransactionRepo transactionRepo;
+    private final TopUpTransactionRepo topUpTransactionRepo;
+    private final HistoryCache historyCache;
+    private final WalletEventHub walletEventHub;
+    private final ReadYourWrites readYourWrites;
+
+    public LedgerService(LedgerEntryRepo ledgerEntryRepo,
+                         TransactionRepo transactionRepo,
+                         TopUpTransactionRepo topUpTransactionRepo,
+                         HistoryCache historyCache,
+                         WalletEventHub walletEventHub,
+                         ReadYourWrites readYourWrites) {
+        this.ledgerEntryRepo = ledgerEntryRepo;
+        this.transactionRepo = transactionRepo;
+        this.topUpTransactionRepo = topUpTransactionRepo;
+        this.historyCache = historyCache;
+        this.walletEventHub = walletEventHub;
+        this.readYourWrites = readYourWrites;
+    }
+
+    /**
+     * Re-reads the card under a row lock so concurrent redeems/top-ups on the
+     * same card serialize. A card whose history is not in the ledger yet is
+     * migrated here first, so its new entry lands after the old ones.
+     */
+    public void lockForUpdate(Card card) {
+        // refresh() re-reads the row, so a card inserted earlier in this transaction must hit the DB first
+        entityManager.flush();
+        entityManager.refresh(card, LockModeType.PESSIMISTIC_WRITE);
+        if (card.getLedgerSeq() == 0) {
+            backfill(card);
+        }
+    }
+
+    /**
+     * Loads the user's card and locks it in one statement, for callers that
+     * hold only the user id. The card must not be loaded in this persistence
+     * context yet (it would come back unrefreshed): use {@link #lockForUpdate}
+     * for a card already in hand.
+     */
+    public Optional<Card> lockCardOf(String userId) {
+        Optional<Card> card = entityManager
+                .createQuery("SELECT c FROM Card c WHERE c.user.id = :userId", Card.class)
+                .setParameter("userId", userId)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultStream()
+                .findFirst();
+        card.filter(c -> c.getLedgerSeq() == 0).ifPresent(this::backfill);
+        return card;
+    }
+
+    /** Records a change already applied to card.balance; requires the card lock */
+    public LedgerEntry append(Card card, String type, double signedAmount, String status,
+                              String sourceId, LocalDateTime at) {
+        long seq = card.getLedgerSeq() + 1;
+        card.setLedgerSeq(seq);
+        LedgerEntry entry = ledgerEntryRepo.save(new LedgerEntry(card.getId(), seq, type, signedAmount,
+                card.getBalance(), status, sourceId, at));
+        if (SUCCESS.equals(status)) {
+            addToRollup(entry);
+        }
+        historyCache.appendAfterCommit(entry);
+        walletEventHub.publishAfterCommit(entry);
+        readYourWrites.pinAfterCommit(card.getId());
+        return entry;
+    }
+
+    // Card lock is held, so find-then-update cannot race another append for this card
+    private void addToRollup(LedgerEntry entry) {
+        DailyRollup.Key key = new DailyRollup.Key(entry.getCardId(), entry.getCreatedAt().toLocalDate());
+        DailyRollup rollup = entityManager.find(DailyRollup.class, key);
+        if (rollup == null) {
+            rollup = new DailyRollup(key.getCardId(), key.getDay());
+            entityManager.persist(rollup);
+        }
+        rollup.add(entry.getType(), entry.getAmount());
+    }
+
+    /**
+     * The card's balance and ledger seq as a wallet stream snapshot. Read in a
+     * read-write transaction, which the replica router always sends to the
+     * primary: a snapshot from a lagging replica could predate a change the
+     * stream will then never be sent.
+     */
+    @Transactional
+    public Optional<WalletEvent> walletState(String cardId) {
+        return Optional.ofNullable(entityManager.find(Card.class, cardId))
+                .map(card -> new WalletEvent(card.getLedgerSeq(), card.getBalance(), null));
+    }
+
+    /** Migrates one card if needed; returns true when entries were written */
+    @Transactional
+    public boolean ensureBackfilled(String cardId) {
+        Card card = entityManager.find(Card.class, cardId, LockModeType.PESSIMISTIC_WRITE);
+        if (card == null || card.getLedgerSeq() != 0) {
+            return false;
+        }
+        return backfill(card) > 0;
+    }
+
+    /**
+     * Rebuilds ledger entries for a card from the legacy deduction and top-up
+     * tables. Balance-after is walked forward from the opening balance implied
+     * by the current balance minus every recorded change.
+     */
+    int backfill(Card card) {
+        String cardId = card.getId();
+        List<Transaction> deductions = transactionRepo.findByCardIdOrderBySyncedAtDesc(cardId);
+        List<TopUpTransaction> topUps = topUpTransactionRepo.findByCardIdOrderByCreatedAtDesc(cardId);
+        if (deductions.isEmpty() && topUps.isEmpty()) {
+            return 0;
+        }
+
+        List<LegacyRow> rows = new ArrayList<>(deductions.size() + topUps.size());
+        for (Transaction tx : deductions) {
+            rows.add(new LegacyRow(tx.getId(), LedgerEntry.DEDUCT, -tx.getAmount(), tx.getStatus(), tx.getSyncedAt()));
+        }
+        for (TopUpTransaction tx : topUps) {
+            rows.add(new LegacyRow(tx.getId(), LedgerEntry.TOPUP, tx.getAmount(), SUCCESS, tx.getCreatedAt()));
+        }
+        rows.sort(Comparator.comparing(LegacyRow::at, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(LegacyRow::id));
+
+        double balance = card.getBalance();
+        for (LegacyRow row : rows) {
+            if (SUCCESS.equals(row.status())) {
+                balance -= row.amount();
+            }
+        }
+
+        List<LedgerEntry> entries = new ArrayList<>(rows.size());
+        long seq = 0;
+        for (LegacyRow row : rows) {
+            if (SUCCESS.equals(row.status())) {
+                balance += row.amount();
+            }
+            LocalDateTime at = row.at() != null ? row.at() : UNKNOWN_TIME;
+            entries.add(new LedgerEntry(cardId, ++seq, row.type(), row.amount(), balance,
+                    row.status(), row.id(), at));
+        }
+        ledgerEntryRepo.saveAll(entries);
+        card.setLedgerSeq(seq);
+
+        // The card had no ledger, so it has no rollups yet either
+        Map<LocalDate, DailyRollup> rollups = new LinkedHashMap<>();
+        for (LedgerEntry entry : entries) {
+            if (SUCCESS.equals(entry.getStatus())) {
+                rollups.computeIfAbsent(entry.getCreatedAt().toLocalDate(), day -> new DailyRollup(cardId, day))
+                        .add(entry.getType(), entry.getAmount());
+            }
+        }
+        rollups.values().forEach(entityManager::persist);
+        // The caller usually re-reads the history it just migrated
+        readYourWrites.pinAfterCommit(cardId);
+
+        log.info("Backfilled {} ledger entries for card {}", entries.size(), cardId);
+        return entries.size();
+    }
+
+    private record LegacyRow(String id, String type, double amount, String status, LocalDateTime at) {
+    }
+}
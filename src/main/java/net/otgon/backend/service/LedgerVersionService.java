@@ -0,0 +1,44 @@
+package net.otgon.backend.service;
+
+import net.otgon.backend.repository.CardRepo;
+import org.springframework.stereotype.Service;
+
+/**
+ * ETags for balance and history reads. The card's ledger seq goes up on every
+ * redeem and top-up, so it changes exactly when those responses can change.
+ */
+@Service
+public class LedgerVersionService {
+
+    private final AccountResolver accountResolver;
+    private final CardRepo cardRepo;
+    private final ReadYourWrites readYourWrites;
+
+    public LedgerVersionService(AccountResolver accountResolver, CardRepo cardRepo, ReadYourWrites readYourWrites) {
+        this.accountResolver = accountResolver;
+        this.cardRepo = cardRepo;
+        this.readYourWrites = readYourWrites;
+    }
+
+    /** Quoted ETag for the token's card, e.g. "v42" */
+    public String etagFor(String token) {
+        String cardId = accountResolver.resolve(token).getCardId();
+        long version = cardRepo.findLedgerSeqById(cardId)
+                .orElseThrow(() -> new RuntimeException("Card not found for user"));
+        return "\"v" + version + "\"";
+    }
+
+    /**
+     * ETag for the token's card history, read from where the history is read:
+     * the replica, unless the card is pinned to the primary. Taken before the
+     * body, it is never newer than the body, so a lagging replica can cost an
+     * extra full response but never a 304 over a stale one. Null while the
+     * replica has not seen the card yet.
+     */
+    public String historyEtagFor(String token) {
+        String cardId = accountResolver.resolve(token).getCardId();
+        return readYourWrites.onReplica(cardId, () -> cardRepo.findLedgerSeqById(cardId))
+                .map(version -> "\"v" + version + "\"")
+                .orElse(null);
+    }
+}
@@ -0,0 +1,122 @@
+package net.otgon.backend.service;
+
+import net.otgon.backend.exception.TooManyRequestsException;
+import net.otgon.backend.util.SlidingWindowCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Rejects password logins before any BCrypt work once a client has failed
+ * too often on a username, or a client address has made too many attempts.
+ *
+ * The hard lock is per username and client address, so someone who knows a
+ * rider's username can only lock themselves out. Failures on the username
+ * from all addresses together are a soft limit: past it, each address gets
+ * a single failure instead of the usual allowance, but an address that has
+ * not failed on the username still gets through to the password check.
+ * Rejected attempts are not counted as failures, so hammering never extends
+ * a lock. A successful login clears the failures on the username.
+ *
+ * Counts are kept per real key, up to max-keys of each. A credential-stuffing
+ * run over more names than that evicts counts (letting some attempts through
+ * early) rather than locking out riders it never tried.
+ */
+@Component
+public class LoginThrottle {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginThrottle.class);
+
+    private final SlidingWindowCounter clientFailures;
+    private final SlidingWindowCounter usernameFailures;
+    private final SlidingWindowCounter addressAttempts;
+    private final int maxClientFailures;
+    private final int maxUsernameFailures;
+    private final int maxAddressAttempts;
+    private final AuthMetrics authMetrics;
+    private final LongSupplier clock;
+
+    @Autowired
+    public LoginThrottle(AuthMetrics authMetrics,
+                         @Value("${auth.login.throttle.max-keys:100000}") int maxKeys,
+                         @Value("${auth.login.throttle.client.max-failures:5}") int maxClientFailures,
+                         @Value("${auth.login.throttle.username.max-failures:20}") int maxUsernameFailures,
+                         @Value("${auth.login.throttle.username.window-seconds:900}") long usernameWindowSeconds,
+                         @Value("${auth.login.throttle.address.max-attempts:30}") int maxAddressAttempts,
+                         @Value("${auth.login.throttle.address.window-seconds:60}") long addressWindowSeconds) {
+        this(authMetrics, maxKeys, maxClientFailures, maxUsernameFailures, usernameWindowSeconds,
+                maxAddressAttempts, addressWindowSeconds, System::currentTimeMillis);
+    }
+
+    LoginThrottle(AuthMetrics authMetrics, int maxKeys,
+                  int maxClientFailures, int maxUsernameFailures, long usernameWindowSeconds,
+                  int maxAddressAttempts, long addressWindowSeconds,
+                  LongSupplier clock) {
+        this.authMetrics = authMetrics;
+        this.clientFailures = new SlidingWindowCounter(maxKeys, usernameWindowSeconds * 1000);
+        this.usernameFailures = new SlidingWindowCounter(maxKeys, usernameWindowSeconds * 1000);
+        this.addressAttempts = new SlidingWindowCounter(maxKeys, addressWindowSeconds * 1000);
+        this.maxClientFailures = maxClientFailures;
+        this.maxUsernameFailures = maxUsernameFailures;
+        this.maxAddressAttempts = maxAddressAttempts;
+        this.clock = clock;
+    }
+
+    /** Call before looking up the user; counts the attempt for the client address */
+    public void check(String username, String clientAddress) {
+        long now = clock.getAsLong();
+
+        if (StringUtils.hasText(clientAddress)) {
+            double attempts = addressAttempts.increment(clientAddress, now);
+            if (attempts > maxAddressAttempts) {
+                // Escalates while the address keeps trying: only its own attempts count here
+                long excess = (long) (attempts - maxAddressAttempts);
+                reject("address", Math.min(windowSeconds(addressAttempts), 1L << Math.min(30, excess)));
+            }
+        }
+
+        String key = normalize(username);
+        int allowed = usernameFailures.count(key, now) >= maxUsernameFailures ? 1 : maxClientFailures;
+        if (clientFailures.count(clientKey(key, clientAddress), now) >= allowed) {
+            reject("username", windowSeconds(clientFailures));
+        }
+    }
+
+    public void recordFailure(String username, String clientAddress) {
+        long now = clock.getAsLong();
+        String key = normalize(username);
+        clientFailures.increment(clientKey(key, clientAddress), now);
+        usernameFailures.increment(key, now);
+    }
+
+    /** The rider proved the password: earlier failures no longer count against them */
+    public void recordSuccess(String username, String clientAddress) {
+        String key = normalize(username);
+        clientFailures.reset(clientKey(key, clientAddress));
+        usernameFailures.reset(key);
+    }
+
+    private void reject(String reason, long retryAfter) {
+        authMetrics.recordLoginBlocked(reason);
+        log.debug("Login throttled by {}, retry after {}s", reason, retryAfter);
+        throw new TooManyRequestsException("Too many login attempts, retry later", Math.max(1, retryAfter));
+    }
+
+    private static long windowSeconds(SlidingWindowCounter counter) {
+        return counter.getWindowMs() / 1000;
+    }
+
+    private static String clientKey(String username, String clientAddress) {
+        return username + "|" + (clientAddress == null ? "" : clientAddress);
+    }
+
+    private static String normalize(String username) {
+        return username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+    }
+}
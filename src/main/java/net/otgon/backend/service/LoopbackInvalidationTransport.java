@@ -0,0 +1,71 @@
+package net.otgon.backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers to every application context in this JVM: how tests run several
+ * nodes without a database that supports LISTEN/NOTIFY.
+ * {@link #dropConnections()} stands in for a lost listener connection.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private static final Set<LoopbackSubscription> SUBSCRIPTIONS = ConcurrentHashMap.newKeySet();
+
+    private final Set<LoopbackSubscription> own = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void send(String payload) {
+        for (LoopbackSubscription subscription : SUBSCRIPTIONS) {
+            subscription.queue.offer(payload);
+        }
+    }
+
+    @Override
+    public Subscription subscribe() {
+        LoopbackSubscription subscription = new LoopbackSubscription();
+        own.add(subscription);
+        SUBSCRIPTIONS.add(subscription);
+        return subscription;
+    }
+
+    /** Breaks this node's subscriptions; what is sent until it resubscribes is lost */
+    public void dropConnections() {
+        for (LoopbackSubscription subscription : own) {
+            subscription.broken = true;
+            subscription.close();
+        }
+    }
+
+    private final class LoopbackSubscription implements Subscription {
+
+        private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        private volatile boolean broken;
+
+        @Override
+        public List<String> poll(long timeoutMs) throws InterruptedException {
+            String first = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+            if (broken) {
+                throw new IllegalStateException("Loopback subscription dropped");
+            }
+            List<String> payloads = new ArrayList<>();
+            if (first != null) {
+                payloads.add(first);
+                queue.drainTo(payloads);
+            }
+            return payloads;
+        }
+
+        @Override
+        public void close() {
+            SUBSCRIPTIONS.remove(this);
+            own.remove(this);
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package net.otgon.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of transactions and topup_transactions (V4
+ * migration) in step with the calendar: creates the coming months ahead of
+ * time so inserts never miss a partition, and detaches months older than the
+ * retention horizon. Detached months move to the archive schema, or are
+ * dropped. PostgreSQL only; elsewhere (H2 in tests) the tables are plain and
+ * this does nothing.
+ */
+@Service
+public class PartitionMaintenanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+    static final List<String> TABLES = List.of("transactions", "topup_transactions");
+
+    private static final String JOB = "partition-maintenance";
+
+    private static final Pattern MONTH_SUFFIX = Pattern.compile("_y(\\d{4})m(\\d{2})$");
+
+    private static final String CREATE_SQL = "SELECT create_month_partition(?, ?)";
+
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname, i.inhdetachpending FROM pg_inherits i
+              JOIN pg_class c ON c.oid = i.inhrelid
+             WHERE i.inhparent = CAST(? AS regclass)
+            """;
+
+    // Cards still at ledger_seq 0 are backfilled from these tables, so their rows must stay
+    private static final String UNMIGRATED_SQL =
+            "SELECT EXISTS (SELECT 1 FROM %s p JOIN cards c ON c.id = p.card_id WHERE c.ledger_seq = 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean dropDetached;
+    private volatile Boolean postgres;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                       JobLeaseService jobLeaseService,
+                                       @Value("${ledger.partitions.months-ahead:3}") int monthsAhead,
+                                       @Value("${ledger.partitions.retention-months:24}") int retentionMonths,
+                                       @Value("${ledger.partitions.retention-action:archive}") String retentionAction) {
+        if (!retentionAction.equals("archive") && !retentionAction.equals("drop")) {
+            throw new IllegalArgumentException("ledger.partitions.retention-action must be archive or drop");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobLeaseService = jobLeaseService;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.dropDetached = retentionAction.equals("drop");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        try {
+            if (isPostgres()) {
+                // No jitter: no other node's trigger fires with this one, and it would hold up startup
+                jobLeaseService.runExclusiveNow(JOB, () -> maintain(LocalDate.now()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+
+    // One node per cluster does the DDL
+    @Scheduled(cron = "${ledger.partitions.cron:0 15 2 * * *}")
+    public void maintain() {
+        if (!isPostgres()) {
+            return;
+        }
+        jobLeaseService.runExclusive(JOB, () -> maintain(LocalDate.now()));
+    }
+
+    void maintain(LocalDate today) {
+        LocalDate thisMonth = today.withDayOfMonth(1);
+        for (String table : TABLES) {
+            for (int i = 0; i <= monthsAhead; i++) {
+                jdbcTemplate.queryForList(CREATE_SQL, table, Date.valueOf(thisMonth.plusMonths(i)));
+            }
+            if (retentionMonths > 0) {
+                applyRetention(table, thisMonth.minusMonths(retentionMonths));
+            }
+        }
+    }
+
+    // Detaches every partition whose month starts before the cutoff
+    private void applyRetention(String table, LocalDate cutoff) {
+        List<Partition> partitions = jdbcTemplate.query(PARTITIONS_SQL,
+                (rs, rowNum) -> new Partition(rs.getString(1), rs.getBoolean(2)), table);
+        for (Partition partition : partitions) {
+            LocalDate month = monthOf(table, partition.name());
+            if (month == null || !month.isBefore(cutoff)) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(UNMIGRATED_SQL.formatted(partition.name()), Boolean.class))) {
+                log.warn("Keeping partition {}: it holds history of cards not yet in the ledger", partition.name());
+                continue;
+            }
+            try {
+                // CONCURRENTLY takes only a SHARE UPDATE EXCLUSIVE lock on the parent, so rides and
+                // top-ups keep inserting. It cannot run in a transaction block; these statements
+                // autocommit. A concurrent detach that was interrupted is left pending and can only
+                // be finalized.
+                jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition.name()
+                        + (partition.detachPending() ? " FINALIZE" : " CONCURRENTLY"));
+                jdbcTemplate.execute(dropDetached
+                        ? "DROP TABLE " + partition.name()
+                        : "ALTER TABLE " + partition.name() + " SET SCHEMA archive");
+                log.info("Retention: {} partition {}", dropDetached ? "dropped" : "archived", partition.name());
+            } catch (DataAccessException e) {
+                log.warn("Retention of partition {} failed: {}", partition.name(), e.getMessage());
+            }
+        }
+    }
+
+    record Partition(String name, boolean detachPending) {
+    }
+
+    /** Month a partition of table holds, from its name (table_yYYYYmMM); null for anything else */
+    static LocalDate monthOf(String table, String partition) {
+        if (!partition.startsWith(table + "_")) {
+            return null;
+        }
+        Matcher m = MONTH_SUFFIX.matcher(partition);
+        if (!m.find() || m.start() != table.length()) {
+            return null;
+        }
+        return LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), 1);
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equals(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+}
@@ -0,0 +1,119 @@
+package net.otgon.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import net.otgon.backend.exception.ServiceBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt on a small dedicated pool instead of Tomcat request threads.
+ * The queue is capped; when it is full the call fails fast with a
+ * {@link ServiceBusyException} so a login burst can never hold the
+ * workers that NFC redeems need.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final AuthMetrics authMetrics;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  AuthMetrics authMetrics,
+                                  @Value("${auth.password.hashing.threads:0}") int threads,
+                                  @Value("${auth.password.hashing.queue-capacity:32}") int queueCapacity,
+                                  @Value("${auth.password.hashing.timeout-ms:5000}") long timeoutMs) {
+        this.passwordEncoder = passwordEncoder;
+        this.authMetrics = authMetrics;
+        this.timeoutMs = timeoutMs;
+
+        // Default: half the cores, so hashing can never starve the rest of the app of CPU
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        authMetrics.bindHashingPool(executor);
+    }
+
+    public String encode(String username, String rawPassword) {
+        return submit(username, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String username, String rawPassword, String encodedPassword) {
+        return submit(username, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /** Stored hash uses another encoder or a lower cost than the current one; cheap, no hashing */
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T submit(String username, Callable<T> hash) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                authMetrics.recordHashQueueWait(startedAt - queuedAt);
+                try {
+                    return hash.call();
+                } finally {
+                    authMetrics.recordPasswordHash(username, System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            authMetrics.recordHashRejected();
+            log.warn("Password hashing pool saturated, shedding request for {}", username);
+            throw new ServiceBusyException("Authentication busy, retry shortly", retryAfterSeconds());
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            authMetrics.recordHashRejected();
+            throw new ServiceBusyException("Authentication busy, retry shortly", retryAfterSeconds());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    // Roughly how long the current backlog needs to drain
+    private long retryAfterSeconds() {
+        double perHash = authMetrics.meanPasswordHashSeconds();
+        if (perHash <= 0) {
+            return 1;
+        }
+        int backlog = executor.getQueue().size() + executor.getActiveCount();
+        return Math.max(1, (long) Math.ceil(backlog * perHash / executor.getMaximumPoolSize()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
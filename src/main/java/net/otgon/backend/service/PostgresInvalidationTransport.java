@@ -0,0 +1,98 @@
+package net.otgon.backend.service;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LISTEN/NOTIFY on the primary database, so no broker is needed. Sends go
+ * through the pool; listening holds one dedicated connection per node,
+ * opened outside the pool because it never returns to it.
+ */
+public class PostgresInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresInvalidationTransport.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String channel;
+    private final String url;
+    private final String username;
+    private final String password;
+
+    public PostgresInvalidationTransport(JdbcTemplate jdbcTemplate, String channel,
+                                         String url, String username, String password) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid notification channel: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.channel = channel;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    @Override
+    public void send(String payload) {
+        // Autocommit: the notification goes out right away
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, payload);
+    }
+
+    @Override
+    public Subscription subscribe() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, username, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + channel);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        log.info("Listening for cache invalidations on channel {}", channel);
+        return new PostgresSubscription(connection);
+    }
+
+    private static final class PostgresSubscription implements Subscription {
+
+        private final Connection connection;
+        private final PGConnection pgConnection;
+
+        PostgresSubscription(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.pgConnection = connection.unwrap(PGConnection.class);
+        }
+
+        @Override
+        public List<String> poll(long timeoutMs) throws SQLException {
+            PGNotification[] notifications = pgConnection.getNotifications((int) timeoutMs);
+            if (notifications == null || notifications.length == 0) {
+                // A silently dropped connection just looks idle: check it while there is nothing to read
+                if (!connection.isValid(5)) {
+                    throw new SQLException("Invalidation listener connection lost");
+                }
+                return List.of();
+            }
+            List<String> payloads = new ArrayList<>(notifications.length);
+            for (PGNotification notification : notifications) {
+                payloads.add(notification.getParameter());
+            }
+            return payloads;
+        }
+
+        @Override
+        public void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.debug("Closing invalidation listener connection: {}", e.getMessage());
+            }
+        }
+    }
+}
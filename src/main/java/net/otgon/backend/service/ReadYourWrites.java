@@ -0,0 +1,76 @@
+package net.otgon.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.otgon.backend.util.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Decides which card reads may go to the read replica. Card reads run inside
+ * {@link #onReplica}. A card whose balance or ledger changed within the pin
+ * window is pinned to the primary, so a rider who just paid or topped up sees
+ * the change before it reaches the replica. The window should be longer than
+ * normal replica lag.
+ *
+ * The routing datasource asks {@link #replicaAllowed()} each time a connection
+ * is taken. Without a replica configured, nothing asks and scopes have no effect.
+ */
+@Component
+public class ReadYourWrites {
+
+    private final Cache<String, Boolean> recentWrites;
+    private final ThreadLocal<String> readScope = new ThreadLocal<>();
+
+    public ReadYourWrites(@Value("${datasource.replica.pin-window:5s}") Duration pinWindow,
+                          @Value("${datasource.replica.pin-max-cards:100000}") long maxCards) {
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(maxCards)
+                .expireAfterWrite(pinWindow)
+                .build();
+    }
+
+    /** Runs a read of the card's data on the replica, unless the card was written recently */
+    public <T> T onReplica(String cardId, Supplier<T> read) {
+        String outer = readScope.get();
+        readScope.set(cardId);
+        try {
+            return read.get();
+        } finally {
+            if (outer != null) {
+                readScope.set(outer);
+            } else {
+                readScope.remove();
+            }
+        }
+    }
+
+    /** Pins the card to the primary once the surrounding transaction commits */
+    public void pinAfterCommit(String cardId) {
+        AfterCommit.run(() -> pin(cardId));
+    }
+
+    /** Pins the card now; for writes made on another node */
+    public void pin(String cardId) {
+        recentWrites.put(cardId, Boolean.TRUE);
+    }
+
+    public boolean isPinned(String cardId) {
+        return recentWrites.getIfPresent(cardId) != null;
+    }
+
+    /** True inside {@link #onReplica} for a card that is not pinned */
+    public boolean replicaAllowed() {
+        String cardId = readScope.get();
+        return cardId != null && !isPinned(cardId);
+    }
+
+    /** True inside {@link #onReplica} for a pinned card */
+    public boolean pinnedToPrimary() {
+        String cardId = readScope.get();
+        return cardId != null && isPinned(cardId);
+    }
+}
@@ -8,17 +8,25 @@ import net.otgon.backend.dto.RedeemResult;
 import net.otgon.backend.dto.TransactionPayload;
 import net.otgon.backend.entity.Card;
 import net.otgon.backend.entity.Device;
+import net.otgon.backend.entity.LedgerEntry;
+import net.otgon.backend.entity.RedeemedTxId;
 import net.otgon.backend.entity.Transaction;
 import net.otgon.backend.exception.ValidationException;
 import net.otgon.backend.repository.CardRepo;
 import net.otgon.backend.repository.DeviceRepo;
+import net.otgon.backend.repository.RedeemedTxIdRepo;
 import net.otgon.backend.repository.TransactionRepo;
+import net.otgon.backend.util.UuidV7;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
 import java.security.PublicKey;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.Base64;
 
@@ -27,22 +35,42 @@ public class RedeemService {
 
     private static final Logger log = LoggerFactory.getLogger(RedeemService.class);
 
+    // Payloads are accepted while their device timestamp is this close to server time
+    private static final long REPLAY_WINDOW_MS = 24 * 60 * 60 * 1000;
+    // Redeemed tx_ids are kept a little past the window to cover clock drift between nodes
+    private static final long TX_ID_RETENTION_MS = REPLAY_WINDOW_MS + 60 * 60 * 1000;
+
     private final DeviceRepo deviceRepo;
     private final CardRepo cardRepo;
     private final TransactionRepo transactionRepo;
+    private final RedeemedTxIdRepo redeemedTxIdRepo;
     private final ObjectMapper objectMapper;
     private final CryptoService cryptoService;
+    private final UserInfoCache userInfoCache;
+    private final LedgerService ledgerService;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final JobLeaseService jobLeaseService;
 
     public RedeemService(DeviceRepo deviceRepo,
                          CardRepo cardRepo,
                          TransactionRepo transactionRepo,
+                         RedeemedTxIdRepo redeemedTxIdRepo,
                          ObjectMapper objectMapper,
-                         CryptoService cryptoService) {
+                         CryptoService cryptoService,
+                         UserInfoCache userInfoCache,
+                         LedgerService ledgerService,
+                         CacheInvalidationBus cacheInvalidationBus,
+                         JobLeaseService jobLeaseService) {
         this.deviceRepo = deviceRepo;
         this.cardRepo = cardRepo;
         this.transactionRepo = transactionRepo;
+        this.redeemedTxIdRepo = redeemedTxIdRepo;
         this.objectMapper = objectMapper;
         this.cryptoService = cryptoService;
+        this.userInfoCache = userInfoCache;
+        this.ledgerService = ledgerService;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.jobLeaseService = jobLeaseService;
     }
 
     @Transactional
@@ -63,8 +91,8 @@ public class RedeemService {
         // Validate fare amount
         validatePayload(payload);
 
-        // 6. Prevent duplicate processing
-        // 7. Get user and card
+        // 6. Get and lock the card
+        // 7. Prevent duplicate processing
         // 8. Check balance
         // 9. Deduct balance
         // 10. Save transaction
@@ -72,6 +100,10 @@ public class RedeemService {
     }
 
     Device loadDevice(String deviceId) {
+        if (!UuidV7.isUuid(deviceId)) {
+            throw new RuntimeException("Device not registered");
+        }
+        // From the second-level cache when warm; the user stays an unloaded reference
         Device device = deviceRepo.findById(deviceId)
                 .orElseThrow(() -> new RuntimeException("Device not registered"));
         log.info("Device found: {} (User ID: {})", device.getId(), device.getUser().getId());
@@ -129,9 +161,8 @@ public class RedeemService {
         }
 
         long currentTime = System.currentTimeMillis();
-        long maxAge = 24 * 60 * 60 * 1000;
 
-        if (Math.abs(currentTime - timestamp) > maxAge) {
+        if (Math.abs(currentTime - timestamp) > REPLAY_WINDOW_MS) {
             log.error("Transaction expired: timestamp outside 24-hour window");
             log.error("Current time: {}, Transaction time: {}, Difference: {}ms",
                     currentTime, timestamp, Math.abs(currentTime - timestamp));
@@ -146,14 +177,18 @@ public class RedeemService {
         double fare = transactionPayload.getFare();
         long timestamp = transactionPayload.getTimestamp();
 
-        if (transactionRepo.existsByTxId(txId)) {
+        // 6. Get the card, row-locked: balance and ledger seq must not race, and a
+        // replay arriving while the original is in flight waits for it here
+        String userId = device.getUser().getId();
+        Card card = ledgerService.lockCardOf(userId)
+                .orElseThrow(() -> new RuntimeException("Card not found for device owner"));
+
+        // 7. Prevent duplicate processing
+        if (redeemedTxIdRepo.existsById(txId)) {
             log.warn("⚠ Transaction already processed: {}", txId);
-            Card card = device.getUser().getCard();
             return new RedeemResult("Already processed", card.getBalance(), fare);
         }
         log.info("✓ Transaction ID valid (Not duplicate)");
-        // 7. Get user and card
-        Card card = device.getUser().getCard();
         double currentBalance = card.getBalance();
 
         log.info("Current balance: €{}", String.format("%.2f", currentBalance));
@@ -172,6 +207,8 @@ public class RedeemService {
         double newBalance = currentBalance - fare;
         card.setBalance(newBalance);
         cardRepo.save(card);
+        userInfoCache.evictAfterCommit(userId);
+        cacheInvalidationBus.cardChangedAfterCommit(card.getId(), userId);
 
         log.info("✓ Balance updated:");
         log.info("  Before: €{}", String.format("%.2f", currentBalance));
@@ -189,6 +226,11 @@ public class RedeemService {
         tx.setStatus("SUCCESS");
         tx.setProcessed(true);
         transactionRepo.save(tx);
+        redeemedTxIdRepo.save(new RedeemedTxId(txId, LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(timestamp + TX_ID_RETENTION_MS), ZoneId.systemDefault())));
+
+        // 11. Append to the ledger with the balance it left behind
+        ledgerService.append(card, LedgerEntry.DEDUCT, -fare, tx.getStatus(), tx.getId(), tx.getSyncedAt());
 
         log.info("✓ Transaction saved to database");
         log.info("=== TRANSACTION PROCESSING COMPLETED SUCCESSFULLY ===");
@@ -196,4 +238,13 @@ public class RedeemService {
         return new RedeemResult("Success", newBalance, fare);
 
     }
-}
\ No newline at end of file
+
+    /** Drops tx_ids whose payloads would now fail the timestamp check anyway; one node per cluster */
+    @Scheduled(cron = "${redeem.tx-id.sweep-cron:0 45 3 * * *}")
+    public void purgeExpiredTxIds() {
+        jobLeaseService.runExclusive("redeemed-tx-id-sweep", () -> {
+            int removed = redeemedTxIdRepo.deleteExpiredBefore(LocalDateTime.now());
+            log.info("Purged {} expired redeemed tx ids", removed);
+        });
+    }
+}
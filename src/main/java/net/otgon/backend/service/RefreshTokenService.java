@@ -0,0 +1,156 @@
+package net.otgon.backend.service;
+
+import net.otgon.backend.dto.AuthTokens;
+import net.otgon.backend.entity.RefreshToken;
+import net.otgon.backend.entity.User;
+import net.otgon.backend.exception.InvalidRefreshTokenException;
+import net.otgon.backend.repository.RefreshTokenRepo;
+import net.otgon.backend.util.UuidV7;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Long-lived opaque refresh tokens.
+ * Only a SHA-256 of the token is stored; every use rotates it, and presenting
+ * an already rotated token revokes the whole family (token theft). A token
+ * rotated within the last few seconds is a retry (the app timed out waiting
+ * for the first response) as long as its family is still live, and gets a
+ * fresh pair instead of logging the rider out.
+ * Renewing an access token costs one indexed lookup instead of a BCrypt verify.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final RefreshTokenRepo refreshTokenRepo;
+    private final JwtService jwtService;
+    private final AuthMetrics authMetrics;
+    private final JobLeaseService jobLeaseService;
+
+    @Value("${auth.refresh-token.ttl-days:30}")
+    private long ttlDays = 30;
+
+    @Value("${auth.refresh-token.retry-grace-seconds:60}")
+    private long retryGraceSeconds = 60;
+
+    public RefreshTokenService(RefreshTokenRepo refreshTokenRepo,
+                               JwtService jwtService,
+                               AuthMetrics authMetrics,
+                               JobLeaseService jobLeaseService) {
+        this.refreshTokenRepo = refreshTokenRepo;
+        this.jwtService = jwtService;
+        this.authMetrics = authMetrics;
+        this.jobLeaseService = jobLeaseService;
+    }
+
+    /** Starts a new token family for a fresh login */
+    public String issue(User user) {
+        return issue(user, UuidV7.next());
+    }
+
+    private String issue(User user, String familyId) {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(rawToken));
+        token.setFamilyId(familyId);
+        token.setUser(user);
+        token.setCreatedAt(LocalDateTime.now());
+        token.setExpiresAt(LocalDateTime.now().plusDays(ttlDays));
+        refreshTokenRepo.save(token);
+
+        return rawToken;
+    }
+
+    // Reuse detection must survive the exception, so it is not rolled back
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public AuthTokens rotate(String rawToken) {
+        RefreshToken current = refreshTokenRepo.findByTokenHash(hash(rawToken))
+                .orElseThrow(() -> new InvalidRefreshTokenException("Invalid refresh token"));
+
+        LocalDateTime now = LocalDateTime.now();
+
+        if (current.isRevoked()) {
+            if (!isRetry(current, current.getRevokedAt(), now)) {
+                throw reuseDetected(current, now);
+            }
+        } else {
+            if (current.getExpiresAt().isBefore(now)) {
+                throw new InvalidRefreshTokenException("Refresh token expired");
+            }
+            // A concurrent rotation of the same token (a retried request, or a thief) got here first
+            if (refreshTokenRepo.revokeIfActive(current.getId(), now) == 0 && !isRetry(current, now, now)) {
+                throw reuseDetected(current, now);
+            }
+        }
+
+        User user = current.getUser();
+        String refreshToken = issue(user, current.getFamilyId());
+        authMetrics.recordRefresh(user.getUsername());
+
+        return new AuthTokens(jwtService.generateToken(user), refreshToken, jwtService.getExpirationSeconds());
+    }
+
+    /**
+     * True for a token rotated within the grace period whose family still has
+     * a live token: the rider's own retry. Logout and reuse detection revoke
+     * the whole family, so a revoked family is never retried into a new pair.
+     */
+    private boolean isRetry(RefreshToken token, LocalDateTime revokedAt, LocalDateTime now) {
+        if (revokedAt.isBefore(now.minusSeconds(retryGraceSeconds))
+                || !refreshTokenRepo.existsByFamilyIdAndRevokedAtIsNull(token.getFamilyId())) {
+            return false;
+        }
+        log.info("Refresh token of family {} presented again within {}s of its rotation, treating as a retry",
+                token.getFamilyId(), retryGraceSeconds);
+        return true;
+    }
+
+    private InvalidRefreshTokenException reuseDetected(RefreshToken token, LocalDateTime now) {
+        log.warn("Refresh token reuse detected, revoking family {}", token.getFamilyId());
+        refreshTokenRepo.revokeFamily(token.getFamilyId(), now);
+        return new InvalidRefreshTokenException("Refresh token reuse detected");
+    }
+
+    /** Logs the device out: the presented token and every token rotated from it stop working */
+    @Transactional
+    public void revoke(String rawToken) {
+        refreshTokenRepo.findByTokenHash(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepo.revokeFamily(token.getFamilyId(), LocalDateTime.now()));
+    }
+
+    // One node per cluster runs the sweep
+    @Scheduled(cron = "${auth.refresh-token.sweep-cron:0 30 3 * * *}")
+    public void purgeExpired() {
+        jobLeaseService.runExclusive("refresh-token-sweep", () -> {
+            int removed = refreshTokenRepo.deleteExpiredBefore(LocalDateTime.now());
+            log.info("Purged {} expired refresh tokens", removed);
+        });
+    }
+
+    static String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package net.otgon.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import net.otgon.backend.config.SecurityConfig;
+import net.otgon.backend.dto.BulkProvisionResponse;
+import net.otgon.backend.dto.BulkRiderResult;
+import net.otgon.backend.dto.BulkRiderRow;
+import net.otgon.backend.exception.ServiceBusyException;
+import net.otgon.backend.exception.ValidationException;
+import net.otgon.backend.repository.UserRepo;
+import net.otgon.backend.util.UuidV7;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Creates riders (user + card) in bulk from a CSV or NDJSON upload.
+ *
+ * The upload is read in batches: each batch is validated, checked for existing
+ * usernames/emails with two IN queries, hashed in parallel and written with
+ * JDBC batch inserts in its own transaction. A bad row is reported and
+ * skipped; it never fails the rest of the upload.
+ *
+ * Passwords get the same calibrated cost as registration unless
+ * admin.bulk.password-strength asks for a lower one, which may not go below
+ * auth.password.min-strength. Hashing uses a quarter of the cores by default,
+ * so an import leaves CPU for the login hashing pool and the rest of the app.
+ */
+@Service
+public class RiderProvisioningService {
+
+    private static final Logger log = LoggerFactory.getLogger(RiderProvisioningService.class);
+
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+    private static final double INITIAL_BALANCE = 10; // Same as self-registration
+
+    static final String CREATED = "CREATED";
+    static final String REJECTED = "REJECTED";
+
+    private final UserRepo userRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final PasswordEncoder bulkEncoder;
+    private final ExecutorService hashingPool;
+    private final int batchSize;
+
+    // One upload at a time; a second one would only fight the first for CPU
+    private final Semaphore running = new Semaphore(1);
+
+    public RiderProvisioningService(UserRepo userRepo,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    PasswordEncoder passwordEncoder,
+                                    @Value("${admin.bulk.batch-size:500}") int batchSize,
+                                    @Value("${admin.bulk.password-strength:0}") int passwordStrength,
+                                    @Value("${auth.password.min-strength:10}") int minStrength,
+                                    @Value("${admin.bulk.hash-threads:0}") int hashThreads) {
+        this.userRepo = userRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+
+        if (passwordStrength > 0) {
+            if (passwordStrength < minStrength) {
+                throw new IllegalArgumentException("admin.bulk.password-strength must be at least auth.password.min-strength ("
+                        + minStrength + ")");
+            }
+            // Opt-in: a cheaper import, rehashed to the calibrated cost at the rider's first login
+            this.bulkEncoder = new DelegatingPasswordEncoder(SecurityConfig.PASSWORD_ENCODER_ID,
+                    Map.of(SecurityConfig.PASSWORD_ENCODER_ID, new BCryptPasswordEncoder(passwordStrength)));
+        } else {
+            this.bulkEncoder = passwordEncoder;
+        }
+
+        int poolSize = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        AtomicInteger counter = new AtomicInteger();
+        this.hashingPool = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "bulk-hash-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public BulkProvisionResponse provision(InputStream body, boolean ndjson) throws IOException {
+        if (!running.tryAcquire()) {
+            throw new ServiceBusyException("Bulk provisioning already running", 30);
+        }
+        try {
+            return doProvision(body, ndjson);
+        } finally {
+            running.release();
+        }
+    }
+
+    private BulkProvisionResponse doProvision(InputStream body, boolean ndjson) throws IOException {
+        long start = System.currentTimeMillis();
+        List<BulkRiderResult> results = new ArrayList<>();
+        Set<String> seenUsernames = new HashSet<>();
+        Set<String> seenEmails = new HashSet<>();
+        List<PendingRider> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            int[] columns = null;
+            String line;
+            int lineNo = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (!ndjson && columns == null) {
+                    columns = parseCsvHeader(line);
+                    continue;
+                }
+
+                BulkRiderRow row;
+                try {
+                    row = ndjson ? objectMapper.readValue(line, BulkRiderRow.class) : parseCsvRow(line, columns);
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    results.add(rejected(lineNo, null, "Malformed row"));
+                    continue;
+                }
+
+                String error = validate(row);
+                if (error == null && !seenUsernames.add(row.getUsername())) {
+                    error = "Duplicate username in upload";
+                }
+                if (error == null && !seenEmails.add(row.getEmail())) {
+                    error = "Duplicate email in upload";
+                }
+                if (error != null) {
+                    results.add(rejected(lineNo, row.getUsername(), error));
+                    continue;
+                }
+
+                batch.add(new PendingRider(lineNo, row));
+                if (batch.size() >= batchSize) {
+                    results.addAll(processBatch(batch));
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            results.addAll(processBatch(batch));
+        }
+
+        results.sort(Comparator.comparingInt(BulkRiderResult::getLine));
+        int created = (int) results.stream().filter(r -> CREATED.equals(r.getStatus())).count();
+        long duration = System.currentTimeMillis() - start;
+        log.info("Bulk provisioning: {} rows, {} created, {} rejected in {} ms",
+                results.size(), created, results.size() - created, duration);
+
+        return new BulkProvisionResponse(results.size(), created, results.size() - created, duration, results);
+    }
+
+    private List<BulkRiderResult> processBatch(List<PendingRider> batch) {
+        List<BulkRiderResult> results = new ArrayList<>(batch.size());
+        List<PendingRider> fresh = withoutExisting(batch, results);
+        if (fresh.isEmpty()) {
+            return results;
+        }
+
+        hashAll(fresh);
+
+        try {
+            insert(fresh);
+        } catch (DataIntegrityViolationException e) {
+            // Someone registered one of these names since the check; re-check once and retry the rest
+            log.warn("Bulk insert conflict, re-checking batch of {}", fresh.size());
+            fresh = withoutExisting(fresh, results);
+            insert(fresh);
+        }
+
+        for (PendingRider rider : fresh) {
+            results.add(new BulkRiderResult(rider.line, rider.row.getUsername(), CREATED, null, rider.cardId));
+        }
+        return results;
+    }
+
+    // Two IN queries per batch instead of two lookups per rider
+    private List<PendingRider> withoutExisting(List<PendingRider> batch, List<BulkRiderResult> results) {
+        List<String> usernames = batch.stream().map(r -> r.row.getUsername()).toList();
+        List<String> emails = batch.stream().map(r -> r.row.getEmail()).toList();
+        Set<String> takenUsernames = new HashSet<>(userRepo.findExistingUsernames(usernames));
+        Set<String> takenEmails = new HashSet<>(userRepo.findExistingEmails(emails));
+
+        List<PendingRider> fresh = new ArrayList<>(batch.size());
+        for (PendingRider rider : batch) {
+            if (takenUsernames.contains(rider.row.getUsername())) {
+                results.add(rejected(rider.line, rider.row.getUsername(), "Username already exists"));
+            } else if (takenEmails.contains(rider.row.getEmail())) {
+                results.add(rejected(rider.line, rider.row.getUsername(), "Email already registered"));
+            } else {
+                fresh.add(rider);
+            }
+        }
+        return fresh;
+    }
+
+    private void hashAll(List<PendingRider> riders) {
+        List<Future<?>> futures = new ArrayList<>(riders.size());
+        for (PendingRider rider : riders) {
+            futures.add(hashingPool.submit(() -> {
+                rider.passwordHash = bulkEncoder.encode(rider.row.getPassword());
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private void insert(List<PendingRider> riders) {
+        if (riders.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (PendingRider rider : riders) {
+            rider.userId = UuidV7.next();
+            rider.cardId = UuidV7.next();
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO users (id, username, email, password, created_at) VALUES (?, ?, ?, ?, ?)",
+                    riders, riders.size(), (ps, rider) -> {
+                        ps.setString(1, rider.userId);
+                        ps.setString(2, rider.row.getUsername());
+                        ps.setString(3, rider.row.getEmail());
+                        ps.setString(4, rider.passwordHash);
+                        ps.setTimestamp(5, now);
+                    });
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO cards (id, user_id, balance) VALUES (?, ?, ?)",
+                    riders, riders.size(), (ps, rider) -> {
+                        ps.setString(1, rider.cardId);
+                        ps.setString(2, rider.userId);
+                        ps.setDouble(3, INITIAL_BALANCE);
+                    });
+        });
+    }
+
+    // Same rules as RegisterRequestDto
+    static String validate(BulkRiderRow row) {
+        String username = row.getUsername();
+        String email = row.getEmail();
+        String password = row.getPassword();
+        if (username == null || username.isBlank()) {
+            return "Username is required";
+        }
+        if (username.length() < 3 || username.length() > 50) {
+            return "Username must be 3-50 characters";
+        }
+        if (email == null || email.isBlank()) {
+            return "Email is required";
+        }
+        if (email.length() > 100 || !EMAIL.matcher(email).matches()) {
+            return "Email should be valid";
+        }
+        if (password == null || password.isBlank()) {
+            return "Password is required";
+        }
+        if (password.length() < 8 || password.length() > 50) {
+            return "Password must be at least 8 characters";
+        }
+        return null;
+    }
+
+    // Returns the positions of username, email and password
+    static int[] parseCsvHeader(String line) {
+        List<String> header = splitCsv(line);
+        int[] columns = {-1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            switch (header.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "username" -> columns[0] = i;
+                case "email" -> columns[1] = i;
+                case "password" -> columns[2] = i;
+                default -> { }
+            }
+        }
+        if (columns[0] < 0 || columns[1] < 0 || columns[2] < 0) {
+            throw new ValidationException("CSV header must contain username, email and password");
+        }
+        return columns;
+    }
+
+    static BulkRiderRow parseCsvRow(String line, int[] columns) {
+        List<String> fields = splitCsv(line);
+        return new BulkRiderRow(field(fields, columns[0]), field(fields, columns[1]), field(fields, columns[2]));
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index).trim() : null;
+    }
+
+    // Minimal RFC 4180: quoted fields may contain commas and doubled quotes, not newlines
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote");
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static BulkRiderResult rejected(int line, String username, String message) {
+        return new BulkRiderResult(line, username, REJECTED, message, null);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingPool.shutdownNow();
+    }
+
+    private static final class PendingRider {
+        final int line;
+        final BulkRiderRow row;
+        String passwordHash;
+        String userId;
+        String cardId;
+
+        PendingRider(int line, BulkRiderRow row) {
+            this.line = line;
+            this.row = row;
+        }
+    }
+}
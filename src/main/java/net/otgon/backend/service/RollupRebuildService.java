@@ -0,0 +1,145 @@
+package net.otgon.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import net.otgon.backend.dto.RollupRebuildResponse;
+import net.otgon.backend.exception.ServiceBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recomputes card_daily_rollups from ledger_entries. Cards are split into
+ * chunks, and each chunk is rebuilt in its own transaction on a small pool.
+ * A chunk locks its card rows first, so ledger appends for those cards wait
+ * instead of being double-counted or lost.
+ */
+@Service
+public class RollupRebuildService {
+
+    private static final Logger log = LoggerFactory.getLogger(RollupRebuildService.class);
+
+    private static final String ALL_CARDS_SQL = "SELECT id FROM cards ORDER BY id";
+
+    // Cards with ledger history but no rollups, e.g. migrated before rollups existed
+    private static final String MISSING_SQL = """
+            SELECT c.id FROM cards c
+             WHERE c.ledger_seq > 0
+               AND NOT EXISTS (SELECT 1 FROM card_daily_rollups r WHERE r.card_id = c.id)
+             ORDER BY c.id
+            """;
+
+    private static final String LOCK_SQL = "SELECT id FROM cards WHERE id IN (:ids) FOR UPDATE";
+
+    private static final String DELETE_SQL = "DELETE FROM card_daily_rollups WHERE card_id IN (:ids)";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO card_daily_rollups (card_id, rollup_date, spent, trip_count, topped_up, topup_count)
+            SELECT card_id, CAST(created_at AS DATE),
+                   SUM(CASE WHEN type = 'TOPUP' THEN 0 ELSE -amount END),
+                   SUM(CASE WHEN type = 'TOPUP' THEN 0 ELSE 1 END),
+                   SUM(CASE WHEN type = 'TOPUP' THEN amount ELSE 0 END),
+                   SUM(CASE WHEN type = 'TOPUP' THEN 1 ELSE 0 END)
+              FROM ledger_entries
+             WHERE card_id IN (:ids) AND status = 'SUCCESS'
+             GROUP BY card_id, CAST(created_at AS DATE)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ExecutorService pool;
+    private final Semaphore running = new Semaphore(1);
+
+    public RollupRebuildService(NamedParameterJdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${rollups.rebuild.threads:4}") int threads,
+                                @Value("${rollups.rebuild.chunk-size:200}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+
+        // Each worker holds a pooled DB connection, so keep this well below the Hikari pool size
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "rollup-rebuild-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public RollupRebuildResponse rebuildAll() {
+        return rebuild(ALL_CARDS_SQL);
+    }
+
+    /** Only cards that have ledger entries but no rollups; run after ledger backfills */
+    public RollupRebuildResponse rebuildMissing() {
+        return rebuild(MISSING_SQL);
+    }
+
+    private RollupRebuildResponse rebuild(String cardsSql) {
+        if (!running.tryAcquire()) {
+            throw new ServiceBusyException("Rollup rebuild already running", 30);
+        }
+        try {
+            return doRebuild(cardsSql);
+        } finally {
+            running.release();
+        }
+    }
+
+    private RollupRebuildResponse doRebuild(String cardsSql) {
+        long start = System.currentTimeMillis();
+        List<String> cardIds = jdbcTemplate.getJdbcTemplate().queryForList(cardsSql, String.class);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < cardIds.size(); from += chunkSize) {
+            List<String> chunk = cardIds.subList(from, Math.min(from + chunkSize, cardIds.size()));
+            futures.add(pool.submit(() -> rebuildChunk(chunk)));
+        }
+
+        int failed = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Rollup rebuild interrupted", e);
+            } catch (Exception e) {
+                failed++;
+                log.warn("Rollup rebuild chunk failed: {}", e.getMessage());
+            }
+        }
+
+        long durationMs = System.currentTimeMillis() - start;
+        log.info("Rollup rebuild: {} cards in {} chunks, {} failed, {} ms",
+                cardIds.size(), futures.size(), failed, durationMs);
+        return new RollupRebuildResponse(cardIds.size(), futures.size(), failed, durationMs);
+    }
+
+    void rebuildChunk(List<String> cardIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", cardIds);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList(LOCK_SQL, params, String.class);
+            jdbcTemplate.update(DELETE_SQL, params);
+            jdbcTemplate.update(INSERT_SQL, params);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
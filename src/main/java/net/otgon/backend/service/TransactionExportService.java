@@ -0,0 +1,123 @@
+package net.otgon.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.otgon.backend.dto.TransactionResponseDto;
+import net.otgon.backend.exception.ValidationException;
+import net.otgon.backend.repository.LedgerExportRepo;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Full statement export. Each row is written as soon as it is read, so memory
+ * stays flat however long the history is.
+ */
+@Service
+public class TransactionExportService {
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format parse(String value) {
+            if (value == null || value.isBlank()) {
+                return NDJSON;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    static final String CSV_HEADER = "id,type,amount,balanceAfter,timestamp,status";
+
+    private final LedgerExportRepo ledgerExportRepo;
+    private final LedgerService ledgerService;
+    private final AccountResolver accountResolver;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTx;
+    private final ReadYourWrites readYourWrites;
+
+    public TransactionExportService(LedgerExportRepo ledgerExportRepo,
+                                    LedgerService ledgerService,
+                                    AccountResolver accountResolver,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager,
+                                    ReadYourWrites readYourWrites) {
+        this.ledgerExportRepo = ledgerExportRepo;
+        this.ledgerService = ledgerService;
+        this.accountResolver = accountResolver;
+        this.objectMapper = objectMapper;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.readYourWrites = readYourWrites;
+    }
+
+    /** Resolved up front so a bad token fails before the response is committed */
+    public String resolveCardId(String token) {
+        String cardId = accountResolver.resolve(token).getCardId();
+        ledgerService.ensureBackfilled(cardId);
+        return cardId;
+    }
+
+    /** Writes the card's history oldest-first; does not close {@code out} */
+    public void export(String cardId, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try {
+            readYourWrites.onReplica(cardId, () -> readOnlyTx.execute(status -> {
+                ledgerExportRepo.forEachByCard(cardId, dto -> writeRow(writer, format, dto));
+                return null;
+            }));
+        } catch (UncheckedIOException e) {
+            // Client went away mid-stream
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void writeRow(Writer writer, Format format, TransactionResponseDto dto) {
+        try {
+            if (format == Format.CSV) {
+                writer.write(csv(dto.getId()));
+                writer.write(',');
+                writer.write(csv(dto.getType()));
+                writer.write(',');
+                writer.write(Double.toString(dto.getAmount()));
+                writer.write(',');
+                writer.write(Double.toString(dto.getBalanceAfter()));
+                writer.write(',');
+                writer.write(dto.getTimestamp().toString());
+                writer.write(',');
+                writer.write(csv(dto.getStatus()));
+            } else {
+                writer.write(objectMapper.writeValueAsString(dto));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,86 +1,186 @@
 package net.otgon.backend.service;
 
+import net.otgon.backend.dto.DailySpendDto;
+import net.otgon.backend.dto.HistoryCursor;
+import net.otgon.backend.dto.HistoryFilter;
+import net.otgon.backend.dto.SpendSummaryResponse;
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.dto.TransactionPageResponse;
 import net.otgon.backend.dto.TransactionResponseDto;
-import net.otgon.backend.entity.Card;
-import net.otgon.backend.entity.TopUpTransaction;
-import net.otgon.backend.entity.Transaction;
-import net.otgon.backend.entity.User;
-import net.otgon.backend.repository.TopUpTransactionRepo;
-import net.otgon.backend.repository.TransactionRepo;
-import net.otgon.backend.repository.UserRepo;
+import net.otgon.backend.entity.DailyRollup;
+import net.otgon.backend.entity.LedgerEntry;
+import net.otgon.backend.exception.ValidationException;
+import net.otgon.backend.repository.DailyRollupRepo;
+import net.otgon.backend.repository.LedgerEntryRepo;
+import net.otgon.backend.repository.LedgerSearchRepo;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.*;
+import java.util.function.Supplier;
 
 @Service
 public class TransactionService {
 
-    private final UserRepo userRepo;
-    private final TransactionRepo transactionRepo;
-    private final TopUpTransactionRepo topUpTransactionRepo;
-    private final JwtService jwtService;
-
-    public TransactionService(UserRepo userRepo,
-                              TransactionRepo transactionRepo,
-                              TopUpTransactionRepo topUpTransactionRepo,
-                              JwtService jwtService) {
-        this.userRepo = userRepo;
-        this.transactionRepo = transactionRepo;
-        this.topUpTransactionRepo = topUpTransactionRepo;
-        this.jwtService = jwtService;
+    static final int MAX_SUMMARY_DAYS = 366;
+
+    private final LedgerEntryRepo ledgerEntryRepo;
+    private final LedgerService ledgerService;
+    private final AccountResolver accountResolver;
+    private final HistoryCache historyCache;
+    private final DailyRollupRepo dailyRollupRepo;
+    private final LedgerSearchRepo ledgerSearchRepo;
+    private final ReadYourWrites readYourWrites;
+
+    public TransactionService(LedgerEntryRepo ledgerEntryRepo,
+                              LedgerService ledgerService,
+                              AccountResolver accountResolver,
+                              HistoryCache historyCache,
+                              DailyRollupRepo dailyRollupRepo,
+                              LedgerSearchRepo ledgerSearchRepo,
+                              ReadYourWrites readYourWrites) {
+        this.ledgerEntryRepo = ledgerEntryRepo;
+        this.ledgerService = ledgerService;
+        this.accountResolver = accountResolver;
+        this.historyCache = historyCache;
+        this.dailyRollupRepo = dailyRollupRepo;
+        this.ledgerSearchRepo = ledgerSearchRepo;
+        this.readYourWrites = readYourWrites;
     }
 
     public List<TransactionResponseDto> getAllUserTransactions(String jwt) {
-        // Extract username from JWT
-        String username = jwtService.extractUsername(jwt);
+        // 1. Resolve card straight from the token claims (falls back to a user lookup for old tokens)
+        TokenIdentity identity = accountResolver.resolve(jwt);
+        String cardId = identity.getCardId();
+
+        // 2. Short histories are served from the cached window; otherwise one index range scan in seq order
+        List<LedgerEntry> entries = readYourWrites.onReplica(cardId, () -> historyCache.all(cardId, this::loadWindow)
+                .orElseGet(() -> readLedger(cardId, () -> ledgerEntryRepo.findByCardIdOrderBySeqDesc(cardId))));
+
+        // 3. Convert to DTOs
+        return entries.stream().map(TransactionService::toDto).toList();
+    }
+
+    /**
+     * One page of history, newest first. The cursor is the opaque value from the
+     * previous page's nextCursor, or null for the first page.
+     */
+    public TransactionPageResponse getTransactionPage(String jwt, String cursor, int limit) {
+        HistoryCursor after = cursor != null ? HistoryCursor.decode(cursor) : null;
+        String cardId = accountResolver.resolve(jwt).getCardId();
 
-        // 1. Get user and card
-        User user = userRepo.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        long beforeSeq = after != null ? after.getSeq() : Long.MAX_VALUE;
+        List<LedgerEntry> entries = readYourWrites.onReplica(cardId, () -> historyCache
+                .newest(cardId, beforeSeq, limit, this::loadWindow)
+                .orElseGet(() -> readLedger(cardId, () -> ledgerEntryRepo
+                        .findByCardIdAndSeqLessThanOrderBySeqDesc(cardId, beforeSeq, PageRequest.of(0, limit)))));
 
-        Card card = user.getCard();
-        if (card == null) {
-            throw new RuntimeException("Card not found for user");
+        // A short page is the last one
+        String nextCursor = null;
+        if (entries.size() == limit) {
+            nextCursor = new HistoryCursor(entries.get(entries.size() - 1).getSeq()).encode();
         }
+        return new TransactionPageResponse(entries.stream().map(TransactionService::toDto).toList(), nextCursor);
+    }
+
+    /**
+     * One page of history matching the filter, newest first. Runs in the
+     * database on the card's indexes rather than over the cached window.
+     */
+    public TransactionPageResponse searchTransactions(String jwt, HistoryFilter filter, String cursor, int limit) {
+        filter.validate();
+        HistoryCursor after = cursor != null ? HistoryCursor.decode(cursor) : null;
+        String cardId = accountResolver.resolve(jwt).getCardId();
+
+        long beforeSeq = after != null ? after.getSeq() : Long.MAX_VALUE;
+        List<LedgerSearchRepo.Row> rows = readYourWrites.onReplica(cardId, () -> {
+            List<LedgerSearchRepo.Row> found = ledgerSearchRepo.search(cardId, filter, beforeSeq, limit);
+            // Nothing matched on the first page: the card may not be migrated yet
+            if (found.isEmpty() && after == null && ledgerService.ensureBackfilled(cardId)) {
+                found = ledgerSearchRepo.search(cardId, filter, beforeSeq, limit);
+            }
+            return found;
+        });
 
-        // 2. Fetch both transaction types
-        List<Transaction> deductions = transactionRepo.findByCardOrderBySyncedAtDesc(card);
-        List<TopUpTransaction> topUps = topUpTransactionRepo.findByCardOrderByCreatedAtDesc(card);
-
-        // 3. Convert to unified DTOs
-        List<TransactionResponseDto> allTransactions = new ArrayList<>();
-
-        // Add deductions
-        for (Transaction tx : deductions) {
-            TransactionResponseDto dto = new TransactionResponseDto();
-            dto.setId(tx.getId());
-            dto.setType("DEDUCT");
-            dto.setAmount(tx.getAmount());
-            dto.setTimestamp(tx.getSyncedAt());
-            dto.setStatus(tx.getStatus());
-            dto.setBalanceAfter(0.0); 
-            allTransactions.add(dto);
+        String nextCursor = null;
+        if (rows.size() == limit) {
+            nextCursor = new HistoryCursor(rows.get(rows.size() - 1).seq()).encode();
         }
+        return new TransactionPageResponse(rows.stream().map(LedgerSearchRepo.Row::dto).toList(), nextCursor);
+    }
 
-        // Add top-ups
-        for (TopUpTransaction tx : topUps) {
-            TransactionResponseDto dto = new TransactionResponseDto();
-            dto.setId(tx.getId());
-            dto.setType("TOPUP");
-            dto.setAmount(tx.getAmount());
-            dto.setTimestamp(tx.getCreatedAt());
-            dto.setStatus("SUCCESS");
-            dto.setBalanceAfter(0.0);
-            allTransactions.add(dto);
+    /** Newest {@code limit} ledger entries for the card */
+    public List<TransactionResponseDto> getRecentTransactions(String cardId, int limit) {
+        return readYourWrites.onReplica(cardId, () -> historyCache
+                        .newest(cardId, Long.MAX_VALUE, limit, this::loadWindow)
+                        .orElseGet(() -> readLedger(cardId, () -> ledgerEntryRepo
+                                .findByCardIdOrderBySeqDesc(cardId, PageRequest.of(0, limit)))))
+                .stream().map(TransactionService::toDto).toList();
+    }
+
+    /**
+     * Spend and top-up totals over [from, to], inclusive, read from the daily
+     * rollups: at most one row per day, however many trips.
+     */
+    public SpendSummaryResponse getSummary(String jwt, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new ValidationException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_SUMMARY_DAYS) {
+            throw new ValidationException("Summary range is limited to " + MAX_SUMMARY_DAYS + " days");
+        }
+        String cardId = accountResolver.resolve(jwt).getCardId();
+
+        // Ledger not migrated yet means no rollups either
+        List<DailyRollup> rollups = readYourWrites.onReplica(cardId, () -> {
+            List<DailyRollup> found = dailyRollupRepo.findByIdCardIdAndIdDayBetweenOrderByIdDayAsc(cardId, from, to);
+            if (found.isEmpty() && ledgerService.ensureBackfilled(cardId)) {
+                found = dailyRollupRepo.findByIdCardIdAndIdDayBetweenOrderByIdDayAsc(cardId, from, to);
+            }
+            return found;
+        });
+
+        SpendSummaryResponse summary = new SpendSummaryResponse(from, to, 0, 0, 0, 0, new ArrayList<>());
+        for (DailyRollup rollup : rollups) {
+            summary.getDays().add(new DailySpendDto(rollup.getId().getDay(), rollup.getSpent(),
+                    rollup.getTripCount(), rollup.getToppedUp(), rollup.getTopUpCount()));
+            summary.setSpent(summary.getSpent() + rollup.getSpent());
+            summary.setTrips(summary.getTrips() + rollup.getTripCount());
+            summary.setToppedUp(summary.getToppedUp() + rollup.getToppedUp());
+            summary.setTopUps(summary.getTopUps() + rollup.getTopUpCount());
         }
+        return summary;
+    }
+
+    // Fills a card's cache window with its newest entries
+    private List<LedgerEntry> loadWindow(String cardId) {
+        PageRequest window = PageRequest.of(0, historyCache.windowSize());
+        return readLedger(cardId, () -> ledgerEntryRepo.findByCardIdOrderBySeqDesc(cardId, window));
+    }
 
-        // 4. Sort by timestamp (newest first)
-        allTransactions.sort(Comparator.comparing(
-                TransactionResponseDto::getTimestamp).reversed());
+    /**
+     * Runs the query; if it finds nothing because the card's legacy history
+     * has not been moved into the ledger yet, migrates it and runs it again.
+     */
+    private List<LedgerEntry> readLedger(String cardId, Supplier<List<LedgerEntry>> query) {
+        List<LedgerEntry> entries = query.get();
+        if (entries.isEmpty() && ledgerService.ensureBackfilled(cardId)) {
+            entries = query.get();
+        }
+        return entries;
+    }
 
-        return allTransactions;
+    static TransactionResponseDto toDto(LedgerEntry entry) {
+        TransactionResponseDto dto = new TransactionResponseDto();
+        dto.setId(entry.getSourceId() != null ? entry.getSourceId() : entry.getId());
+        dto.setType(entry.getType());
+        dto.setAmount(Math.abs(entry.getAmount()));
+        dto.setTimestamp(entry.getCreatedAt());
+        dto.setStatus(entry.getStatus());
+        dto.setBalanceAfter(entry.getBalanceAfter());
+        return dto;
     }
-}
\ No newline at end of file
+}
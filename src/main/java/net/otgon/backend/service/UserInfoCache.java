@@ -0,0 +1,55 @@
+package net.otgon.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import net.otgon.backend.dto.UserInfoView;
+import net.otgon.backend.util.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Per-user cache of {@link UserInfoView}, keyed by user id.
+ * Writes that change the balance evict the entry after commit; the TTL only
+ * bounds staleness if an eviction is ever missed.
+ */
+@Component
+public class UserInfoCache {
+
+    private final Cache<String, UserInfoView> cache;
+
+    public UserInfoCache(MeterRegistry meterRegistry,
+                         @Value("${cache.userinfo.max-size:10000}") long maxSize,
+                         @Value("${cache.userinfo.ttl-seconds:60}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userinfo");
+    }
+
+    public UserInfoView get(String userId, Function<String, UserInfoView> loader) {
+        return cache.get(userId, loader);
+    }
+
+    /** Drops the entry now; for writes made on another node */
+    public void evict(String userId) {
+        cache.invalidate(userId);
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    /** Drops the entry once the surrounding transaction commits */
+    public void evictAfterCommit(String userId) {
+        if (userId != null) {
+            AfterCommit.run(() -> cache.invalidate(userId));
+        }
+    }
+}
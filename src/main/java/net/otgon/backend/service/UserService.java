@@ -1,14 +1,21 @@
 package net.otgon.backend.service;
 
 import io.jsonwebtoken.*;
+import net.otgon.backend.dto.AuthTokens;
 import net.otgon.backend.dto.DeviceRegisterRequest;
 import net.otgon.backend.dto.DeviceRegisterResponse;
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.dto.UserInfoView;
 import net.otgon.backend.entity.Card;
 import net.otgon.backend.entity.Device;
 import net.otgon.backend.entity.User;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.ServiceBusyException;
 import net.otgon.backend.repository.DeviceRepo;
 import net.otgon.backend.repository.UserRepo;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import net.otgon.backend.util.UuidV7;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -16,23 +23,37 @@ import java.util.*;
 @Service
 public class UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
     private final UserRepo userRepo;
     private final DeviceRepo deviceRepo;
     private final JwtService jwtService;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final RefreshTokenService refreshTokenService;
+    private final LoginThrottle loginThrottle;
+    private final UserInfoCache userInfoCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
 
     public UserService(UserRepo userRepo,
                        DeviceRepo deviceRepo,
                        JwtService jwtService,
-                       PasswordEncoder passwordEncoder) {
+                       PasswordHashingService passwordHashingService,
+                       RefreshTokenService refreshTokenService,
+                       LoginThrottle loginThrottle,
+                       UserInfoCache userInfoCache,
+                       CacheInvalidationBus cacheInvalidationBus) {
         this.userRepo = userRepo;
         this.deviceRepo = deviceRepo;
         this.jwtService = jwtService;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.refreshTokenService = refreshTokenService;
+        this.loginThrottle = loginThrottle;
+        this.userInfoCache = userInfoCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
     }
 
 
-    public String register(String username, String password, String email) {
+    public AuthTokens register(String username, String password, String email) {
         // Check if user exists
         if (userRepo.findByUsername(username).isPresent()) {
             throw new RuntimeException("Username already exists");
@@ -46,60 +67,99 @@ public class UserService {
         // Create new user
         User newUser = new User();
         newUser.setUsername(username);
-        newUser.setPassword(passwordEncoder.encode(password));
+        newUser.setPassword(passwordHashingService.encode(username, password));
         newUser.setEmail(email);
 
         // Create card for user
         Card card = new Card();
-        card.setId(UUID.randomUUID().toString());
+        card.setId(UuidV7.next());
         card.setBalance(10); // Initial balance
         card.setUser(newUser);
         newUser.setCard(card);
 
         userRepo.save(newUser);
 
-        // Generate JWT
-        return jwtService.generateToken(username);
+        // Generate JWT + refresh token
+        return issueTokens(newUser);
+    }
+
+    public AuthTokens loginWithPassword(String username, String password) {
+        return loginWithPassword(username, password, null);
     }
 
-    public String loginWithPassword(String username, String password) {
+    public AuthTokens loginWithPassword(String username, String password, String clientAddress) {
+        // Throttled attempts never reach the database or BCrypt
+        loginThrottle.check(username, clientAddress);
+
         User user = userRepo.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // Verify password
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+        // Verify password (off the request thread, bounded)
+        if (!passwordHashingService.matches(username, password, user.getPassword())) {
+            loginThrottle.recordFailure(username, clientAddress);
             throw new RuntimeException("Invalid password");
         }
+        loginThrottle.recordSuccess(username, clientAddress);
+
+        rehashIfNeeded(user, password);
 
-        // Generate JWT
-        return jwtService.generateToken(username);
+        // Generate JWT + refresh token
+        return issueTokens(user);
     }
 
-    public Map<String, Object> getUserInfo(String token) {
+    // Only possible here: the plain password is known after a successful verify
+    private void rehashIfNeeded(User user, String password) {
+        if (!passwordHashingService.needsRehash(user.getPassword())) {
+            return;
+        }
+        try {
+            user.setPassword(passwordHashingService.encode(user.getUsername(), password));
+            userRepo.save(user);
+            cacheInvalidationBus.userChangedAfterCommit(user.getId());
+            log.info("Rehashed password for {} with current encoder settings", user.getUsername());
+        } catch (ServiceBusyException e) {
+            // Login already succeeded; try again next time
+            log.debug("Skipping rehash for {}: {}", user.getUsername(), e.getMessage());
+        }
+    }
 
-            String username = jwtService.extractUsername(token);
-            User user = userRepo.findByUsername(username).orElse(null);
-            if (user == null) {
-                throw new RuntimeException("User not found");
-            }
+    private AuthTokens issueTokens(User user) {
+        return new AuthTokens(
+                jwtService.generateToken(user),
+                refreshTokenService.issue(user),
+                jwtService.getExpirationSeconds());
+    }
 
-            Map<String, Object> info = new HashMap<>();
-            info.put("username", user.getUsername());
-            info.put("email", user.getEmail());
-            info.put("cardId", user.getCard().getId());
-            // Safe null check for card
-            info.put("balance", user.getCard() != null ? user.getCard().getBalance() : 0);
+    public UserInfoView getUserInfo(String token) {
+        return getUserInfo(jwtService.extractIdentity(token));
+    }
+
+    public UserInfoView getUserInfo(TokenIdentity identity) {
+
+        // Token carries the user id: cached projection, invalidated by balance writes
+        if (identity.getUserId() != null) {
+            return userInfoCache.get(identity.getUserId(), userId -> userRepo.findUserInfoById(userId)
+                    .orElseThrow(() -> new RuntimeException("User not found")));
+        }
 
-            return info;
+        // Tokens issued before identity claims
+        return userRepo.findUserInfoByUsername(identity.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
     }
 
     public DeviceRegisterResponse registerDevice(String token, DeviceRegisterRequest request) {
 
-        String username = jwtService.extractUsername(token);
+        TokenIdentity identity = jwtService.extractIdentity(token);
 
-        User user = userRepo.findByUsername(username)
+        User user = userRepo.findByUsername(identity.getUsername())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        // The token's card claim must still be this user's card before its device key changes
+        Card card = user.getCard();
+        if (!identity.matches(user.getId(), card != null ? card.getId() : null)) {
+            throw new InvalidTokenException("Card does not belong to user");
+        }
+
         Device existingDevice = deviceRepo.findByUser(user).orElse(null);
         String newKey = request.getPublicKey();
 
@@ -118,9 +178,12 @@ public class UserService {
         }
 
         // CASE 3: Device exists but key differs; replace device
+        String replacedId = existingDevice.getId();
         existingDevice.setPublicKey(newKey);
-        existingDevice.setId(UUID.randomUUID().toString()); 
+        existingDevice.setId(UuidV7.next()); 
         deviceRepo.save(existingDevice);
+        // Other nodes may still hold the old key
+        cacheInvalidationBus.deviceChangedAfterCommit(replacedId);
 
         return new DeviceRegisterResponse(existingDevice.getId(), "Old device replaced with new one");
     }
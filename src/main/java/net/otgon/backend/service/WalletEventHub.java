@@ -0,0 +1,344 @@
+package net.otgon.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import net.otgon.backend.dto.WalletEvent;
+import net.otgon.backend.entity.LedgerEntry;
+import net.otgon.backend.exception.ServiceBusyException;
+import net.otgon.backend.util.AfterCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Fan-out of wallet events to open SSE connections, by card.
+ *
+ * An idle connection is just a parked async request and a small queue, with
+ * no thread. Publishing only enqueues. A small dispatch pool does the socket
+ * writes, one drain at a time per subscriber, so events stay in order and a
+ * slow client never blocks a commit. A subscriber whose queue overflows is
+ * disconnected; on reconnect it gets a fresh snapshot, so nothing is lost.
+ *
+ * A subscriber is registered before its snapshot is read. Events published
+ * meanwhile are held and sent after the snapshot, and any event the snapshot
+ * already covers (seq at or below the snapshot's) is dropped, so a change
+ * committed while the stream opens is shown exactly once. Changes made on
+ * other nodes arrive as a fresh snapshot ({@link #refresh}).
+ */
+@Component
+public class WalletEventHub {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletEventHub.class);
+
+    static final String SNAPSHOT = "snapshot";
+    static final String LEDGER = "ledger";
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ObjectMapper objectMapper;
+    private final Executor dispatcher;
+    private final long timeoutMs;
+    private final int queueCapacity;
+    private final int maxConnections;
+    private final int maxPerCard;
+    private final Counter sent;
+    private final Counter slowDisconnects;
+
+    @Autowired
+    public WalletEventHub(ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${wallet.stream.dispatch-threads:4}") int dispatchThreads,
+                          @Value("${wallet.stream.timeout-ms:1800000}") long timeoutMs,
+                          @Value("${wallet.stream.queue-capacity:32}") int queueCapacity,
+                          @Value("${wallet.stream.max-connections:50000}") int maxConnections,
+                          @Value("${wallet.stream.max-per-card:5}") int maxPerCard) {
+        this(objectMapper, meterRegistry, newDispatcher(dispatchThreads),
+                timeoutMs, queueCapacity, maxConnections, maxPerCard);
+    }
+
+    WalletEventHub(ObjectMapper objectMapper, MeterRegistry meterRegistry, Executor dispatcher,
+                   long timeoutMs, int queueCapacity, int maxConnections, int maxPerCard) {
+        this.objectMapper = objectMapper;
+        this.dispatcher = dispatcher;
+        this.timeoutMs = timeoutMs;
+        this.queueCapacity = queueCapacity;
+        this.maxConnections = maxConnections;
+        this.maxPerCard = maxPerCard;
+        meterRegistry.gauge("wallet.stream.connections", connections);
+        this.sent = Counter.builder("wallet.stream.events")
+                .description("Events written to SSE connections").register(meterRegistry);
+        this.slowDisconnects = Counter.builder("wallet.stream.slow.disconnects")
+                .description("Connections dropped because their queue overflowed").register(meterRegistry);
+    }
+
+    private static ExecutorService newDispatcher(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "wallet-stream-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Opens a stream for the card. The snapshot is read once the stream is
+     * registered, and is the first event sent.
+     */
+    public SseEmitter subscribe(String cardId, Supplier<WalletEvent> snapshot) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new ServiceBusyException("Too many open wallet streams", 30);
+        }
+        Subscriber subscriber = new Subscriber(cardId, new SseEmitter(timeoutMs));
+        AtomicBoolean added = new AtomicBoolean();
+        // Under the map's per-key lock, so a concurrent close() cannot drop the set we add to
+        subscribers.compute(cardId, (id, set) -> {
+            Set<Subscriber> cardSubscribers = set != null ? set : ConcurrentHashMap.newKeySet();
+            if (cardSubscribers.size() < maxPerCard) {
+                added.set(cardSubscribers.add(subscriber));
+            }
+            return cardSubscribers.isEmpty() ? null : cardSubscribers;
+        });
+        if (!added.get()) {
+            connections.decrementAndGet();
+            throw new ServiceBusyException("Too many open streams for this card", 30);
+        }
+
+        subscriber.emitter.onCompletion(subscriber::close);
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(e -> subscriber.close());
+
+        WalletEvent current;
+        try {
+            current = snapshot.get();
+        } catch (RuntimeException e) {
+            subscriber.close();
+            throw e;
+        }
+        subscriber.start(Outgoing.event(SNAPSHOT, current.getSeq(), toJson(current)));
+        return subscriber.emitter;
+    }
+
+    /** Pushes the entry to the card's streams once the surrounding transaction commits */
+    public void publishAfterCommit(LedgerEntry entry) {
+        AfterCommit.run(() -> publish(entry));
+    }
+
+    void publish(LedgerEntry entry) {
+        Set<Subscriber> cardSubscribers = subscribers.get(entry.getCardId());
+        if (cardSubscribers == null || cardSubscribers.isEmpty()) {
+            return;
+        }
+        WalletEvent event = new WalletEvent(entry.getSeq(), entry.getBalanceAfter(), TransactionService.toDto(entry));
+        // Serialized once, written to every connection
+        Outgoing outgoing = Outgoing.event(LEDGER, entry.getSeq(), toJson(event));
+        for (Subscriber subscriber : cardSubscribers) {
+            subscriber.offer(outgoing);
+        }
+    }
+
+    /**
+     * Pushes a fresh snapshot to the card's streams, for a change committed on
+     * another node, which never publishes here. Read only when this node has a
+     * stream for the card; streams already past its seq skip it.
+     */
+    public void refresh(String cardId, Supplier<WalletEvent> snapshot) {
+        Set<Subscriber> cardSubscribers = subscribers.get(cardId);
+        if (cardSubscribers == null || cardSubscribers.isEmpty()) {
+            return;
+        }
+        WalletEvent current = snapshot.get();
+        Outgoing outgoing = Outgoing.event(SNAPSHOT, current.getSeq(), toJson(current));
+        for (Subscriber subscriber : cardSubscribers) {
+            subscriber.offer(outgoing);
+        }
+    }
+
+    // Keeps idle connections from being cut by proxies; also how dead clients are noticed
+    @Scheduled(fixedDelayString = "${wallet.stream.heartbeat-ms:20000}")
+    public void heartbeat() {
+        Outgoing ping = Outgoing.comment("ping");
+        for (Set<Subscriber> cardSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : cardSubscribers) {
+                subscriber.offerIfRoom(ping);
+            }
+        }
+    }
+
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    private String toJson(WalletEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize wallet event", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Set<Subscriber> cardSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : cardSubscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+        if (dispatcher instanceof ExecutorService pool) {
+            pool.shutdownNow();
+        }
+    }
+
+    private record Outgoing(String name, long id, String json) {
+
+        static Outgoing event(String name, long id, String json) {
+            return new Outgoing(name, id, json);
+        }
+
+        static Outgoing comment(String text) {
+            return new Outgoing(null, 0, text);
+        }
+
+        SseEmitter.SseEventBuilder toSse() {
+            if (name == null) {
+                return SseEmitter.event().comment(json);
+            }
+            return SseEmitter.event().name(name).id(Long.toString(id)).data(json, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private final class Subscriber {
+
+        private final String cardId;
+        private final SseEmitter emitter;
+        private final Queue<Outgoing> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Events published before the snapshot was queued; null once it is
+        private List<Outgoing> held = new ArrayList<>();
+        // Seq of the newest event queued; anything at or below it is already covered
+        private long lastSeq;
+
+        Subscriber(String cardId, SseEmitter emitter) {
+            this.cardId = cardId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /** Queues the snapshot, then the held events it does not already cover */
+        synchronized void start(Outgoing snapshot) {
+            List<Outgoing> early = held;
+            held = null;
+            lastSeq = snapshot.id();
+            if (closed.get()) {
+                return;
+            }
+            // Nothing else is queued before the snapshot, so there is room
+            queue.offer(snapshot);
+            scheduleDrain();
+            early.forEach(this::offer);
+        }
+
+        // Ledger events and refreshed snapshots: their id is the ledger seq
+        void offer(Outgoing outgoing) {
+            if (closed.get()) {
+                return;
+            }
+            synchronized (this) {
+                if (held != null) {
+                    if (held.size() < queueCapacity) {
+                        held.add(outgoing);
+                        return;
+                    }
+                } else if (outgoing.id() <= lastSeq) {
+                    // The client was already sent this change
+                    return;
+                } else if (queue.offer(outgoing)) {
+                    lastSeq = outgoing.id();
+                    scheduleDrain();
+                    return;
+                }
+            }
+            // Too far behind to catch up; it will resync from the snapshot on reconnect
+            slowDisconnects.increment();
+            log.debug("Dropping slow wallet stream for card {}", cardId);
+            close();
+            emitter.complete();
+        }
+
+        // Heartbeats are optional: never disconnect someone over a ping
+        void offerIfRoom(Outgoing outgoing) {
+            synchronized (this) {
+                if (held != null) {
+                    return;
+                }
+            }
+            if (!closed.get() && queue.offer(outgoing)) {
+                scheduleDrain();
+            }
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::drain);
+                } catch (RuntimeException e) {
+                    draining.set(false);
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                Outgoing next;
+                while (!closed.get() && (next = queue.poll()) != null) {
+                    emitter.send(next.toSse());
+                    sent.increment();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client gone or emitter already completed
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed.get() && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                queue.clear();
+                connections.decrementAndGet();
+                subscribers.computeIfPresent(cardId, (id, set) -> {
+                    set.remove(this);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package net.otgon.backend.service;
 
 import jakarta.transaction.Transactional;
+import net.otgon.backend.dto.TokenIdentity;
 import net.otgon.backend.dto.TopUpResponse;
 import net.otgon.backend.entity.Card;
+import net.otgon.backend.entity.LedgerEntry;
 import net.otgon.backend.entity.TopUpTransaction;
 import net.otgon.backend.entity.Transaction;
-import net.otgon.backend.entity.User;
+import net.otgon.backend.exception.InvalidTokenException;
 import net.otgon.backend.repository.CardRepo;
 import net.otgon.backend.repository.TopUpTransactionRepo;
 import net.otgon.backend.repository.TransactionRepo;
@@ -13,6 +15,7 @@ import net.otgon.backend.repository.UserRepo;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -25,15 +28,43 @@ public class WalletService {
     private final CardRepo cardRepo;
     private final TopUpTransactionRepo  topUpTransactionRepo;
     private final JwtService jwtService;
+    private final UserInfoCache userInfoCache;
+    private final LedgerService ledgerService;
+    private final AccountResolver accountResolver;
+    private final WalletEventHub walletEventHub;
+    private final CacheInvalidationBus cacheInvalidationBus;
 
     public WalletService(CardRepo cardRepo,
                          TopUpTransactionRepo topUpTransactionRepo,
                          UserRepo userRepo,
-                         JwtService jwtService) {
+                         JwtService jwtService,
+                         UserInfoCache userInfoCache,
+                         LedgerService ledgerService,
+                         AccountResolver accountResolver,
+                         WalletEventHub walletEventHub,
+                         CacheInvalidationBus cacheInvalidationBus) {
         this.cardRepo = cardRepo;
         this.topUpTransactionRepo = topUpTransactionRepo;
         this.userRepo = userRepo;
         this.jwtService = jwtService;
+        this.userInfoCache = userInfoCache;
+        this.ledgerService = ledgerService;
+        this.accountResolver = accountResolver;
+        this.walletEventHub = walletEventHub;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * Opens the push stream for the token's card. The first event is the
+     * current balance, so a reconnecting app never misses a change.
+     */
+    public SseEmitter openStream(String token) {
+        String cardId = accountResolver.resolve(token).getCardId();
+        // Read after the stream is registered, and from the primary: a change committed
+        // before the read is in the snapshot, one committed after it is pushed
+        return walletEventHub.subscribe(cardId, () -> ledgerService.walletState(cardId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Card not found for user")));
     }
 
     /** Transactional, Ensures the balance update + transaction logging is atomic.
@@ -51,24 +82,28 @@ public class WalletService {
                     "Amount exceeds maximum (€100)");
         }
 
-        // 2. Extract username from JWT
-        String username = jwtService.extractUsername(token);
+        // 2. Extract identity from JWT
+        TokenIdentity identity = jwtService.extractIdentity(token);
 
-        // 3. Find user and their card
-        User user = userRepo.findByUsername(username)
+        // 3. Resolve the user (natural-id cache), then load and lock their card.
+        // Row-locked: balance and ledger seq must not race
+        String userId = userRepo.findIdByUsername(identity.getUsername())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
                         "User not found"));
 
-        Card card = user.getCard();
-        if (card == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
-                    "Card not found for user");
+        Card card = ledgerService.lockCardOf(userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Card not found for user"));
+        if (!identity.matches(userId, card.getId())) {
+            throw new InvalidTokenException("Card does not belong to user");
         }
 
         // 4. Update balance
         double newBalance = card.getBalance() + amount;
         card.setBalance(newBalance);
         cardRepo.save(card);
+        userInfoCache.evictAfterCommit(userId);
+        cacheInvalidationBus.cardChangedAfterCommit(card.getId(), userId);
 
         // 5. Save top-up transaction
         TopUpTransaction txn = new TopUpTransaction();
@@ -77,6 +112,9 @@ public class WalletService {
         txn.setCreatedAt(LocalDateTime.now());
         topUpTransactionRepo.save(txn);
 
+        // 6. Append to the ledger with the balance it left behind
+        ledgerService.append(card, LedgerEntry.TOPUP, amount, "SUCCESS", txn.getId(), txn.getCreatedAt());
+
         return new TopUpResponse(true, newBalance, amount);
     }
 
@@ -0,0 +1,98 @@
+package net.otgon.backend.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Approximate per-key sliding-window counter in a bounded amount of memory.
+ *
+ * Each key holds the count of the current and previous fixed window. The
+ * sliding count is the current count plus the previous one weighted by how
+ * much of it still overlaps the window. Keys are kept as they are, not hashed
+ * into shared slots, so one key's events never count against another.
+ * A key is dropped two windows after its last event, when it no longer
+ * counts; past maxKeys the least used keys are evicted early. Eviction can
+ * only make a key look quieter than it is, never busier.
+ */
+public class SlidingWindowCounter {
+
+    private final long windowMs;
+    private final Cache<String, Window> windows;
+
+    public SlidingWindowCounter(int maxKeys, long windowMs) {
+        if (maxKeys <= 0 || windowMs <= 0) {
+            throw new IllegalArgumentException("maxKeys and windowMs must be positive");
+        }
+        this.windowMs = windowMs;
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofMillis(2 * windowMs))
+                .build();
+    }
+
+    /** Counts one event for the key and returns the sliding count including it */
+    public double increment(String key, long nowMs) {
+        double[] count = new double[1];
+        // A write, so the key's expiry starts over
+        windows.asMap().compute(key, (k, window) -> {
+            Window w = window != null ? window : new Window();
+            count[0] = w.increment(nowMs, windowMs);
+            return w;
+        });
+        return count[0];
+    }
+
+    public double count(String key, long nowMs) {
+        Window window = windows.getIfPresent(key);
+        return window == null ? 0 : window.count(nowMs, windowMs);
+    }
+
+    /** Forgets the key's events */
+    public void reset(String key) {
+        windows.invalidate(key);
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    private static final class Window {
+
+        private long windowId;
+        private int current;
+        private int previous;
+
+        synchronized double increment(long nowMs, long windowMs) {
+            roll(nowMs, windowMs);
+            if (current < Integer.MAX_VALUE) {
+                current++;
+            }
+            return weighted(nowMs, windowMs);
+        }
+
+        synchronized double count(long nowMs, long windowMs) {
+            roll(nowMs, windowMs);
+            return weighted(nowMs, windowMs);
+        }
+
+        private void roll(long nowMs, long windowMs) {
+            long id = nowMs / windowMs;
+            long age = id - windowId;
+            if (age == 1) {
+                previous = current;
+                current = 0;
+            } else if (age > 1 || age < 0) {
+                previous = 0;
+                current = 0;
+            }
+            windowId = id;
+        }
+
+        private double weighted(long nowMs, long windowMs) {
+            double overlap = 1.0 - (double) (nowMs % windowMs) / windowMs;
+            return current + previous * overlap;
+        }
+    }
+}
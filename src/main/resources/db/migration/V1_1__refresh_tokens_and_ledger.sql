@@ -0,0 +1,47 @@
+-- Tables and columns added since the baseline schema: refresh tokens, the
+-- per-card ledger and its daily rollups. Runs on databases baselined at V1 as
+-- well as new ones; ordered before V2, which indexes these tables.
+-- IF NOT EXISTS: a development database run with ddl-auto=update against these
+-- entities may already have them.
+
+-- Adding a column with a constant default does not rewrite the table (PostgreSQL 11+)
+ALTER TABLE cards
+    ADD COLUMN IF NOT EXISTS ledger_seq BIGINT DEFAULT 0 NOT NULL;
+
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    id         VARCHAR(36)  NOT NULL,
+    token_hash VARCHAR(64)  NOT NULL,
+    family_id  VARCHAR(36)  NOT NULL,
+    user_id    VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL,
+    revoked_at TIMESTAMP(6),
+    CONSTRAINT pk_refresh_tokens PRIMARY KEY (id),
+    CONSTRAINT uk_refresh_tokens_hash UNIQUE (token_hash),
+    CONSTRAINT fk_refresh_tokens_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_entries (
+    id            VARCHAR(36)      NOT NULL,
+    card_id       VARCHAR(36)      NOT NULL,
+    seq           BIGINT           NOT NULL,
+    type          VARCHAR(20)      NOT NULL,
+    amount        DOUBLE PRECISION NOT NULL,
+    balance_after DOUBLE PRECISION NOT NULL,
+    status        VARCHAR(20)      NOT NULL,
+    source_id     VARCHAR(36),
+    created_at    TIMESTAMP(6)     NOT NULL,
+    CONSTRAINT pk_ledger_entries PRIMARY KEY (id),
+    CONSTRAINT uk_ledger_card_seq UNIQUE (card_id, seq),
+    CONSTRAINT uk_ledger_source UNIQUE (source_id)
+);
+
+CREATE TABLE IF NOT EXISTS card_daily_rollups (
+    card_id     VARCHAR(36)      NOT NULL,
+    rollup_date DATE             NOT NULL,
+    spent       DOUBLE PRECISION NOT NULL,
+    trip_count  INTEGER          NOT NULL,
+    topped_up   DOUBLE PRECISION NOT NULL,
+    topup_count INTEGER          NOT NULL,
+    CONSTRAINT pk_card_daily_rollups PRIMARY KEY (card_id, rollup_date)
+);
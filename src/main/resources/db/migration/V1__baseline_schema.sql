@@ -0,0 +1,69 @@
+-- Schema as previously generated by ddl-auto=update, before any of the tables
+-- and columns added since (those are in V1_1). Existing databases are
+-- baselined at this version (spring.flyway.baseline-on-migrate) and skip it.
+-- Indexes are in V2.
+
+CREATE TABLE users (
+    id         VARCHAR(255) NOT NULL,
+    username   VARCHAR(50)  NOT NULL,
+    email      VARCHAR(100) NOT NULL,
+    password   VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6),
+    CONSTRAINT pk_users PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE cards (
+    id         VARCHAR(36)      NOT NULL,
+    user_id    VARCHAR(255)     NOT NULL,
+    balance    DOUBLE PRECISION NOT NULL,
+    CONSTRAINT pk_cards PRIMARY KEY (id),
+    CONSTRAINT uk_cards_user UNIQUE (user_id),
+    CONSTRAINT fk_cards_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE devices (
+    id            VARCHAR(255)  NOT NULL,
+    public_key    VARCHAR(2048),
+    user_id       VARCHAR(255)  NOT NULL,
+    registered_at TIMESTAMP(6)  NOT NULL,
+    CONSTRAINT pk_devices PRIMARY KEY (id),
+    CONSTRAINT fk_devices_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+
+CREATE TABLE qr_tokens (
+    jti        VARCHAR(36)  NOT NULL,
+    card_id    VARCHAR(36)  NOT NULL,
+    issued_at  TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL,
+    used       BOOLEAN      NOT NULL,
+    CONSTRAINT pk_qr_tokens PRIMARY KEY (jti)
+);
+
+CREATE TABLE transactions (
+    id               VARCHAR(36)      NOT NULL,
+    tx_id            VARCHAR(64)      NOT NULL,
+    type             VARCHAR(64),
+    signature        TEXT             NOT NULL,
+    amount           DOUBLE PRECISION NOT NULL,
+    device_timestamp BIGINT           NOT NULL,
+    synced_at        TIMESTAMP(6),
+    status           VARCHAR(20)      NOT NULL,
+    processed        BOOLEAN          NOT NULL,
+    card_id          VARCHAR(36),
+    CONSTRAINT pk_transactions PRIMARY KEY (id),
+    CONSTRAINT uk_transactions_tx_id UNIQUE (tx_id),
+    CONSTRAINT fk_transactions_card FOREIGN KEY (card_id) REFERENCES cards (id)
+);
+
+CREATE TABLE topup_transactions (
+    id         VARCHAR(36)      NOT NULL,
+    card_id    VARCHAR(36)      NOT NULL,
+    amount     DOUBLE PRECISION NOT NULL,
+    created_at TIMESTAMP(6)     NOT NULL,
+    CONSTRAINT pk_topup_transactions PRIMARY KEY (id),
+    CONSTRAINT fk_topup_transactions_card FOREIGN KEY (card_id) REFERENCES cards (id)
+);
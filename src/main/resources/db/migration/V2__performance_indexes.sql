@@ -0,0 +1,29 @@
+-- Indexes behind the hot queries. CONCURRENTLY keeps the tables writable while
+-- they build on a live database; Flyway runs a script made only of such
+-- statements outside a transaction. IF NOT EXISTS: databases baselined from
+-- ddl-auto=update may already have the ones that were declared on entities.
+
+-- Legacy history reads and ledger backfill: WHERE card_id = ? ORDER BY synced_at / created_at
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_card_synced
+    ON transactions (card_id, synced_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_topups_card_created
+    ON topup_transactions (card_id, created_at, id);
+
+-- Device lookup by owner (device registration, bootstrap)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_devices_user
+    ON devices (user_id);
+
+-- Refresh token family revocation and per-user lookups
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_refresh_tokens_family
+    ON refresh_tokens (family_id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_refresh_tokens_user
+    ON refresh_tokens (user_id);
+
+-- Filtered history search (LedgerSearchRepo)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ledger_card_created
+    ON ledger_entries (card_id, created_at);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ledger_card_type_amount
+    ON ledger_entries (card_id, type, amount);
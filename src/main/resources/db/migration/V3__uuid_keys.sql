@@ -0,0 +1,69 @@
+-- Entity ids and the columns that reference them go from varchar(36)/(255)
+-- to native uuid: 16 bytes per key instead of 37+, in the table and in
+-- every index on it. Existing values are UUID strings and cast directly.
+-- New ids are time-ordered (UUIDv7, generated by the application).
+-- ALTER COLUMN TYPE rewrites each table and its indexes under an exclusive
+-- lock: run this in a maintenance window.
+
+-- Foreign keys must be dropped before their columns change type. Databases
+-- created by ddl-auto=update have generated constraint names, so find them.
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN
+        SELECT conrelid::regclass AS table_name, conname
+          FROM pg_constraint
+         WHERE contype = 'f'
+           AND conrelid IN ('cards'::regclass, 'devices'::regclass, 'refresh_tokens'::regclass,
+                            'transactions'::regclass, 'topup_transactions'::regclass)
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.table_name, fk.conname);
+    END LOOP;
+END $$;
+
+ALTER TABLE users
+    ALTER COLUMN id TYPE uuid USING id::uuid;
+
+ALTER TABLE cards
+    ALTER COLUMN id TYPE uuid USING id::uuid,
+    ALTER COLUMN user_id TYPE uuid USING user_id::uuid;
+
+ALTER TABLE devices
+    ALTER COLUMN id TYPE uuid USING id::uuid,
+    ALTER COLUMN user_id TYPE uuid USING user_id::uuid;
+
+ALTER TABLE refresh_tokens
+    ALTER COLUMN id TYPE uuid USING id::uuid,
+    ALTER COLUMN family_id TYPE uuid USING family_id::uuid,
+    ALTER COLUMN user_id TYPE uuid USING user_id::uuid;
+
+ALTER TABLE qr_tokens
+    ALTER COLUMN card_id TYPE uuid USING card_id::uuid;
+
+ALTER TABLE transactions
+    ALTER COLUMN id TYPE uuid USING id::uuid,
+    ALTER COLUMN card_id TYPE uuid USING card_id::uuid;
+
+ALTER TABLE topup_transactions
+    ALTER COLUMN id TYPE uuid USING id::uuid,
+    ALTER COLUMN card_id TYPE uuid USING card_id::uuid;
+
+ALTER TABLE ledger_entries
+    ALTER COLUMN id TYPE uuid USING id::uuid,
+    ALTER COLUMN card_id TYPE uuid USING card_id::uuid,
+    ALTER COLUMN source_id TYPE uuid USING source_id::uuid;
+
+ALTER TABLE card_daily_rollups
+    ALTER COLUMN card_id TYPE uuid USING card_id::uuid;
+
+ALTER TABLE cards
+    ADD CONSTRAINT fk_cards_user FOREIGN KEY (user_id) REFERENCES users (id);
+ALTER TABLE devices
+    ADD CONSTRAINT fk_devices_user FOREIGN KEY (user_id) REFERENCES users (id);
+ALTER TABLE refresh_tokens
+    ADD CONSTRAINT fk_refresh_tokens_user FOREIGN KEY (user_id) REFERENCES users (id);
+ALTER TABLE transactions
+    ADD CONSTRAINT fk_transactions_card FOREIGN KEY (card_id) REFERENCES cards (id);
+ALTER TABLE topup_transactions
+    ADD CONSTRAINT fk_topup_transactions_card FOREIGN KEY (card_id) REFERENCES cards (id);
@@ -0,0 +1,124 @@
+-- transactions and topup_transactions become range-partitioned by month on
+-- their timestamp column. Old months can then be detached (or dropped) whole
+-- by PartitionMaintenanceService instead of being vacuumed and indexed forever.
+-- Both tables are copied into the new layout: run this in a maintenance window.
+--
+-- A unique constraint on a partitioned table must include the partition key,
+-- so tx_id can no longer be unique across all of transactions. Replay
+-- protection moves to redeemed_tx_ids, which holds each accepted tx_id for as
+-- long as RedeemService would still accept its payload timestamp.
+-- ledger_entries stays as it is: its (card_id, seq) key and newest-first
+-- history reads span all time, and it is the balance history of record.
+
+-- Creates the partition of a monthly-partitioned table that holds the month
+-- starting at month_start, named <parent>_yYYYYmMM. Also called by the app to
+-- create partitions ahead of time.
+CREATE OR REPLACE FUNCTION create_month_partition(parent text, month_start date) RETURNS void AS $$
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                   parent || to_char(month_start, '"_y"YYYY"m"MM'), parent,
+                   date_trunc('month', month_start)::date,
+                   (date_trunc('month', month_start) + interval '1 month')::date);
+END $$ LANGUAGE plpgsql;
+
+-- Free the constraint and index names for the new tables
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+ALTER TABLE topup_transactions RENAME TO topup_transactions_unpartitioned;
+
+DO $$
+DECLARE
+    c record;
+BEGIN
+    FOR c IN
+        SELECT conrelid::regclass AS table_name, conname
+          FROM pg_constraint
+         WHERE conrelid IN ('transactions_unpartitioned'::regclass, 'topup_transactions_unpartitioned'::regclass)
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', c.table_name, c.conname);
+    END LOOP;
+END $$;
+
+DROP INDEX IF EXISTS idx_transactions_card_synced;
+DROP INDEX IF EXISTS idx_topups_card_created;
+
+CREATE TABLE transactions (
+    id               uuid             NOT NULL,
+    tx_id            VARCHAR(64)      NOT NULL,
+    type             VARCHAR(64),
+    signature        TEXT             NOT NULL,
+    amount           DOUBLE PRECISION NOT NULL,
+    device_timestamp BIGINT           NOT NULL,
+    synced_at        TIMESTAMP(6)     NOT NULL,
+    status           VARCHAR(20)      NOT NULL,
+    processed        BOOLEAN          NOT NULL,
+    card_id          uuid,
+    CONSTRAINT pk_transactions PRIMARY KEY (id, synced_at),
+    CONSTRAINT fk_transactions_card FOREIGN KEY (card_id) REFERENCES cards (id)
+) PARTITION BY RANGE (synced_at);
+
+CREATE INDEX idx_transactions_card_synced ON transactions (card_id, synced_at, id);
+
+CREATE TABLE topup_transactions (
+    id         uuid             NOT NULL,
+    card_id    uuid             NOT NULL,
+    amount     DOUBLE PRECISION NOT NULL,
+    created_at TIMESTAMP(6)     NOT NULL,
+    CONSTRAINT pk_topup_transactions PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_topup_transactions_card FOREIGN KEY (card_id) REFERENCES cards (id)
+) PARTITION BY RANGE (created_at);
+
+CREATE INDEX idx_topups_card_created ON topup_transactions (card_id, created_at, id);
+
+CREATE TABLE redeemed_tx_ids (
+    tx_id      VARCHAR(64)  NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT pk_redeemed_tx_ids PRIMARY KEY (tx_id)
+);
+
+CREATE INDEX idx_redeemed_tx_ids_expires ON redeemed_tx_ids (expires_at);
+
+-- Rows from before synced_at was always set fall back to the device clock
+UPDATE transactions_unpartitioned
+   SET synced_at = to_timestamp(device_timestamp / 1000.0)::timestamp
+ WHERE synced_at IS NULL;
+
+-- One partition per month of existing history, through three months ahead
+DO $$
+DECLARE
+    first_month date;
+    m date;
+BEGIN
+    SELECT date_trunc('month', LEAST(
+               (SELECT MIN(synced_at) FROM transactions_unpartitioned),
+               (SELECT MIN(created_at) FROM topup_transactions_unpartitioned),
+               now()::timestamp))::date
+      INTO first_month;
+    m := first_month;
+    WHILE m <= (date_trunc('month', now()) + interval '3 months')::date LOOP
+        PERFORM create_month_partition('transactions', m);
+        PERFORM create_month_partition('topup_transactions', m);
+        m := (m + interval '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO transactions (id, tx_id, type, signature, amount, device_timestamp, synced_at, status, processed, card_id)
+SELECT id, tx_id, type, signature, amount, device_timestamp, synced_at, status, processed, card_id
+  FROM transactions_unpartitioned;
+
+INSERT INTO topup_transactions (id, card_id, amount, created_at)
+SELECT id, card_id, amount, created_at
+  FROM topup_transactions_unpartitioned;
+
+-- tx_ids whose payload could still be replayed (device timestamp within the
+-- 24-hour window, plus the hour of slack RedeemService adds)
+INSERT INTO redeemed_tx_ids (tx_id, expires_at)
+SELECT tx_id, MAX(to_timestamp(device_timestamp / 1000.0)::timestamp + interval '25 hours')
+  FROM transactions_unpartitioned
+ WHERE to_timestamp(device_timestamp / 1000.0)::timestamp + interval '25 hours' > now()::timestamp
+ GROUP BY tx_id;
+
+DROP TABLE transactions_unpartitioned;
+DROP TABLE topup_transactions_unpartitioned;
+
+-- Retention moves detached partitions here unless configured to drop them
+CREATE SCHEMA IF NOT EXISTS archive;
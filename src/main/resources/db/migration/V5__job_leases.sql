@@ -0,0 +1,12 @@
+-- One row per cluster-wide scheduled job (JobLeaseService). A node runs the
+-- job only if it moved locked_until from the past to the future; the others
+-- skip that run. Rows are created on first use. locked_by/locked_at record
+-- which node ran the job last. The times are timestamptz, written from
+-- CURRENT_TIMESTAMP, so they do not depend on the session TimeZone.
+CREATE TABLE job_leases (
+    name         VARCHAR(100) NOT NULL,
+    locked_until TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    locked_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    locked_by    VARCHAR(255) NOT NULL,
+    CONSTRAINT pk_job_leases PRIMARY KEY (name)
+);
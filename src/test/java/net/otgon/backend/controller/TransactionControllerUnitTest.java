@@ -1,21 +1,36 @@
 package net.otgon.backend.controller;
 
+import net.otgon.backend.dto.HistoryFilter;
+import net.otgon.backend.dto.TransactionPageResponse;
 import net.otgon.backend.dto.TransactionResponseDto;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.ServiceBusyException;
+import net.otgon.backend.exception.ValidationException;
 import net.otgon.backend.service.JwtService;
+import net.otgon.backend.service.LedgerVersionService;
+import net.otgon.backend.service.TransactionExportService;
 import net.otgon.backend.service.TransactionService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -32,6 +47,12 @@ public class TransactionControllerUnitTest {
     @MockitoBean
     private TransactionService transactionService;
 
+    @MockitoBean
+    private TransactionExportService transactionExportService;
+
+    @MockitoBean
+    private LedgerVersionService ledgerVersionService;
+
     @MockitoBean
     private JwtService jwtService;
 
@@ -79,7 +100,7 @@ public class TransactionControllerUnitTest {
         //Arrange
         String invalidToken = "token";
         when(transactionService.getAllUserTransactions(invalidToken))
-                .thenThrow(new RuntimeException("Invalid token"));
+                .thenThrow(new InvalidTokenException("Invalid token"));
         //Act
         mockMvc.perform(get("/api/transactions")
                         .header("Authorization", "Bearer " + invalidToken))
@@ -88,4 +109,215 @@ public class TransactionControllerUnitTest {
 
     }
 
+    //TEST-4 GET api/transactions?limit= RETURNS A PAGE
+    @Test
+    @DisplayName("Success: paged request returns items and next cursor")
+    void getUserTransactionsPage() throws Exception {
+
+        //Arrange
+        String token = "token";
+        TransactionPageResponse page = new TransactionPageResponse(
+                List.of(new TransactionResponseDto("id-1", "DEDUCT", 10, 0, LocalDateTime.now(), "SUCCESS")),
+                "next-cursor");
+        when(transactionService.getTransactionPage(token, null, 1)).thenReturn(page);
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions")
+                        .param("limit", "1")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value("id-1"))
+                .andExpect(jsonPath("$.nextCursor").value("next-cursor"));
+        verify(transactionService, never()).getAllUserTransactions(anyString());
+    }
+
+    //TEST-5 GET api/transactions?cursor= INVALID CURSOR - Returns 400
+    @Test
+    @DisplayName("Fail: invalid cursor")
+    void getUserTransactionsInvalidCursor() throws Exception {
+
+        //Arrange
+        String token = "token";
+        when(transactionService.getTransactionPage(token, "bad", 20))
+                .thenThrow(new ValidationException("Invalid cursor"));
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions")
+                        .param("cursor", "bad")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest());
+    }
+
+    //TEST-6 GET api/transactions/export STREAMS THE SERVICE OUTPUT
+    @Test
+    @DisplayName("Success: export streams ndjson")
+    void exportTransactionsNdjson() throws Exception {
+
+        //Arrange
+        String token = "token";
+        when(transactionExportService.resolveCardId(token)).thenReturn("card-1");
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write("{\"id\":\"id-1\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(transactionExportService).export(eq("card-1"), eq(TransactionExportService.Format.NDJSON), any());
+
+        //Act
+        MvcResult result = mockMvc.perform(get("/api/transactions/export")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //Assert
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("{\"id\":\"id-1\"}\n"));
+    }
+
+    //TEST-7 GET api/transactions/export UNKNOWN FORMAT - Returns 400
+    @Test
+    @DisplayName("Fail: unsupported export format")
+    void exportTransactionsBadFormat() throws Exception {
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions/export")
+                        .param("format", "xml")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(transactionExportService);
+    }
+
+    //TEST-8 GET api/transactions CHANGED VERSION RETURNS BODY AND ETAG
+    @Test
+    @DisplayName("Success: stale If-None-Match gets the list with the new ETag")
+    void getUserTransactionsModified() throws Exception {
+
+        //Arrange
+        String token = "token";
+        when(ledgerVersionService.historyEtagFor(token)).thenReturn("\"v5\"");
+        when(transactionService.getAllUserTransactions(token)).thenReturn(List.of());
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", "\"v4\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v5\""))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    //TEST-9 GET api/transactions UNCHANGED VERSION - Returns 304
+    @Test
+    @DisplayName("Not modified: matching If-None-Match skips the history read")
+    void getUserTransactionsNotModified() throws Exception {
+
+        //Arrange
+        String token = "token";
+        when(ledgerVersionService.historyEtagFor(token)).thenReturn("\"v5\"");
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions")
+                        .param("limit", "20")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", "\"v5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verifyNoInteractions(transactionService);
+    }
+
+    //TEST-10 GET api/transactions?type=&from= RUNS A FILTERED SEARCH
+    @Test
+    @DisplayName("Success: filter parameters return a filtered page")
+    void getUserTransactionsFiltered() throws Exception {
+
+        //Arrange
+        String token = "token";
+        TransactionPageResponse page = new TransactionPageResponse(
+                List.of(new TransactionResponseDto("id-1", "TOPUP", 10, 10, LocalDateTime.now(), "SUCCESS")), null);
+        when(transactionService.searchTransactions(eq(token), any(HistoryFilter.class), isNull(), eq(20)))
+                .thenReturn(page);
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions")
+                        .param("type", "TOPUP")
+                        .param("from", "2025-01-01")
+                        .param("minAmount", "5")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("id-1"));
+
+        ArgumentCaptor<HistoryFilter> captor = ArgumentCaptor.forClass(HistoryFilter.class);
+        verify(transactionService).searchTransactions(eq(token), captor.capture(), isNull(), eq(20));
+        assertEquals("TOPUP", captor.getValue().getType());
+        assertEquals(LocalDate.of(2025, 1, 1), captor.getValue().getFrom());
+        assertEquals(5.0, captor.getValue().getMinAmount());
+        verify(transactionService, never()).getAllUserTransactions(anyString());
+    }
+
+    //TEST-11 GET api/transactions/summary: ONLY A BAD TOKEN IS 401
+    @Test
+    @DisplayName("Fail: summary answers 401 for a bad token and 503 when busy")
+    void getSummaryErrors() throws Exception {
+
+        //Arrange
+        when(transactionService.getSummary(eq("expired"), any(LocalDate.class), any(LocalDate.class)))
+                .thenThrow(new InvalidTokenException("Token expired"));
+        when(transactionService.getSummary(eq("token"), any(LocalDate.class), any(LocalDate.class)))
+                .thenThrow(new ServiceBusyException("Database busy", 2));
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions/summary")
+                        .header("Authorization", "Bearer expired"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/transactions/summary")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    //TEST-12 GET api/transactions/export: A FAILED BACKFILL IS NOT AN AUTH FAILURE
+    @Test
+    @DisplayName("Fail: export answers 401 for a bad token and 500 when resolution fails")
+    void exportResolutionErrors() throws Exception {
+
+        //Arrange
+        when(transactionExportService.resolveCardId("expired"))
+                .thenThrow(new InvalidTokenException("Token expired"));
+        when(transactionExportService.resolveCardId("token"))
+                .thenThrow(new IllegalStateException("Ledger backfill failed"));
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions/export")
+                        .header("Authorization", "Bearer expired"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/transactions/export")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(status().isInternalServerError());
+        verify(transactionExportService, never()).export(anyString(), any(), any());
+    }
+
+    //TEST-13 GET api/transactions: A BUSY DATABASE IS NOT AN AUTH FAILURE
+    @Test
+    @DisplayName("Fail: history answers 503 when busy and 500 on other errors")
+    void getUserTransactionsErrors() throws Exception {
+
+        //Arrange
+        when(transactionService.getAllUserTransactions("token"))
+                .thenThrow(new ServiceBusyException("Database busy", 2));
+        when(transactionService.getTransactionPage("token", null, 5))
+                .thenThrow(new IllegalStateException("History query failed"));
+
+        //Act and Assert
+        mockMvc.perform(get("/api/transactions")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+        mockMvc.perform(get("/api/transactions")
+                        .param("limit", "5")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(status().isInternalServerError());
+    }
 }
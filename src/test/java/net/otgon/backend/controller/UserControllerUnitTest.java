@@ -1,6 +1,12 @@
 package net.otgon.backend.controller;
 
+import net.otgon.backend.dto.AuthTokens;
+import net.otgon.backend.dto.UserInfoView;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.ServiceBusyException;
+import net.otgon.backend.exception.TooManyRequestsException;
 import net.otgon.backend.service.JwtService;
+import net.otgon.backend.service.LedgerVersionService;
 import net.otgon.backend.service.UserService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,8 +18,6 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.http.MediaType;
 
-import java.util.HashMap;
-import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -33,6 +37,9 @@ public class UserControllerUnitTest {
     @MockitoBean
     private UserService userService;
 
+    @MockitoBean
+    private LedgerVersionService ledgerVersionService;
+
     @MockitoBean
     private JwtService jwtService;
 
@@ -54,14 +61,16 @@ public class UserControllerUnitTest {
 
         //Arrange
         String token = "mock.token";
-        when(userService.register(username, password, email)).thenReturn(token);
+        when(userService.register(username, password, email))
+                .thenReturn(new AuthTokens(token, "refresh.token", 3600));
 
         //Act & Assert
         mockMvc.perform(post("/api/register")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().isOk())
-                .andExpect(content().string(token));
+                .andExpect(content().string(token))
+                .andExpect(header().string("X-Refresh-Token", "refresh.token"));
 
         verify(userService, times(1)).register(username, password, email);
     }
@@ -117,15 +126,17 @@ public class UserControllerUnitTest {
               "password": "%s"
             }
             """, username, password);
-        when(userService.loginWithPassword(username, password)).thenReturn(token);
+        when(userService.loginWithPassword(eq(username), eq(password), anyString()))
+                .thenReturn(new AuthTokens(token, "refresh.token", 3600));
 
         //Act and Assert
         mockMvc.perform(post("/api/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBodyLogin))
                 .andExpect(status().isOk())
-                .andExpect(content().string(token));
-        verify(userService, times(1)).loginWithPassword(username, password);
+                .andExpect(content().string(token))
+                .andExpect(header().string("X-Refresh-Token", "refresh.token"));
+        verify(userService, times(1)).loginWithPassword(eq(username), eq(password), anyString());
     }
 
     //TEST-5 POST /api/login FAIL WRONG PASSWORD
@@ -140,7 +151,7 @@ public class UserControllerUnitTest {
               "password": "%s"
             }
             """, username, password);
-        when(userService.loginWithPassword(username, password))
+        when(userService.loginWithPassword(eq(username), eq(password), anyString()))
                 .thenThrow(new RuntimeException("Invalid password"));
 
         //Act and Arrange
@@ -149,7 +160,7 @@ public class UserControllerUnitTest {
                         .content(requestBodyLogin))
                 .andExpect(status().isUnauthorized())
                 .andExpect(content().string("Invalid credentials"));
-        verify(userService, times(1)).loginWithPassword(username, password);
+        verify(userService, times(1)).loginWithPassword(eq(username), eq(password), anyString());
     }
 
     //TEST-6 USER NOT FOUND
@@ -165,7 +176,7 @@ public class UserControllerUnitTest {
             }
             """, username, password);
 
-        when(userService.loginWithPassword(username, password))
+        when(userService.loginWithPassword(eq(username), eq(password), anyString()))
                 .thenThrow(new RuntimeException("User not found"));
 
         //Act and Arrange
@@ -176,7 +187,7 @@ public class UserControllerUnitTest {
                 .andExpect(content().string("User not found"));
 
         verify(userService, times(1))
-                .loginWithPassword(username, password);
+                .loginWithPassword(eq(username), eq(password), anyString());
     }
 
     //TEST-7 GET /api/userinfo SUCCESS PATH
@@ -187,11 +198,7 @@ public class UserControllerUnitTest {
         //Arrange
         String token = "mock.token";
 
-        Map<String, Object> userInfo = new HashMap<>();
-        userInfo.put("username", username);
-        userInfo.put("email", email);
-        userInfo.put("cardId", "card-123");
-        userInfo.put("balance", 10);
+        UserInfoView userInfo = new UserInfoView(username, email, "card-123", 10.0);
 
         when(userService.getUserInfo(token)).thenReturn(userInfo);
 
@@ -214,7 +221,7 @@ public class UserControllerUnitTest {
         //Arrange
         String invalidToken = "mock.token";
         when(userService.getUserInfo(invalidToken))
-                .thenThrow(new RuntimeException("Invalid token"));
+                .thenThrow(new InvalidTokenException("Invalid token"));
 
         //Act and Arrange
         mockMvc.perform(get("/api/userinfo")
@@ -236,4 +243,86 @@ public class UserControllerUnitTest {
         verify(userService, never()).getUserInfo(anyString());
     }
 
+    //TEST-10 POST /api/login HASHING POOL SATURATED
+    @Test
+    @DisplayName("Fail: hashing pool saturated returns 503")
+    void testLoginHashingPoolSaturated() throws Exception {
+
+        //Arrange
+        String requestBodyLogin = String.format("""
+            {
+              "username": "%s",
+              "password": "%s"
+            }
+            """, username, password);
+        when(userService.loginWithPassword(eq(username), eq(password), anyString()))
+                .thenThrow(new ServiceBusyException("Authentication busy, retry shortly", 2));
+
+        //Act and Assert
+        mockMvc.perform(post("/api/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBodyLogin))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(content().string("Authentication busy, retry shortly"));
+    }
+
+    //TEST-11 POST /api/login THROTTLED
+    @Test
+    @DisplayName("Fail: throttled login returns 429")
+    void testLoginThrottled() throws Exception {
+
+        //Arrange
+        String requestBodyLogin = String.format("""
+            {
+              "username": "%s",
+              "password": "%s"
+            }
+            """, username, password);
+        when(userService.loginWithPassword(eq(username), eq(password), anyString()))
+                .thenThrow(new TooManyRequestsException("Too many login attempts, retry later", 8));
+
+        //Act and Assert
+        mockMvc.perform(post("/api/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBodyLogin))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "8"))
+                .andExpect(content().string("Too many login attempts, retry later"));
+    }
+
+    //TEST-12 GET /api/userinfo UNCHANGED LEDGER VERSION
+    @Test
+    @DisplayName("Not modified: matching If-None-Match skips the user lookup")
+    void testGetUserInfoNotModified() throws Exception {
+
+        //Arrange
+        String token = "mock.token";
+        when(ledgerVersionService.etagFor(token)).thenReturn("\"v3\"");
+
+        //Act and Assert
+        mockMvc.perform(get("/api/userinfo")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", "\"v3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"v3\""));
+        verify(userService, never()).getUserInfo(anyString());
+    }
+
+    //TEST-13 GET /api/userinfo DATABASE BUSY - Returns 503, not 401
+    @Test
+    @DisplayName("Fail: userinfo answers 503 when busy")
+    void testGetUserInfoBusy() throws Exception {
+
+        //Arrange
+        String token = "mock.token";
+        when(userService.getUserInfo(token))
+                .thenThrow(new ServiceBusyException("Database busy", 2));
+
+        //Act and Assert
+        mockMvc.perform(get("/api/userinfo")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+    }
 }
@@ -3,6 +3,8 @@ package net.otgon.backend.controller;
 import net.otgon.backend.dto.RedeemDeviceRequestDto;
 import net.otgon.backend.dto.RedeemResult;
 import net.otgon.backend.dto.TopUpResponse;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.ServiceBusyException;
 import net.otgon.backend.service.JwtService;
 import net.otgon.backend.service.RedeemService;
 import net.otgon.backend.service.WalletService;
@@ -15,6 +17,7 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -224,4 +227,53 @@ public class WalletControllerUnitTest {
 
     }
 
+    //TEST-9 GET /api/wallet/stream OPENS AN SSE STREAM
+    @Test
+    @DisplayName("Success: stream starts async event stream")
+    void streamOpens() throws Exception {
+
+        //Arrange
+        when(walletService.openStream("token")).thenReturn(new SseEmitter(60_000L));
+
+        //Act and Assert
+        mockMvc.perform(get("/api/wallet/stream")
+                        .header("Authorization", "Bearer token")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+        verify(walletService, times(1)).openStream("token");
+    }
+
+    //TEST-10 GET /api/wallet/stream AT CAPACITY - Returns 503
+    @Test
+    @DisplayName("Fail: stream rejected when the hub is full")
+    void streamBusy() throws Exception {
+
+        //Arrange
+        when(walletService.openStream("token"))
+                .thenThrow(new ServiceBusyException("Too many open wallet streams", 30));
+
+        //Act and Assert
+        mockMvc.perform(get("/api/wallet/stream")
+                        .header("Authorization", "Bearer token"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "30"));
+    }
+
+    //TEST-11 PUT /api/wallet/topup TOKEN FOR A REASSIGNED CARD - Returns 401
+    @Test
+    @DisplayName("Fail: top up with a token for a reassigned card")
+    void testTopUpFailReassignedCard() throws Exception {
+
+        //Arrange
+        when(walletService.topup("token", amount))
+                .thenThrow(new InvalidTokenException("Card does not belong to user"));
+
+        //Act and Assert
+        mockMvc.perform(put("/api/wallet/topup")
+                        .header("Authorization", "Bearer token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBodyTopUp))
+                .andExpect(status().isUnauthorized());
+    }
+
 }
@@ -0,0 +1,134 @@
+package net.otgon.backend.integration;
+
+
+import jakarta.transaction.Transactional;
+import net.otgon.backend.entity.User;
+import net.otgon.backend.repository.UserRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional
+public class AdminIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        mockMvc.perform(post("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {
+                        "username": "alice",
+                        "password": "password",
+                        "email": "alice@test.com"
+                        }
+                        """));
+    }
+
+    //TEST-1 CSV UPLOAD WITH PER-ROW RESULTS
+    @Test
+    @DisplayName("Test-1 CSV bulk provisioning reports each row")
+    void bulkCsvReportsPerRow() throws Exception {
+
+        //Arrange
+        String csv = """
+                username,email,password
+                rider1,rider1@school.ie,password1
+                alice,other@school.ie,password2
+                rider2,not-an-email,password3
+                rider1,again@school.ie,password4
+                "rider,3",rider3@school.ie,password5
+                """;
+
+        //Act & Assert
+        mockMvc.perform(post("/api/admin/riders/bulk")
+                        .header("X-Admin-Key", "test-admin-key")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(5))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.results[0].line").value(2))
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[0].cardId").value(not(emptyString())))
+                .andExpect(jsonPath("$.results[1].message").value("Username already exists"))
+                .andExpect(jsonPath("$.results[2].message").value("Email should be valid"))
+                .andExpect(jsonPath("$.results[3].message").value("Duplicate username in upload"))
+                .andExpect(jsonPath("$.results[4].username").value("rider,3"))
+                .andExpect(jsonPath("$.results[4].status").value("CREATED"));
+
+        User rider = userRepo.findByUsername("rider1").orElseThrow();
+        assertNotNull(rider.getCard());
+        assertEquals(10, rider.getCard().getBalance());
+        // Same cost as registration (fixed at 4 by the test profile), not a cheaper import cost
+        assertTrue(rider.getPassword().startsWith("{bcrypt}$2a$04$"));
+    }
+
+    //TEST-2 NDJSON UPLOAD; PROVISIONED RIDER CAN LOG IN
+    @Test
+    @DisplayName("Test-2 NDJSON bulk provisioning, rider logs in")
+    void bulkNdjsonThenLogin() throws Exception {
+
+        //Arrange
+        String ndjson = """
+                {"username":"rider1","email":"rider1@work.ie","password":"password1"}
+                {"username":"rider2","email":"rider2@work.ie"
+                """;
+
+        //Act
+        mockMvc.perform(post("/api/admin/riders/bulk")
+                        .header("X-Admin-Key", "test-admin-key")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[1].message").value("Malformed row"));
+
+        //Assert
+        mockMvc.perform(post("/api/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                "username": "rider1",
+                                "password": "password1"
+                                }
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(content().string(not(emptyString())));
+    }
+
+    //TEST-3 MISSING OR WRONG ADMIN KEY
+    @Test
+    @DisplayName("Test-3 Bulk provisioning requires the admin key")
+    void bulkRequiresAdminKey() throws Exception {
+
+        mockMvc.perform(post("/api/admin/riders/bulk")
+                        .header("X-Admin-Key", "wrong")
+                        .contentType("text/csv")
+                        .content("username,email,password\nrider1,rider1@school.ie,password1\n"))
+                .andExpect(status().isForbidden());
+
+        assertTrue(userRepo.findByUsername("rider1").isEmpty());
+    }
+}
@@ -0,0 +1,111 @@
+package net.otgon.backend.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Not @Transactional: bootstrap reads run on their own threads and connections,
+ * so test data must be committed. Usernames are unique per test instead.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class BootstrapIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private String username;
+    private String token;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        username = "boot-" + UUID.randomUUID().toString().substring(0, 8);
+        token = mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {
+                                "username": "%s",
+                                "password": "password",
+                                "email": "%s@test.com"
+                                }
+                                """, username, username)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    //TEST-1 NEW USER: PROFILE, NO DEVICE, NO ACTIVITY
+    @Test
+    @DisplayName("Test-1 Bootstrap for a fresh user")
+    void bootstrapFreshUser() throws Exception {
+
+        mockMvc.perform(get("/api/bootstrap")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.user.username").value(username))
+                .andExpect(jsonPath("$.user.balance").value(10))
+                .andExpect(jsonPath("$.deviceId").value(nullValue()))
+                .andExpect(jsonPath("$.deviceStatus").value("NOT_REGISTERED"))
+                .andExpect(jsonPath("$.recentTransactions.length()").value(0));
+    }
+
+    //TEST-2 DEVICE AND TOP-UPS SHOW UP, CAPPED BY LIMIT
+    @Test
+    @DisplayName("Test-2 Bootstrap with device and recent top-ups")
+    void bootstrapWithDeviceAndActivity() throws Exception {
+
+        //Arrange
+        mockMvc.perform(post("/api/device/register")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                "publicKey": "test-public-key"
+                                }
+                                """))
+                .andExpect(status().isOk());
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(put("/api/wallet/topup")
+                            .header("Authorization", "Bearer " + token)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"amount\": " + i + "}"))
+                    .andExpect(status().isOk());
+        }
+
+        //Act & Assert
+        mockMvc.perform(get("/api/bootstrap")
+                        .param("limit", "2")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.user.balance").value(16))
+                .andExpect(jsonPath("$.deviceStatus").value("REGISTERED"))
+                .andExpect(jsonPath("$.deviceId").isNotEmpty())
+                .andExpect(jsonPath("$.recentTransactions.length()").value(2))
+                .andExpect(jsonPath("$.recentTransactions[0].type").value("TOPUP"));
+    }
+
+    //TEST-3 INVALID TOKEN
+    @Test
+    @DisplayName("Test-3 Bootstrap rejects invalid token")
+    void bootstrapInvalidToken() throws Exception {
+
+        mockMvc.perform(get("/api/bootstrap")
+                        .header("Authorization", "Bearer malformedToken"))
+                .andExpect(status().isForbidden());
+    }
+}
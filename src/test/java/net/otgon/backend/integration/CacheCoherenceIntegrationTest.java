@@ -0,0 +1,173 @@
+package net.otgon.backend.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.otgon.backend.BackendApplication;
+import net.otgon.backend.service.LoopbackInvalidationTransport;
+import net.otgon.backend.service.ReadYourWrites;
+import net.otgon.backend.service.UserService;
+import net.otgon.backend.service.WalletService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two application contexts in this JVM play two nodes behind the load
+ * balancer: one database, separate in-process caches, invalidations over the
+ * loopback transport. Each test uses a unique user.
+ */
+public class CacheCoherenceIntegrationTest {
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    private String username;
+    private String token;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = node("create-drop");
+        // Same database: the second node must not recreate the schema
+        nodeB = node("none");
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    private static ConfigurableApplicationContext node(String ddlAuto) {
+        return new SpringApplicationBuilder(BackendApplication.class)
+                // Command-line arguments: properties() would lose to application-test.properties.
+                // The profile too: profiles() adds to spring.profiles.active=local instead of replacing it
+                .run("--spring.profiles.active=test",
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:coherence;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                        "--cache.invalidation.transport=loopback",
+                        "--cache.invalidation.poll-ms=100",
+                        "--cache.invalidation.retry-ms=100",
+                        // No pings in the stream event counts
+                        "--wallet.stream.heartbeat-ms=3600000");
+    }
+
+    @BeforeEach
+    public void setup() {
+        username = "coherent-" + UUID.randomUUID().toString().substring(0, 8);
+        token = nodeA.getBean(UserService.class)
+                .register(username, "password", username + "@test.com")
+                .getAccessToken();
+        // Node B now serves the starting balance (10) from its cache
+        assertEquals(10.0, balanceOnB());
+    }
+
+    //TEST-1 A TOP-UP ON ONE NODE EVICTS THE OTHER NODE'S CACHES
+    @Test
+    @DisplayName("Test-1 Node B sees node A's top-up")
+    void writeOnOneNodeEvictsOther() {
+
+        //Act
+        nodeA.getBean(WalletService.class).topup(token, 5);
+
+        //Assert
+        awaitTrue(() -> balanceOnB() == 15.0, "node B still serves the old balance");
+        assertTrue(nodeB.getBean(ReadYourWrites.class).isPinned(cardId()));
+    }
+
+    //TEST-2 A HOLE IN A NODE'S NUMBERING FLUSHES EVERYTHING
+    @Test
+    @DisplayName("Test-2 Missed messages flush the caches")
+    void gapFlushesCaches() {
+
+        //Arrange: a write nobody announces, then messages 1 and 3 from another node
+        nodeA.getBean(JdbcTemplate.class).update("UPDATE cards SET balance = 42 WHERE id = ?", cardId());
+        double gapFlushes = flushes("gap");
+        LoopbackInvalidationTransport transport = nodeA.getBean(LoopbackInvalidationTransport.class);
+        String node = "ghost-" + UUID.randomUUID().toString().substring(0, 4);
+
+        //Act
+        transport.send(node + " 1 u:" + UUID.randomUUID());
+        transport.send(node + " 3 u:" + UUID.randomUUID());
+
+        //Assert
+        awaitTrue(() -> flushes("gap") > gapFlushes, "no flush after a gap");
+        assertEquals(42.0, balanceOnB());
+    }
+
+    //TEST-3 A LISTENER THAT LOST ITS CONNECTION FLUSHES WHEN IT RECONNECTS
+    @Test
+    @DisplayName("Test-3 Reconnect flushes the caches")
+    void reconnectFlushesCaches() {
+
+        //Arrange
+        double connectFlushes = flushes("connect");
+        double reconnects = nodeB.getBean(MeterRegistry.class).counter("cache.invalidation.reconnects").count();
+
+        //Act: node B may miss the top-up's message while disconnected
+        nodeB.getBean(LoopbackInvalidationTransport.class).dropConnections();
+        nodeA.getBean(WalletService.class).topup(token, 5);
+
+        //Assert
+        awaitTrue(() -> flushes("connect") > connectFlushes, "no flush after reconnecting");
+        assertTrue(nodeB.getBean(MeterRegistry.class).counter("cache.invalidation.reconnects").count() > reconnects);
+        assertEquals(15.0, balanceOnB());
+    }
+
+    //TEST-4 A WALLET STREAM ON ONE NODE IS PUSHED A TOP-UP MADE ON THE OTHER
+    @Test
+    @DisplayName("Test-4 Node B's wallet stream hears of node A's top-up")
+    void writeOnOneNodeRefreshesOtherNodesStreams() {
+
+        //Arrange
+        double before = streamEventsOnB();
+        nodeB.getBean(WalletService.class).openStream(token);
+        awaitTrue(() -> streamEventsOnB() == before + 1, "no snapshot on node B's stream");
+
+        //Act
+        nodeA.getBean(WalletService.class).topup(token, 5);
+
+        //Assert: a fresh snapshot, read by node B
+        awaitTrue(() -> streamEventsOnB() == before + 2, "node B's stream was not refreshed");
+    }
+
+    private double balanceOnB() {
+        return nodeB.getBean(UserService.class).getUserInfo(token).getBalance();
+    }
+
+    private String cardId() {
+        return nodeA.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT c.id FROM cards c JOIN users u ON u.id = c.user_id WHERE u.username = ?",
+                String.class, username);
+    }
+
+    private double streamEventsOnB() {
+        return nodeB.getBean(MeterRegistry.class).counter("wallet.stream.events").count();
+    }
+
+    private double flushes(String reason) {
+        return nodeB.getBean(MeterRegistry.class).counter("cache.invalidation.flushes", "reason", reason).count();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, String message) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, message);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(message);
+            }
+        }
+    }
+}
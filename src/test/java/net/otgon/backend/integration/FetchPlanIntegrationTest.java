@@ -0,0 +1,269 @@
+package net.otgon.backend.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import net.minidev.json.JSONObject;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Exact JDBC statement counts per endpoint, from Hibernate statistics, so an
+ * association that starts loading row by row (N+1) fails the build.
+ * Counts cover JPA access only; the JdbcTemplate readers are not included.
+ * The test profile turns the second-level cache off, so these are cold-cache
+ * counts. Not @Transactional: each request must run in its own persistence context,
+ * as in production; each test uses a unique user.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class FetchPlanIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private String username;
+    private String token;
+    private String refreshToken;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        username = "fetch-" + UUID.randomUUID().toString().substring(0, 8);
+        MockHttpServletResponse response = mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {
+                                "username": "%s",
+                                "password": "password",
+                                "email": "%s@test.com"
+                                }
+                                """, username, username)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse();
+        token = response.getContentAsString();
+        refreshToken = response.getHeader("X-Refresh-Token");
+
+        // Leaves the card with a ledger (seq 1) and today's rollup row
+        perform(topUp(5));
+    }
+
+    //TEST-1 LOGIN: USER AND CARD IN ONE SELECT, THEN THE REFRESH TOKEN
+    @Test
+    @DisplayName("Test-1 POST /api/login")
+    void login() throws Exception {
+
+        //Act
+        long statements = statementsFor(post("/api/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("""
+                        {
+                        "username": "%s",
+                        "password": "password"
+                        }
+                        """, username)));
+
+        //Assert: user+card, insert refresh token
+        assertEquals(2, statements);
+    }
+
+    //TEST-2 REFRESH: TOKEN, USER AND CARD IN ONE SELECT
+    @Test
+    @DisplayName("Test-2 POST /api/token/refresh")
+    void refresh() throws Exception {
+
+        //Act
+        long statements = statementsFor(post("/api/token/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\": \"" + refreshToken + "\"}"));
+
+        //Assert: token+user+card, revoke old if still active, insert new
+        assertEquals(3, statements);
+    }
+
+    //TEST-3 USERINFO: VERSION, THEN THE PROJECTION
+    @Test
+    @DisplayName("Test-3 GET /api/userinfo")
+    void userInfo() throws Exception {
+
+        //Act
+        long statements = statementsFor(get("/api/userinfo")
+                .header("Authorization", "Bearer " + token));
+
+        //Assert
+        assertEquals(2, statements);
+    }
+
+    //TEST-4 HISTORY: VERSION, THEN ONE LEDGER READ WHATEVER THE NUMBER OF ENTRIES
+    @Test
+    @DisplayName("Test-4 GET /api/transactions")
+    void transactions() throws Exception {
+
+        //Arrange
+        perform(topUp(3));
+        perform(topUp(2));
+
+        //Act
+        long statements = statementsFor(get("/api/transactions")
+                .header("Authorization", "Bearer " + token));
+
+        //Assert
+        assertEquals(2, statements);
+    }
+
+    //TEST-5 SUMMARY: ONE ROLLUP RANGE READ
+    @Test
+    @DisplayName("Test-5 GET /api/transactions/summary")
+    void summary() throws Exception {
+
+        //Act
+        long statements = statementsFor(get("/api/transactions/summary")
+                .header("Authorization", "Bearer " + token));
+
+        //Assert
+        assertEquals(1, statements);
+    }
+
+    //TEST-6 TOP-UP: NO SELECT THROUGH THE CARD'S ASSOCIATIONS
+    @Test
+    @DisplayName("Test-6 PUT /api/wallet/topup")
+    void topUpStatements() throws Exception {
+
+        //Act
+        long statements = statementsFor(topUp(3));
+
+        //Assert: user id by username, card with its lock, rollup find,
+        // insert top-up and ledger entry, update card and rollup
+        assertEquals(7, statements);
+    }
+
+    //TEST-7 DEVICE REGISTRATION
+    @Test
+    @DisplayName("Test-7 POST /api/device/register")
+    void registerDevice() throws Exception {
+
+        //Act
+        long statements = statementsFor(registerDeviceRequest(generateKeyPair()));
+
+        //Assert: user+card, device lookup, insert
+        assertEquals(3, statements);
+    }
+
+    //TEST-8 REDEEM: DEVICE, THEN THE CARD WITH ITS LOCK
+    @Test
+    @DisplayName("Test-8 POST /api/wallet/redeem")
+    void redeem() throws Exception {
+
+        //Arrange
+        KeyPair keyPair = generateKeyPair();
+        String deviceResponse = mockMvc.perform(registerDeviceRequest(keyPair))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String deviceId = new ObjectMapper().readTree(deviceResponse).get("deviceId").asText();
+
+        JSONObject payload = new JSONObject();
+        payload.put("txId", UUID.randomUUID().toString());
+        payload.put("fare", 2.0);
+        payload.put("timestamp", System.currentTimeMillis());
+        byte[] payloadBytes = payload.toString().getBytes(StandardCharsets.UTF_8);
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(payloadBytes);
+
+        //Act
+        long statements = statementsFor(post("/api/wallet/redeem")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("""
+                        {
+                        "deviceId": "%s",
+                        "payload": "%s",
+                        "signature": "%s"
+                        }
+                        """, deviceId,
+                        Base64.getEncoder().encodeToString(payloadBytes),
+                        Base64.getEncoder().encodeToString(signer.sign()))));
+
+        //Assert: device, card with its lock, duplicate check, rollup find,
+        // insert transaction, tx id and ledger entry, update card and rollup
+        assertEquals(9, statements);
+    }
+
+    //TEST-9 BOOTSTRAP: THREE INDEPENDENT READS
+    @Test
+    @DisplayName("Test-9 GET /api/bootstrap")
+    void bootstrap() throws Exception {
+
+        //Act
+        long statements = statementsFor(get("/api/bootstrap")
+                .header("Authorization", "Bearer " + token));
+
+        //Assert: userinfo projection, device id, recent ledger entries
+        assertEquals(3, statements);
+    }
+
+    // Runs the request and returns the statements it prepared; no association may load lazily
+    private long statementsFor(RequestBuilder request) throws Exception {
+        statistics.clear();
+        perform(request);
+        assertEquals(0, statistics.getEntityFetchCount(), "Association loaded by a separate select");
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void perform(RequestBuilder request) throws Exception {
+        mockMvc.perform(request).andExpect(status().isOk());
+    }
+
+    private RequestBuilder topUp(double amount) {
+        return put("/api/wallet/topup")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\": " + amount + "}");
+    }
+
+    private RequestBuilder registerDeviceRequest(KeyPair keyPair) {
+        return post("/api/device/register")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("""
+                        {
+                        "alias": "%s",
+                        "publicKey": "%s"
+                        }
+                        """, username, Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())));
+    }
+
+    private KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        return generator.generateKeyPair();
+    }
+}
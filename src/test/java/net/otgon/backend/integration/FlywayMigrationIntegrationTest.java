@@ -0,0 +1,154 @@
+package net.otgon.backend.integration;
+
+import net.otgon.backend.dto.TopUpResponse;
+import net.otgon.backend.service.UserService;
+import net.otgon.backend.service.WalletService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the Flyway scripts on PostgreSQL and boots the application on the
+ * result with ddl-auto=validate, as the local and prod profiles do: once on
+ * an empty database, and once on a database holding the schema and data of
+ * the baseline release (which is baselined at V1 and upgraded in place).
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class FlywayMigrationIntegrationTest {
+
+    //TEST-1 AN EMPTY DATABASE GETS THE WHOLE SCHEMA
+    @Test
+    @DisplayName("Test-1 Empty database: migrate, validate, register and top up")
+    void migratesEmptyDatabase() throws Exception {
+
+        //Arrange
+        String url = PostgresTestDatabase.create("migrate_fresh");
+
+        //Act
+        try (ConfigurableApplicationContext app = PostgresTestDatabase.startApplication(url)) {
+            JdbcTemplate jdbc = app.getBean(JdbcTemplate.class);
+            String token = app.getBean(UserService.class)
+                    .register("fresh-rider", "password", "fresh-rider@test.com")
+                    .getAccessToken();
+            TopUpResponse topUp = app.getBean(WalletService.class).topup(token, 5);
+
+            //Assert
+            assertEquals(List.of("1", "1.1", "2", "3", "4", "5"), appliedVersions(jdbc));
+            assertEquals(15.0, topUp.getNewBalance());
+            assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM topup_transactions", Integer.class));
+            assertPartitionedWithValidIndexes(jdbc);
+        }
+    }
+
+    //TEST-2 A DATABASE FROM THE BASELINE RELEASE IS UPGRADED IN PLACE
+    @Test
+    @DisplayName("Test-2 Baseline-release database: baseline at V1, upgrade, keep the data")
+    void upgradesBaselineDatabase() throws Exception {
+
+        //Arrange: the schema and some rows as the baseline release left them
+        String url = PostgresTestDatabase.create("migrate_baseline");
+        String userId = UUID.randomUUID().toString();
+        String cardId = UUID.randomUUID().toString();
+        String recentTxId = "tx-" + UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        try (Connection connection = PostgresTestDatabase.connect(url)) {
+            try (Statement statement = connection.createStatement();
+                 InputStream v1 = getClass().getResourceAsStream("/db/migration/V1__baseline_schema.sql")) {
+                statement.execute(new String(v1.readAllBytes(), StandardCharsets.UTF_8));
+                statement.execute("INSERT INTO users (id, username, email, password, created_at) VALUES ('"
+                        + userId + "', 'legacy-rider', 'legacy-rider@test.com', '"
+                        + new BCryptPasswordEncoder(4).encode("password") + "', now())");
+                statement.execute("INSERT INTO cards (id, user_id, balance) VALUES ('"
+                        + cardId + "', '" + userId + "', 7.5)");
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO transactions (id, tx_id, type, signature, amount, device_timestamp, synced_at, status, processed, card_id)"
+                            + " VALUES (?, ?, 'DEDUCT', 'sig', 2.0, ?, ?, 'SUCCESS', true, ?)")) {
+                // Three months old, this month, and one from before synced_at was always set
+                Object[][] rows = {
+                        {"tx-old", now.minusMonths(3)},
+                        {recentTxId, now.minusMinutes(5)},
+                        {"tx-unsynced", null}};
+                for (Object[] row : rows) {
+                    LocalDateTime at = row[1] == null ? now.minusMonths(1) : (LocalDateTime) row[1];
+                    insert.setString(1, UUID.randomUUID().toString());
+                    insert.setString(2, (String) row[0]);
+                    insert.setLong(3, Timestamp.valueOf(at).getTime());
+                    insert.setTimestamp(4, row[1] == null ? null : Timestamp.valueOf(at));
+                    insert.setString(5, cardId);
+                    insert.executeUpdate();
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO topup_transactions (id, card_id, amount, created_at) VALUES (?, ?, 13.5, ?)")) {
+                insert.setString(1, UUID.randomUUID().toString());
+                insert.setString(2, cardId);
+                insert.setTimestamp(3, Timestamp.valueOf(now.minusMonths(2)));
+                insert.executeUpdate();
+            }
+        }
+
+        //Act
+        try (ConfigurableApplicationContext app = PostgresTestDatabase.startApplication(url)) {
+            JdbcTemplate jdbc = app.getBean(JdbcTemplate.class);
+
+            //Assert: V1 was skipped, everything after it ran
+            assertEquals("BASELINE", jdbc.queryForObject(
+                    "SELECT type FROM flyway_schema_history WHERE version = '1'", String.class));
+            assertEquals(List.of("1", "1.1", "2", "3", "4", "5"), appliedVersions(jdbc));
+            assertEquals("uuid", jdbc.queryForObject(
+                    "SELECT data_type FROM information_schema.columns WHERE table_name = 'users' AND column_name = 'id'",
+                    String.class));
+            assertEquals(3, jdbc.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class));
+            assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM topup_transactions", Integer.class));
+            assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM transactions WHERE synced_at IS NULL", Integer.class));
+            // Only the tx_id that could still be replayed is held
+            assertEquals(List.of(recentTxId), jdbc.queryForList("SELECT tx_id FROM redeemed_tx_ids", String.class));
+            assertEquals(0L, jdbc.queryForObject("SELECT ledger_seq FROM cards WHERE id = ?", Long.class, cardId));
+            assertPartitionedWithValidIndexes(jdbc);
+
+            // The legacy rider logs in; the first top-up moves their history into the ledger
+            String token = app.getBean(UserService.class)
+                    .loginWithPassword("legacy-rider", "password")
+                    .getAccessToken();
+            TopUpResponse topUp = app.getBean(WalletService.class).topup(token, 5);
+            assertEquals(12.5, topUp.getNewBalance());
+            assertEquals(5, jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM ledger_entries WHERE card_id = ?", Integer.class, cardId));
+            assertEquals(5L, jdbc.queryForObject("SELECT ledger_seq FROM cards WHERE id = ?", Long.class, cardId));
+        }
+    }
+
+    private static List<String> appliedVersions(JdbcTemplate jdbc) {
+        return jdbc.queryForList(
+                "SELECT version FROM flyway_schema_history WHERE success ORDER BY installed_rank", String.class);
+    }
+
+    // V4's partitioned parents, and V2's CONCURRENTLY indexes finished (an interrupted build leaves them invalid)
+    private static void assertPartitionedWithValidIndexes(JdbcTemplate jdbc) {
+        assertEquals(List.of("p", "p"), jdbc.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE relname IN ('transactions', 'topup_transactions')",
+                String.class));
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM pg_index WHERE NOT indisvalid", Integer.class));
+        assertEquals(5, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM pg_indexes WHERE indexname IN ('idx_devices_user', 'idx_refresh_tokens_family',"
+                        + " 'idx_refresh_tokens_user', 'idx_ledger_card_created', 'idx_ledger_card_type_amount')",
+                Integer.class));
+    }
+}
@@ -0,0 +1,143 @@
+package net.otgon.backend.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.otgon.backend.service.JobLeaseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two JobLeaseService instances with their own node ids and meter registries
+ * stand in for two replicas sharing one database. Not @Transactional: leases
+ * commit on their own. Each test uses a unique job name.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class JobLeaseIntegrationTest {
+
+    private static final Duration MIN_HOLD = Duration.ofMillis(300);
+    private static final Duration MAX_HOLD = Duration.ofSeconds(30);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private MeterRegistry metersA;
+    private MeterRegistry metersB;
+    private JobLeaseService nodeA;
+    private JobLeaseService nodeB;
+    private String job;
+
+    @BeforeEach
+    public void setup() {
+        metersA = new SimpleMeterRegistry();
+        metersB = new SimpleMeterRegistry();
+        nodeA = new JobLeaseService(jdbcTemplate, transactionManager, metersA, "node-a", MIN_HOLD, MAX_HOLD, Duration.ZERO);
+        nodeB = new JobLeaseService(jdbcTemplate, transactionManager, metersB, "node-b", MIN_HOLD, MAX_HOLD, Duration.ZERO);
+        job = "job-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    //TEST-1 TRIGGERS FIRING TOGETHER RUN THE JOB ONCE
+    @Test
+    @DisplayName("Test-1 One of two simultaneous triggers runs the job")
+    void simultaneousTriggersRunOnce() throws Exception {
+
+        //Arrange
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        //Act
+        try {
+            Future<Boolean> a = pool.submit(() -> {
+                start.await();
+                return nodeA.runExclusive(job, runs::incrementAndGet);
+            });
+            Future<Boolean> b = pool.submit(() -> {
+                start.await();
+                return nodeB.runExclusive(job, runs::incrementAndGet);
+            });
+            start.countDown();
+
+            //Assert
+            assertNotEquals(a.get(), b.get());
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, runs.get());
+        String winner = lockedBy();
+        MeterRegistry winnerMeters = winner.equals("node-a") ? metersA : metersB;
+        MeterRegistry loserMeters = winner.equals("node-a") ? metersB : metersA;
+        assertEquals(1, winnerMeters.counter("scheduled.job.runs", "job", job, "node", winner, "outcome", "ran").count());
+        assertEquals(1, loserMeters.find("scheduled.job.runs").tag("job", job).tag("outcome", "skipped").counter().count());
+    }
+
+    //TEST-2 A LATE TRIGGER SKIPS UNTIL MIN-HOLD HAS PASSED
+    @Test
+    @DisplayName("Test-2 The lease is held for min-hold after a quick run")
+    void leaseHeldForMinHold() throws Exception {
+
+        //Arrange
+        assertTrue(nodeA.runExclusive(job, () -> { }));
+
+        //Act & Assert
+        assertFalse(nodeB.runExclusive(job, () -> fail("ran while the lease was held")));
+        Thread.sleep(MIN_HOLD.toMillis() + 100);
+        assertTrue(nodeB.runExclusive(job, () -> { }));
+        assertEquals("node-b", lockedBy());
+    }
+
+    //TEST-3 A DEAD NODE'S LEASE RUNS OUT AND ANOTHER NODE TAKES OVER
+    @Test
+    @DisplayName("Test-3 Failover after the leader's lease expires")
+    void failoverAfterLeaseExpires() throws Exception {
+
+        //Arrange: a node took the lease and died without releasing it
+        jdbcTemplate.update("INSERT INTO job_leases (name, locked_until, locked_at, locked_by) " +
+                "VALUES (?, DATEADD('MILLISECOND', 500, CURRENT_TIMESTAMP), CURRENT_TIMESTAMP, 'dead-node')", job);
+
+        //Act & Assert
+        assertFalse(nodeB.runExclusive(job, () -> fail("ran while the dead node's lease was valid")));
+        Thread.sleep(600);
+        assertTrue(nodeB.runExclusive(job, () -> { }));
+        assertEquals("node-b", lockedBy());
+    }
+
+    //TEST-4 A FAILING JOB IS COUNTED AND STILL RELEASES ITS LEASE
+    @Test
+    @DisplayName("Test-4 Failed runs are counted and the lease is released")
+    void failedRunReleasesLease() throws Exception {
+
+        //Act
+        assertThrows(IllegalStateException.class, () -> nodeA.runExclusive(job, () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        //Assert: held for min-hold only, not max-hold
+        assertEquals(1, metersA.counter("scheduled.job.runs", "job", job, "node", "node-a", "outcome", "failed").count());
+        Thread.sleep(MIN_HOLD.toMillis() + 100);
+        assertTrue(nodeB.runExclusive(job, () -> { }));
+    }
+
+    private String lockedBy() {
+        return jdbcTemplate.queryForObject("SELECT locked_by FROM job_leases WHERE name = ?", String.class, job);
+    }
+}
@@ -0,0 +1,197 @@
+package net.otgon.backend.integration;
+
+import net.otgon.backend.dto.LedgerBackfillResponse;
+import net.otgon.backend.service.LedgerBackfillService;
+import net.otgon.backend.service.RollupRebuildService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Not @Transactional: the backfill runs on its own threads and connections,
+ * so rows must be committed; each test uses a unique user.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class LedgerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LedgerBackfillService ledgerBackfillService;
+
+    @Autowired
+    private RollupRebuildService rollupRebuildService;
+
+    private String username;
+    private String token;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        username = "ledger-" + UUID.randomUUID().toString().substring(0, 8);
+        token = mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {
+                                "username": "%s",
+                                "password": "password",
+                                "email": "%s@test.com"
+                                }
+                                """, username, username)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    //TEST-1 EVERY ENTRY CARRIES THE BALANCE IT LEFT BEHIND
+    @Test
+    @DisplayName("Test-1 Top-ups are recorded with balanceAfter and seq")
+    void topUpsRecordBalanceAfter() throws Exception {
+
+        //Act
+        topUp(5);
+        topUp(3);
+
+        //Assert
+        mockMvc.perform(get("/api/transactions")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].amount").value(3))
+                .andExpect(jsonPath("$[0].balanceAfter").value(18))
+                .andExpect(jsonPath("$[1].amount").value(5))
+                .andExpect(jsonPath("$[1].balanceAfter").value(15));
+        assertEquals(2L, jdbcTemplate.queryForObject(
+                "SELECT ledger_seq FROM cards WHERE id = ?", Long.class, cardId()));
+    }
+
+    //TEST-2 LEGACY ROWS ARE MIGRATED ONCE, THEN NEW ENTRIES FOLLOW THEM
+    @Test
+    @DisplayName("Test-2 Backfill rebuilds balanceAfter from legacy rows")
+    void backfillLegacyRows() throws Exception {
+
+        //Arrange: history written before the ledger existed
+        String cardId = cardId();
+        jdbcTemplate.update("INSERT INTO topup_transactions (id, card_id, amount, created_at) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID().toString(), cardId, 7.0, Timestamp.valueOf(LocalDateTime.now().minusDays(2)));
+        jdbcTemplate.update("UPDATE cards SET balance = 17 WHERE id = ?", cardId);
+
+        //Act
+        LedgerBackfillResponse first = ledgerBackfillService.backfillAll();
+        LedgerBackfillResponse second = ledgerBackfillService.backfillAll();
+        topUp(1);
+
+        //Assert
+        assertTrue(first.getMigrated() >= 1);
+        assertEquals(0, second.getFailed());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ledger_entries WHERE card_id = ? AND seq = 1", Integer.class, cardId));
+
+        mockMvc.perform(get("/api/transactions")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].balanceAfter").value(18))
+                .andExpect(jsonPath("$[1].amount").value(7))
+                .andExpect(jsonPath("$[1].balanceAfter").value(17));
+    }
+
+    //TEST-3 LEDGER VERSION DRIVES CONDITIONAL GETS
+    @Test
+    @DisplayName("Test-3 Unchanged ledger answers 304; a top-up changes the ETag")
+    void conditionalGets() throws Exception {
+
+        //Arrange
+        String etag = mockMvc.perform(get("/api/userinfo")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        //Act & Assert
+        mockMvc.perform(get("/api/userinfo")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/transactions")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        topUp(2);
+
+        String changed = mockMvc.perform(get("/api/userinfo")
+                        .header("Authorization", "Bearer " + token)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(12))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, changed);
+    }
+
+    //TEST-4 ROLLUPS FOLLOW EACH WRITE AND MATCH A FULL REBUILD
+    @Test
+    @DisplayName("Test-4 Summary is served from incrementally maintained rollups")
+    void summaryFromRollups() throws Exception {
+
+        //Arrange
+        topUp(5);
+        topUp(7);
+        String today = LocalDate.now().toString();
+
+        //Act & Assert
+        mockMvc.perform(get("/api/transactions/summary")
+                        .param("from", today)
+                        .param("to", today)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.toppedUp").value(12))
+                .andExpect(jsonPath("$.topUps").value(2))
+                .andExpect(jsonPath("$.days.length()").value(1));
+
+        rollupRebuildService.rebuildAll();
+
+        mockMvc.perform(get("/api/transactions/summary")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.toppedUp").value(12))
+                .andExpect(jsonPath("$.topUps").value(2))
+                .andExpect(jsonPath("$.spent").value(0));
+    }
+
+    private void topUp(double amount) throws Exception {
+        mockMvc.perform(put("/api/wallet/topup")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": " + amount + "}"))
+                .andExpect(status().isOk());
+    }
+
+    private String cardId() {
+        return jdbcTemplate.queryForObject(
+                "SELECT c.id FROM cards c JOIN users u ON c.user_id = u.id WHERE u.username = ?",
+                String.class, username);
+    }
+}
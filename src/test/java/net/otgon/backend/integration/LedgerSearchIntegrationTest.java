@@ -0,0 +1,112 @@
+package net.otgon.backend.integration;
+
+import net.otgon.backend.dto.HistoryFilter;
+import net.otgon.backend.dto.TransactionResponseDto;
+import net.otgon.backend.repository.LedgerSearchRepo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the search SQL against a ledger spread over many cards. The query
+ * plans are checked on PostgreSQL (LedgerSearchPlanIntegrationTest); H2's
+ * plans say nothing about those. Not @Transactional: the rows are
+ * batch-inserted and committed once for the class, under fresh random card
+ * ids, and deleted afterwards.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class LedgerSearchIntegrationTest {
+
+    static final int CARDS = 100;
+    static final int ENTRIES_PER_CARD = 100;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LedgerSearchRepo ledgerSearchRepo;
+
+    private List<String> cards;
+    private String cardId;
+
+    @BeforeAll
+    void insertLedger() {
+        cards = insertLedger(jdbcTemplate);
+        cardId = cards.get(7);
+    }
+
+    @AfterAll
+    void deleteLedger() {
+        deleteLedger(jdbcTemplate, cards);
+    }
+
+    //TEST-1 FILTERS AND CURSOR NARROW THE RESULT
+    @Test
+    @DisplayName("Test-1 Deductions between 3 and 4, paged by seq")
+    void searchFiltersAndPages() {
+
+        //Arrange
+        HistoryFilter filter = new HistoryFilter("DEDUCT", null, null, 3.0, 4.0, null);
+
+        //Act
+        List<LedgerSearchRepo.Row> first = ledgerSearchRepo.search(cardId, filter, Long.MAX_VALUE, 5);
+        List<LedgerSearchRepo.Row> next = ledgerSearchRepo.search(cardId, filter, first.get(4).seq(), 5);
+
+        //Assert
+        assertEquals(5, first.size());
+        assertEquals(5, next.size());
+        assertTrue(next.get(0).seq() < first.get(4).seq());
+        for (LedgerSearchRepo.Row row : first) {
+            TransactionResponseDto dto = row.dto();
+            assertEquals("DEDUCT", dto.getType());
+            assertTrue(dto.getAmount() >= 3 && dto.getAmount() <= 4, "amount " + dto.getAmount());
+        }
+    }
+
+    /** CARDS x ENTRIES_PER_CARD ledger entries under new card ids; returns the card ids */
+    static List<String> insertLedger(JdbcTemplate jdbc) {
+        List<String> cards = new ArrayList<>(CARDS);
+        List<Object[]> rows = new ArrayList<>(CARDS * ENTRIES_PER_CARD);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 8, 0);
+        for (int c = 0; c < CARDS; c++) {
+            String card = UUID.randomUUID().toString();
+            cards.add(card);
+            double balance = 0;
+            for (int seq = 1; seq <= ENTRIES_PER_CARD; seq++) {
+                // Odd seqs top up 5, even seqs deduct 1..4; one entry per day
+                boolean topUp = seq % 2 == 1;
+                double amount = topUp ? 5 : -(seq % 8 / 2 + 1);
+                balance += amount;
+                rows.add(new Object[]{UUID.randomUUID().toString(), card, seq, topUp ? "TOPUP" : "DEDUCT",
+                        amount, balance, "SUCCESS", Timestamp.valueOf(start.plusDays(seq))});
+            }
+        }
+        jdbc.batchUpdate("""
+                INSERT INTO ledger_entries (id, card_id, seq, type, amount, balance_after, status, created_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)""", rows);
+        return cards;
+    }
+
+    static void deleteLedger(JdbcTemplate jdbc, List<String> cards) {
+        if (cards != null) {
+            jdbc.batchUpdate("DELETE FROM ledger_entries WHERE card_id = ?",
+                    cards.stream().map(card -> new Object[]{card}).toList());
+        }
+    }
+}
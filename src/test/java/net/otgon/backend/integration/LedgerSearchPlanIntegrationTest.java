@@ -0,0 +1,80 @@
+package net.otgon.backend.integration;
+
+import net.otgon.backend.dto.HistoryFilter;
+import net.otgon.backend.repository.LedgerSearchRepo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks, with PostgreSQL's EXPLAIN on the Flyway schema, that every filter
+ * combination of the history search is answered from a card_id index. The
+ * ledger (LedgerSearchIntegrationTest.insertLedger: 100 cards of 100 entries)
+ * is inserted and analyzed once, so the planner costs it as it would a real
+ * table, and deleted afterwards.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class LedgerSearchPlanIntegrationTest {
+
+    private static ConfigurableApplicationContext app;
+    private static JdbcTemplate jdbcTemplate;
+    private static List<String> cards;
+
+    @BeforeAll
+    static void insertLedger() throws Exception {
+        app = PostgresTestDatabase.startApplication(PostgresTestDatabase.create("ledger_search"));
+        jdbcTemplate = app.getBean(JdbcTemplate.class);
+        cards = LedgerSearchIntegrationTest.insertLedger(jdbcTemplate);
+        jdbcTemplate.execute("ANALYZE ledger_entries");
+    }
+
+    @AfterAll
+    static void deleteLedger() {
+        if (app != null) {
+            LedgerSearchIntegrationTest.deleteLedger(jdbcTemplate, cards);
+            app.close();
+        }
+    }
+
+    //TEST-1 NO FILTER COMBINATION SCANS THE TABLE
+    @Test
+    @DisplayName("Test-1 Every filter combination uses a card_id index")
+    void filtersUseCardIndexes() {
+
+        //Arrange
+        String cardId = cards.get(7);
+        LedgerSearchRepo ledgerSearchRepo = app.getBean(LedgerSearchRepo.class);
+        NamedParameterJdbcTemplate namedJdbcTemplate = app.getBean(NamedParameterJdbcTemplate.class);
+        LocalDate from = LocalDate.of(2025, 2, 1);
+        LocalDate to = LocalDate.of(2025, 2, 28);
+        List<HistoryFilter> filters = List.of(
+                new HistoryFilter(),
+                new HistoryFilter("DEDUCT", null, null, null, null, null),
+                new HistoryFilter(null, from, to, null, null, null),
+                new HistoryFilter("TOPUP", from, null, null, null, null),
+                new HistoryFilter("DEDUCT", null, null, 2.0, 3.0, null),
+                new HistoryFilter(null, null, null, 2.0, null, null),
+                new HistoryFilter("DEDUCT", from, to, 1.0, 4.0, "SUCCESS"));
+
+        for (HistoryFilter filter : filters) {
+            //Act
+            LedgerSearchRepo.Query query = ledgerSearchRepo.buildQuery(cardId, filter, Long.MAX_VALUE, 20);
+            String plan = String.join("\n",
+                    namedJdbcTemplate.queryForList("EXPLAIN " + query.sql(), query.params(), String.class));
+
+            //Assert
+            assertFalse(plan.contains("Seq Scan"), "Table scan in plan:\n" + plan);
+            assertTrue(plan.matches("(?s).*Index Cond: \\(+card_id = .*"), "No card_id index condition in plan:\n" + plan);
+        }
+    }
+}
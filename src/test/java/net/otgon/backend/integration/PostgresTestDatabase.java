@@ -0,0 +1,67 @@
+package net.otgon.backend.integration;
+
+import net.otgon.backend.BackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A PostgreSQL server for the tests that need the real one: the Flyway
+ * scripts are PostgreSQL-only, and H2 says nothing about PostgreSQL's plans.
+ * One container per test run, started on first use; each caller gets a
+ * database of its own. Test classes using it are annotated
+ * {@code @Testcontainers(disabledWithoutDocker = true)}, so they are skipped
+ * where Docker is not available.
+ */
+final class PostgresTestDatabase {
+
+    private static final PostgreSQLContainer<?> SERVER = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private PostgresTestDatabase() {
+    }
+
+    /** Creates an empty database and returns its JDBC URL */
+    static synchronized String create(String name) throws SQLException {
+        SERVER.start();
+        try (Connection connection = DriverManager.getConnection(SERVER.getJdbcUrl(), SERVER.getUsername(), SERVER.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + name + " WITH (FORCE)");
+            statement.execute("CREATE DATABASE " + name);
+        }
+        return "jdbc:postgresql://" + SERVER.getHost() + ":" + SERVER.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + name;
+    }
+
+    static Connection connect(String url) throws SQLException {
+        return DriverManager.getConnection(url, SERVER.getUsername(), SERVER.getPassword());
+    }
+
+    /**
+     * Starts the application on the database with the production schema
+     * settings: Flyway migrates (baselining a database created by the old
+     * ddl-auto=update at V1), then Hibernate validates the mappings.
+     */
+    static ConfigurableApplicationContext startApplication(String url) {
+        return new SpringApplicationBuilder(BackendApplication.class)
+                // Command-line arguments, so they win over application-test.properties. The profile
+                // too: profiles() adds to spring.profiles.active=local instead of replacing it
+                .run("--spring.profiles.active=test",
+                        "--server.port=0",
+                        "--spring.datasource.url=" + url,
+                        "--spring.datasource.driver-class-name=org.postgresql.Driver",
+                        "--spring.datasource.username=" + SERVER.getUsername(),
+                        "--spring.datasource.password=" + SERVER.getPassword(),
+                        "--spring.datasource.hikari.data-source-properties.stringtype=unspecified",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+                        "--spring.jpa.hibernate.ddl-auto=validate",
+                        "--spring.flyway.enabled=true",
+                        "--spring.flyway.baseline-on-migrate=true",
+                        "--spring.flyway.baseline-version=1",
+                        "--spring.flyway.postgresql.transactional-lock=false");
+    }
+}
@@ -0,0 +1,212 @@
+package net.otgon.backend.integration;
+
+import net.otgon.backend.service.ReadYourWrites;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Two in-memory H2 databases stand in for primary and replica. Hibernate
+ * creates the schema on the primary only; the replica gets bare cards and
+ * ledger_entries tables, so a read that lands there is recognisable by what
+ * it returns. Not @Transactional, and each test uses a unique user.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rwprimary;DB_CLOSE_DELAY=-1",
+        "datasource.replica.url=jdbc:h2:mem:rwreplica;DB_CLOSE_DELAY=-1",
+        "datasource.replica.pin-window=10m"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReadReplicaRoutingIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    private JdbcTemplate replica;
+    private String username;
+
+    @BeforeEach
+    public void setup() {
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("""
+                CREATE TABLE IF NOT EXISTS ledger_entries (
+                    id UUID PRIMARY KEY, card_id UUID NOT NULL, seq BIGINT NOT NULL, type VARCHAR(20) NOT NULL,
+                    amount DOUBLE PRECISION NOT NULL, balance_after DOUBLE PRECISION NOT NULL,
+                    status VARCHAR(20) NOT NULL, source_id UUID, created_at TIMESTAMP(6) NOT NULL)
+                """);
+        replica.execute("CREATE TABLE IF NOT EXISTS cards (id UUID PRIMARY KEY, ledger_seq BIGINT NOT NULL)");
+    }
+
+    //TEST-1 READ-ONLY TRANSACTIONS GO TO THE REPLICA, EVERYTHING ELSE TO THE PRIMARY
+    @Test
+    @DisplayName("Test-1 Routing by transaction type")
+    void routesByTransactionType() {
+
+        //Arrange
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        //Act & Assert
+        assertEquals("RWREPLICA", readOnly.execute(status -> database()));
+        assertEquals("RWPRIMARY", readWrite.execute(status -> database()));
+        assertEquals("RWPRIMARY", database());
+    }
+
+    //TEST-2 CARD READS USE THE REPLICA UNTIL THE CARD IS WRITTEN
+    @Test
+    @DisplayName("Test-2 A written card is pinned to the primary")
+    void pinsWrittenCard() {
+
+        //Arrange
+        String cardId = UUID.randomUUID().toString();
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        //Act
+        String before = readYourWrites.onReplica(cardId, this::database);
+        readWrite.executeWithoutResult(status -> readYourWrites.pinAfterCommit(cardId));
+        String after = readYourWrites.onReplica(cardId, this::database);
+
+        //Assert
+        assertEquals("RWREPLICA", before);
+        assertEquals("RWPRIMARY", after);
+        // Writes inside a card read still go to the primary
+        assertEquals("RWPRIMARY", readYourWrites.onReplica(UUID.randomUUID().toString(),
+                () -> readWrite.execute(status -> database())));
+    }
+
+    //TEST-3 HISTORY OF A RIDER WITH NO RECENT WRITES COMES FROM THE REPLICA
+    @Test
+    @DisplayName("Test-3 GET /api/transactions reads the replica")
+    void historyFromReplica() throws Exception {
+
+        //Arrange
+        String token = register();
+        String cardId = cardIdOf(username);
+        replica.update("INSERT INTO ledger_entries VALUES (?, ?, 1, 'TOPUP', 7.5, 7.5, 'SUCCESS', NULL, CURRENT_TIMESTAMP)",
+                UUID.randomUUID().toString(), cardId);
+        replica.update("INSERT INTO cards VALUES (?, 1)", cardId);
+
+        //Act & Assert: the ETag is the replica's version too, not the primary's v0
+        mockMvc.perform(get("/api/transactions").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].amount").value(7.5));
+    }
+
+    //TEST-4 A RIDER WHO JUST TOPPED UP READS THEIR OWN WRITE
+    @Test
+    @DisplayName("Test-4 History right after a top-up comes from the primary")
+    void historyAfterTopUpFromPrimary() throws Exception {
+
+        //Arrange
+        String token = register();
+        mockMvc.perform(put("/api/wallet/topup")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": 5}"))
+                .andExpect(status().isOk());
+
+        //Act & Assert: the replica has no entry for this card
+        assertTrue(readYourWrites.isPinned(cardIdOf(username)));
+        mockMvc.perform(get("/api/transactions").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(header().string("ETag", "\"v1\""))
+                .andExpect(jsonPath("$[0].type").value("TOPUP"))
+                .andExpect(jsonPath("$[0].amount").value(5.0));
+    }
+
+    //TEST-5 NO ETAG WHILE THE REPLICA HAS NOT SEEN THE CARD
+    @Test
+    @DisplayName("Test-5 A card missing on the replica gets no ETag")
+    void noEtagBeforeReplicaCatchesUp() throws Exception {
+
+        //Arrange
+        String token = register();
+
+        //Act & Assert
+        mockMvc.perform(get("/api/transactions").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    //TEST-6 THE WALLET STREAM SNAPSHOT IS READ FROM THE PRIMARY
+    @Test
+    @DisplayName("Test-6 Stream snapshot of an unpinned card comes from the primary")
+    void streamSnapshotFromPrimary() throws Exception {
+
+        //Arrange: not written since registration, so not pinned; the replica has no balances
+        String token = register();
+        assertFalse(readYourWrites.isPinned(cardIdOf(username)));
+
+        //Act
+        String body = mockMvc.perform(get("/api/wallet/stream").header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse().getContentAsString();
+
+        //Assert
+        assertTrue(body.contains("event:snapshot"));
+        assertTrue(body.contains("\"balance\":10.0"));
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("SELECT DATABASE()", String.class);
+    }
+
+    private String cardIdOf(String username) {
+        return jdbcTemplate.queryForObject(
+                "SELECT c.id FROM cards c JOIN users u ON u.id = c.user_id WHERE u.username = ?",
+                String.class, username);
+    }
+
+    private String register() throws Exception {
+        username = "rw-" + UUID.randomUUID().toString().substring(0, 8);
+        return mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {
+                                "username": "%s",
+                                "password": "password",
+                                "email": "%s@test.com"
+                                }
+                                """, username, username)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+}
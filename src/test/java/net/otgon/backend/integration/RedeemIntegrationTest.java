@@ -1,6 +1,8 @@
 package net.otgon.backend.integration;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.transaction.Transactional;
 import net.minidev.json.JSONObject;
 import net.otgon.backend.dto.DeviceRegisterResponse;
@@ -19,6 +21,7 @@ import java.security.*;
 import java.util.Base64;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -32,6 +35,9 @@ public class RedeemIntegrationTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     //Test data
     KeyPair keyPair;
     PrivateKey privateKey;
@@ -149,6 +155,41 @@ public class RedeemIntegrationTest {
     }
 
 
+    //TEST-3 REDEEM GOES THROUGH THE PAYMENT CHAIN, JWT HEADER IS IGNORED
+    @Test
+    @DisplayName("Test-3 Redeem uses payment filter chain")
+    void redeemTestUsesPaymentFilterChain() throws Exception {
+
+        //Arrange
+        byte[] payloadBytes = createPayload(txId, fare, timestamp);
+        byte[] signatureBytes = signPayload(payloadBytes);
+        String requestBody = String.format("""
+                {
+                "deviceId": "%s",
+                "payload": "%s",
+                "signature": "%s"
+                }
+                """, deviceId,
+                Base64.getEncoder().encodeToString(payloadBytes),
+                Base64.getEncoder().encodeToString(signatureBytes));
+
+        Timer paymentChain = meterRegistry.find("security.filterchain.duration")
+                .tag("chain", "payment").timer();
+        assertNotNull(paymentChain);
+        long before = paymentChain.count();
+
+        //Act: a garbage bearer token must not matter on the signature-authenticated path
+        mockMvc.perform(post("/api/wallet/redeem")
+                        .header("Authorization", "Bearer not-a-jwt")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("Success"));
+
+        //Assert
+        assertEquals(before + 1, paymentChain.count());
+    }
+
     private String getToken() throws Exception {
 
         String requestBodyLogIn = """
@@ -0,0 +1,233 @@
+package net.otgon.backend.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import net.minidev.json.JSONObject;
+import net.otgon.backend.entity.Card;
+import net.otgon.backend.entity.User;
+import net.otgon.backend.service.WalletService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Second-level cache turned on (the test profile keeps it off): warm lookups
+ * skip their select, hits show up in the per-region metrics, and the balance
+ * stays out of the cache. Not @Transactional; each test uses a unique user.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.cache.use_second_level_cache=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SecondLevelCacheIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+    private String username;
+    private String token;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        username = "l2-" + UUID.randomUUID().toString().substring(0, 8);
+        token = mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {
+                                "username": "%s",
+                                "password": "password",
+                                "email": "%s@test.com"
+                                }
+                                """, username, username)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        // Loading the user puts it and its username in the cache
+        perform(post("/api/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("""
+                        {
+                        "username": "%s",
+                        "password": "password"
+                        }
+                        """, username)));
+        perform(topUp(5));
+    }
+
+    //TEST-1 TOP-UP RESOLVES THE USERNAME FROM THE NATURAL-ID CACHE
+    @Test
+    @DisplayName("Test-1 Warm top-up skips the username select")
+    void topUpUsesNaturalIdCache() throws Exception {
+
+        //Arrange
+        double hitsBefore = hits("users-by-username");
+
+        //Act
+        long statements = statementsFor(topUp(3));
+
+        //Assert: card with its lock, rollup find,
+        // insert top-up and ledger entry, update card and rollup (one fewer than cold)
+        assertEquals(6, statements);
+        assertTrue(hits("users-by-username") > hitsBefore);
+        assertTrue(meterRegistry.get("cache.hit.ratio").tag("cache", "users-by-username").gauge().value() > 0);
+    }
+
+    //TEST-2 REDEEM READS THE DEVICE FROM THE CACHE
+    @Test
+    @DisplayName("Test-2 Warm redeem skips the device select")
+    void redeemUsesDeviceCache() throws Exception {
+
+        //Arrange
+        KeyPair keyPair = generateKeyPair();
+        String deviceResponse = mockMvc.perform(post("/api/device/register")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {
+                                "alias": "%s",
+                                "publicKey": "%s"
+                                }
+                                """, username, Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()))))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String deviceId = new ObjectMapper().readTree(deviceResponse).get("deviceId").asText();
+        double hitsBefore = hits("devices");
+
+        //Act
+        long statements = statementsFor(redeem(deviceId, keyPair, 2.0));
+
+        //Assert: card with its lock, duplicate check, rollup find,
+        // insert transaction, tx id and ledger entry, update card and rollup
+        assertEquals(8, statements);
+        assertTrue(hits("devices") > hitsBefore);
+    }
+
+    //TEST-3 CONCURRENT TOP-UPS: THE BALANCE IS NEVER SERVED FROM THE CACHE
+    @Test
+    @DisplayName("Test-3 Balance stays exact under concurrent top-ups")
+    void balanceCorrectUnderConcurrentWrites() throws Exception {
+
+        //Arrange
+        int writers = 8;
+        String userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", String.class, username);
+        String cardId = jdbcTemplate.queryForObject("SELECT id FROM cards WHERE user_id = ?", String.class, userId);
+        double balanceBefore = jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE id = ?", Double.class, cardId);
+        long seqBefore = jdbcTemplate.queryForObject("SELECT ledger_seq FROM cards WHERE id = ?", Long.class, cardId);
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+
+        //Act
+        try {
+            List<Future<?>> topUps = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                topUps.add(pool.submit(() -> walletService.topup(token, 1)));
+            }
+            for (Future<?> topUp : topUps) {
+                topUp.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        //Assert: every top-up of 1 landed, none lost to a stale cached balance
+        assertEquals(balanceBefore + writers,
+                jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE id = ?", Double.class, cardId));
+        assertEquals(seqBefore + writers,
+                jdbcTemplate.queryForObject("SELECT ledger_seq FROM cards WHERE id = ?", Long.class, cardId));
+        assertTrue(entityManagerFactory.getCache().contains(User.class, userId));
+        assertFalse(entityManagerFactory.getCache().contains(Card.class, cardId));
+    }
+
+    // Runs the request and returns the statements it prepared
+    private long statementsFor(RequestBuilder request) throws Exception {
+        statistics.clear();
+        perform(request);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private double hits(String region) {
+        return meterRegistry.get("cache.gets").tag("cache", region).tag("result", "hit").functionCounter().count();
+    }
+
+    private void perform(RequestBuilder request) throws Exception {
+        mockMvc.perform(request).andExpect(status().isOk());
+    }
+
+    private RequestBuilder topUp(double amount) {
+        return put("/api/wallet/topup")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\": " + amount + "}");
+    }
+
+    private RequestBuilder redeem(String deviceId, KeyPair keyPair, double fare) throws Exception {
+        JSONObject payload = new JSONObject();
+        payload.put("txId", UUID.randomUUID().toString());
+        payload.put("fare", fare);
+        payload.put("timestamp", System.currentTimeMillis());
+        byte[] payloadBytes = payload.toString().getBytes(StandardCharsets.UTF_8);
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(payloadBytes);
+        return post("/api/wallet/redeem")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("""
+                        {
+                        "deviceId": "%s",
+                        "payload": "%s",
+                        "signature": "%s"
+                        }
+                        """, deviceId,
+                        Base64.getEncoder().encodeToString(payloadBytes),
+                        Base64.getEncoder().encodeToString(signer.sign())));
+    }
+
+    private KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,160 @@
+package net.otgon.backend.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Walks real pages over committed data, so this test is not @Transactional
+ * and uses a unique user per test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class TransactionHistoryIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String token;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        String username = "hist-" + UUID.randomUUID().toString().substring(0, 8);
+        token = mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("""
+                                {
+                                "username": "%s",
+                                "password": "password",
+                                "email": "%s@test.com"
+                                }
+                                """, username, username)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        for (int i = 1; i <= 5; i++) {
+            mockMvc.perform(put("/api/wallet/topup")
+                            .header("Authorization", "Bearer " + token)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"amount\": " + i + "}"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    //TEST-1 WALK ALL PAGES WITH THE CURSOR
+    @Test
+    @DisplayName("Test-1 Cursor walks the full history without gaps or repeats")
+    void walkPages() throws Exception {
+
+        Set<String> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+
+        do {
+            var request = get("/api/transactions")
+                    .param("limit", "2")
+                    .header("Authorization", "Bearer " + token);
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            JsonNode page = objectMapper.readTree(body);
+            for (JsonNode item : page.get("items")) {
+                assertTrue(seen.add(item.get("id").asText()), "entry returned twice");
+            }
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, seen.size());
+        assertEquals(3, pages);
+    }
+
+    //TEST-2 NO PAGING PARAMS KEEPS THE LEGACY ARRAY
+    @Test
+    @DisplayName("Test-2 Without limit or cursor the full list is returned")
+    void legacyFullList() throws Exception {
+
+        mockMvc.perform(get("/api/transactions")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
+                .andExpect(jsonPath("$.length()").value(5));
+    }
+
+    //TEST-3 CSV EXPORT IS OLDEST FIRST WITH A HEADER
+    @Test
+    @DisplayName("Test-3 CSV export streams every entry oldest first")
+    void exportCsv() throws Exception {
+
+        MvcResult started = mockMvc.perform(get("/api/transactions/export")
+                        .param("format", "csv")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(6, lines.length);
+        assertEquals("id,type,amount,balanceAfter,timestamp,status", lines[0]);
+        assertTrue(lines[1].contains(",TOPUP,1.0,11.0,"));
+        assertTrue(lines[5].contains(",TOPUP,5.0,25.0,"));
+    }
+
+    //TEST-4 NDJSON EXPORT IS GZIPPED WHEN ASKED
+    @Test
+    @DisplayName("Test-4 NDJSON export is compressed for Accept-Encoding: gzip")
+    void exportNdjsonGzip() throws Exception {
+
+        MvcResult started = mockMvc.perform(get("/api/transactions/export")
+                        .header("Accept-Encoding", "gzip")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] compressed = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        String body;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] lines = body.split("\n");
+        assertEquals(5, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("TOPUP", first.get("type").asText());
+        assertEquals(11.0, first.get("balanceAfter").asDouble());
+    }
+}
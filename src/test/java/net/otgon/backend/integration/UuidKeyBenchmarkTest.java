@@ -0,0 +1,131 @@
+package net.otgon.backend.integration;
+
+import net.otgon.backend.util.UuidV7;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Insert throughput and primary-key index size of the transactions table
+ * layout with random varchar ids (before), random native uuid ids, and
+ * time-ordered uuid ids (after), so the column type and the key order are
+ * measured separately. Only the index sizes are asserted: they are stable
+ * from run to run, throughput depends on the machine and is just reported.
+ * Needs a scratch PostgreSQL database and takes a while at the default size,
+ * so it only runs when asked for:
+ *   mvn test -Dtest=UuidKeyBenchmarkTest -Dbenchmark.postgres.url=jdbc:postgresql://localhost:5432/bench
+ *   (-Dbenchmark.postgres.user, -Dbenchmark.postgres.password, -Dbenchmark.rows=10000000)
+ */
+@EnabledIfSystemProperty(named = "benchmark.postgres.url", matches = ".+")
+@DisplayName("Benchmark: varchar UUIDv4 vs native UUIDv4 vs native UUIDv7 keys")
+public class UuidKeyBenchmarkTest {
+
+    private static final int BATCH = 1000;
+
+    private enum KeyLayout { VARCHAR_V4, UUID_V4, UUID_V7 }
+
+    //TEST-1 SAME ROWS, THREE KEY LAYOUTS
+    @Test
+    @DisplayName("Native uuid keys make a smaller index, time-ordered ones smaller still")
+    void compareKeyLayouts() throws Exception {
+
+        //Arrange
+        long rows = Long.getLong("benchmark.rows", 10_000_000L);
+        try (Connection connection = DriverManager.getConnection(
+                System.getProperty("benchmark.postgres.url") + "?reWriteBatchedInserts=true",
+                System.getProperty("benchmark.postgres.user", "postgres"),
+                System.getProperty("benchmark.postgres.password", ""))) {
+            connection.setAutoCommit(false);
+            createTable(connection, "bench_tx_v4", "VARCHAR(36)");
+            createTable(connection, "bench_tx_uuid_v4", "UUID");
+            createTable(connection, "bench_tx_v7", "UUID");
+
+            //Act
+            double v4Rate = insert(connection, "bench_tx_v4", rows, KeyLayout.VARCHAR_V4);
+            double uuidV4Rate = insert(connection, "bench_tx_uuid_v4", rows, KeyLayout.UUID_V4);
+            double v7Rate = insert(connection, "bench_tx_v7", rows, KeyLayout.UUID_V7);
+            long v4Index = indexSize(connection, "bench_tx_v4");
+            long uuidV4Index = indexSize(connection, "bench_tx_uuid_v4");
+            long v7Index = indexSize(connection, "bench_tx_v7");
+
+            System.out.printf("[UuidKeyBenchmark] %,d rows%n", rows);
+            System.out.printf("  varchar UUIDv4: %,.0f rows/s, pk index %,d MB%n", v4Rate, v4Index >> 20);
+            System.out.printf("  uuid UUIDv4:    %,.0f rows/s, pk index %,d MB%n", uuidV4Rate, uuidV4Index >> 20);
+            System.out.printf("  uuid UUIDv7:    %,.0f rows/s, pk index %,d MB%n", v7Rate, v7Index >> 20);
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE bench_tx_v4");
+                statement.execute("DROP TABLE bench_tx_uuid_v4");
+                statement.execute("DROP TABLE bench_tx_v7");
+            }
+            connection.commit();
+
+            //Assert: 16-byte keys beat 37-byte strings; appending beats random page splits
+            assertTrue(uuidV4Index < v4Index, "uuid index should be smaller than the varchar one");
+            assertTrue(v7Index < uuidV4Index, "time-ordered index should be smaller than the random one");
+        }
+    }
+
+    private void createTable(Connection connection, String table, String keyType) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " (id " + keyType + " PRIMARY KEY, card_id " + keyType
+                    + " NOT NULL, amount DOUBLE PRECISION NOT NULL, status VARCHAR(20) NOT NULL,"
+                    + " synced_at TIMESTAMP(6))");
+        }
+        connection.commit();
+    }
+
+    // Rows per second, committing every batch like the live write path
+    private double insert(Connection connection, String table, long rows, KeyLayout layout) throws Exception {
+        String cardId = UUID.randomUUID().toString();
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (id, card_id, amount, status, synced_at) VALUES (?, ?, ?, ?, ?)")) {
+            for (long i = 1; i <= rows; i++) {
+                switch (layout) {
+                    case VARCHAR_V4 -> {
+                        insert.setString(1, UUID.randomUUID().toString());
+                        insert.setString(2, cardId);
+                    }
+                    case UUID_V4 -> {
+                        insert.setObject(1, UUID.randomUUID());
+                        insert.setObject(2, UUID.fromString(cardId));
+                    }
+                    case UUID_V7 -> {
+                        insert.setObject(1, UUID.fromString(UuidV7.next()));
+                        insert.setObject(2, UUID.fromString(cardId));
+                    }
+                }
+                insert.setDouble(3, 2.0);
+                insert.setString(4, "SUCCESS");
+                insert.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                insert.addBatch();
+                if (i % BATCH == 0 || i == rows) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+        return rows / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private long indexSize(Connection connection, String table) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT pg_relation_size('" + table + "_pkey')")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
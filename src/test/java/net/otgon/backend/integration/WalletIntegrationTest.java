@@ -1,5 +1,7 @@
 package net.otgon.backend.integration;
 
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -8,9 +10,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -104,6 +109,30 @@ public class WalletIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    //TEST-4 A STREAM THAT TIMES OUT ENDS WITHOUT A SECURITY ERROR
+    @Test
+    @DisplayName("Test-4 Wallet stream sends the snapshot and its async dispatch is let through")
+    void streamEndsCleanly() throws Exception {
+
+        //Arrange
+        String token = getToken();
+        MvcResult started = mockMvc.perform(get("/api/wallet/stream")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(started.getResponse().getContentAsString().contains("event:snapshot"));
+
+        //Act: the container's stream timeout, which dispatches back through the filter chain
+        MockAsyncContext asyncContext = (MockAsyncContext) started.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        //Assert
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk());
+    }
+
     private String getToken() throws Exception {
 
         String requestBodyLogIn = """
@@ -0,0 +1,94 @@
+package net.otgon.backend.service;
+
+import net.otgon.backend.dto.BootstrapResponse;
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.exception.DeadlineExceededException;
+import net.otgon.backend.exception.ServiceBusyException;
+import net.otgon.backend.repository.DeviceRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Bootstrap Service Unit Test")
+@ActiveProfiles("test")
+public class BootstrapTest {
+
+    @Mock
+    AccountResolver accountResolver;
+    @Mock
+    UserService userService;
+    @Mock
+    TransactionService transactionService;
+    @Mock
+    DeviceRepo deviceRepo;
+
+    private final TokenIdentity identity = new TokenIdentity("alice", "user-1", "card-1");
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BootstrapService bootstrapService;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (bootstrapService != null) {
+            bootstrapService.shutdown();
+        }
+    }
+
+    //TEST-1 A FULL QUEUE SHEDS THE BOOTSTRAP INSTEAD OF QUEUEING IT PAST ITS DEADLINE
+    @Test
+    @DisplayName("Fail: saturated pool rejects fast")
+    void saturatedPoolRejects() throws Exception {
+
+        //Arrange: one thread, room for one bootstrap's other two reads, profile read blocked
+        bootstrapService = new BootstrapService(accountResolver, userService, transactionService, deviceRepo, 1, 2, 5000);
+        CountDownLatch running = new CountDownLatch(1);
+        when(accountResolver.resolve("token")).thenReturn(identity);
+        when(userService.getUserInfo(identity)).thenAnswer(invocation -> {
+            running.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        CompletableFuture<BootstrapResponse> first = CompletableFuture.supplyAsync(
+                () -> bootstrapService.bootstrap("token", 10));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        //Act & Assert
+        ServiceBusyException ex = assertThrows(ServiceBusyException.class,
+                () -> bootstrapService.bootstrap("token", 10));
+        assertTrue(ex.getRetryAfterSeconds() >= 1);
+
+        release.countDown();
+        assertEquals(BootstrapService.DEVICE_NOT_REGISTERED, first.get(5, TimeUnit.SECONDS).getDeviceStatus());
+    }
+
+    //TEST-2 A SLOW READ IS A TIMEOUT, NOT AN AUTH FAILURE
+    @Test
+    @DisplayName("Fail: slow read exceeds the deadline")
+    void slowReadTimesOut() {
+
+        //Arrange
+        bootstrapService = new BootstrapService(accountResolver, userService, transactionService, deviceRepo, 3, 3, 100);
+        when(accountResolver.resolve("token")).thenReturn(identity);
+        when(userService.getUserInfo(identity)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+
+        //Act & Assert
+        DeadlineExceededException ex = assertThrows(DeadlineExceededException.class,
+                () -> bootstrapService.bootstrap("token", 10));
+        assertEquals("Bootstrap timed out", ex.getMessage());
+    }
+}
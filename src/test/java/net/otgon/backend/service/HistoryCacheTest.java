@@ -0,0 +1,140 @@
+package net.otgon.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.otgon.backend.entity.LedgerEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Unit tests for History Cache")
+@ActiveProfiles("test")
+public class HistoryCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private HistoryCache historyCache;
+
+    @BeforeEach
+    void setUp() {
+        historyCache = new HistoryCache(meterRegistry, 3, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    //TEST-1 SECOND READ IS SERVED FROM MEMORY
+    @Test
+    @DisplayName("Second read hits the cached window")
+    void secondReadHits() {
+
+        //Act
+        historyCache.newest("card-1", Long.MAX_VALUE, 2, id -> load(2));
+        Optional<List<LedgerEntry>> second = historyCache.newest("card-1", Long.MAX_VALUE, 2, id -> load(2));
+
+        //Assert
+        assertTrue(second.isPresent());
+        assertEquals(2, second.get().size());
+        assertEquals(1, loads.get());
+        assertEquals(2.0, hits());
+    }
+
+    //TEST-2 APPEND UPDATES THE WINDOW IN PLACE AFTER COMMIT
+    @Test
+    @DisplayName("Committed append is visible without a reload")
+    void appendAfterCommit() {
+
+        //Arrange
+        historyCache.all("card-1", id -> load(2));
+        TransactionSynchronizationManager.initSynchronization();
+
+        //Act
+        historyCache.appendAfterCommit(entry(3));
+        List<LedgerEntry> beforeCommit = historyCache.all("card-1", id -> load(2)).orElseThrow();
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCommit();
+        }
+        List<LedgerEntry> afterCommit = historyCache.all("card-1", id -> load(2)).orElseThrow();
+
+        //Assert
+        assertEquals(2, beforeCommit.size());
+        assertEquals(3, afterCommit.size());
+        assertEquals(3, afterCommit.get(0).getSeq());
+        assertEquals(1, loads.get());
+    }
+
+    //TEST-3 WINDOW FULL: OLDER PAGES AND FULL HISTORY FALL BACK TO THE DATABASE
+    @Test
+    @DisplayName("Reads past a full window are misses")
+    void fullWindowMisses() {
+
+        //Arrange
+        historyCache.newest("card-1", Long.MAX_VALUE, 1, id -> load(3));
+        historyCache.appendAfterCommit(entry(4));
+
+        //Act
+        Optional<List<LedgerEntry>> olderPage = historyCache.newest("card-1", 3, 3, id -> load(3));
+        Optional<List<LedgerEntry>> all = historyCache.all("card-1", id -> load(3));
+        Optional<List<LedgerEntry>> newest = historyCache.newest("card-1", Long.MAX_VALUE, 3, id -> load(3));
+
+        //Assert
+        assertTrue(olderPage.isEmpty());
+        assertTrue(all.isEmpty());
+        assertEquals(List.of(4L, 3L, 2L), newest.orElseThrow().stream().map(LedgerEntry::getSeq).toList());
+        assertEquals(2.0, misses());
+    }
+
+    //TEST-4 OUT-OF-ORDER APPEND DROPS THE WINDOW
+    @Test
+    @DisplayName("Gap in seq invalidates instead of caching a hole")
+    void gapInvalidates() {
+
+        //Arrange
+        historyCache.all("card-1", id -> load(2));
+
+        //Act
+        historyCache.appendAfterCommit(entry(5));
+        historyCache.all("card-1", id -> load(2));
+
+        //Assert
+        assertEquals(2, loads.get());
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.history.reads").tag("result", "hit").counter().count();
+    }
+
+    private double misses() {
+        return meterRegistry.get("cache.history.reads").tag("result", "miss").counter().count();
+    }
+
+    // Newest-first entries seq n..1
+    private List<LedgerEntry> load(int n) {
+        loads.incrementAndGet();
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (long seq = n; seq >= 1; seq--) {
+            entries.add(entry(seq));
+        }
+        return entries;
+    }
+
+    private LedgerEntry entry(long seq) {
+        return new LedgerEntry("card-1", seq, LedgerEntry.TOPUP, 1, 10 + seq, "SUCCESS",
+                "src-" + seq, LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(seq));
+    }
+}
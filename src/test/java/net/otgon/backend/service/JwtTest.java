@@ -1,5 +1,8 @@
 package net.otgon.backend.service;
 
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.entity.Card;
+import net.otgon.backend.entity.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -94,4 +97,41 @@ public class JwtTest {
                 "Expected exception");
         assertEquals("Invalid token", exception.getMessage());
     }
+
+    //TEST-6 SUCCESS PATH WHEN TOKEN CARRIES USER AND CARD IDS
+    @Test
+    @DisplayName("Success path: identity claims")
+    void extractIdentityTestWithClaims() {
+
+        //Arrange
+        User user = new User();
+        user.setId("user-1");
+        user.setUsername(username);
+        Card card = new Card();
+        card.setId("card-1");
+        user.setCard(card);
+
+        //Act
+        TokenIdentity identity = jwtService.extractIdentity(jwtService.generateToken(user));
+
+        //Assert
+        assertEquals(username, identity.getUsername());
+        assertEquals("user-1", identity.getUserId());
+        assertEquals("card-1", identity.getCardId());
+        assertTrue(identity.hasCard());
+    }
+
+    //TEST-7 OLD TOKENS WITHOUT CLAIMS STILL PARSE
+    @Test
+    @DisplayName("Success path: legacy token without identity claims")
+    void extractIdentityTestLegacyToken() {
+
+        //Act
+        TokenIdentity identity = jwtService.extractIdentity(validToken);
+
+        //Assert
+        assertEquals(username, identity.getUsername());
+        assertNull(identity.getCardId());
+        assertFalse(identity.hasCard());
+    }
 }
@@ -0,0 +1,146 @@
+package net.otgon.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.otgon.backend.exception.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Unit tests for Login Throttle")
+@ActiveProfiles("test")
+public class LoginThrottleTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    void setUp() {
+        // 3 failures per client and 6 per username per 60s, 5 attempts per 10s per address
+        loginThrottle = new LoginThrottle(new AuthMetrics(meterRegistry), 1024,
+                3, 6, 60, 5, 10, now::get);
+    }
+
+    //TEST-1 A CLIENT IS BLOCKED ON A USERNAME AFTER TOO MANY FAILURES; BLOCKED TRIES DON'T COUNT
+    @Test
+    @DisplayName("Client blocked after failures, without extending its own lock")
+    void clientBlockedWithoutExtension() {
+
+        //Arrange
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.check("alice", "10.0.0.1");
+            loginThrottle.recordFailure("alice", "10.0.0.1");
+        }
+
+        //Act & Assert
+        TooManyRequestsException first = assertThrows(TooManyRequestsException.class,
+                () -> loginThrottle.check("alice", "10.0.0.1"));
+        TooManyRequestsException second = assertThrows(TooManyRequestsException.class,
+                () -> loginThrottle.check("ALICE", "10.0.0.1"));
+        assertEquals(60, first.getRetryAfterSeconds());
+        assertEquals(first.getRetryAfterSeconds(), second.getRetryAfterSeconds());
+        assertEquals(2.0, meterRegistry.get("auth.login.blocked").tag("reason", "username").counter().count());
+
+        // The rider on another address, and other users, are unaffected
+        assertDoesNotThrow(() -> loginThrottle.check("alice", "10.0.0.2"));
+        assertDoesNotThrow(() -> loginThrottle.check("bob", "10.0.0.3"));
+
+        // Hammering while blocked does not feed the lock: it lifts as the three failures slide out
+        for (int i = 0; i < 100; i++) {
+            assertThrows(TooManyRequestsException.class, () -> loginThrottle.check("alice", "10.0.0.1"));
+        }
+        now.addAndGet(30_000L);
+        assertDoesNotThrow(() -> loginThrottle.check("alice", "10.0.0.1"));
+    }
+
+    //TEST-2 ADDRESS BLOCKED AFTER TOO MANY ATTEMPTS ACROSS USERNAMES
+    @Test
+    @DisplayName("Address blocked after too many attempts")
+    void addressBlocked() {
+
+        //Arrange
+        for (int i = 0; i < 5; i++) {
+            loginThrottle.check("user" + i, "10.0.0.1");
+        }
+
+        //Act & Assert
+        assertThrows(TooManyRequestsException.class, () -> loginThrottle.check("user9", "10.0.0.1"));
+        assertDoesNotThrow(() -> loginThrottle.check("user9", "10.0.0.2"));
+        assertEquals(1.0, meterRegistry.get("auth.login.blocked").tag("reason", "address").counter().count());
+    }
+
+    //TEST-3 WINDOW SLIDES: OLD FAILURES STOP COUNTING
+    @Test
+    @DisplayName("Block lifts once the window has passed")
+    void windowExpires() {
+
+        //Arrange
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.recordFailure("alice", "10.0.0.1");
+        }
+        assertThrows(TooManyRequestsException.class, () -> loginThrottle.check("alice", "10.0.0.1"));
+
+        //Act
+        now.addAndGet(2 * 60_000L);
+
+        //Assert
+        assertDoesNotThrow(() -> loginThrottle.check("alice", "10.0.0.1"));
+    }
+
+    //TEST-4 A SUCCESSFUL LOGIN CLEARS THE CLIENT'S FAILURES
+    @Test
+    @DisplayName("Success resets the client's failures")
+    void successClearsFailures() {
+
+        //Arrange
+        for (int i = 0; i < 2; i++) {
+            loginThrottle.recordFailure("alice", "10.0.0.1");
+        }
+
+        //Act
+        loginThrottle.recordSuccess("Alice", "10.0.0.1");
+        loginThrottle.recordFailure("alice", "10.0.0.1");
+        loginThrottle.recordFailure("alice", "10.0.0.1");
+
+        //Assert: two failures since the success, under the limit of three
+        assertDoesNotThrow(() -> loginThrottle.check("alice", "10.0.0.1"));
+    }
+
+    //TEST-5 FAILURES SPRAYED OVER MANY USERNAMES NEVER BLOCK AN UNTOUCHED ONE
+    @Test
+    @DisplayName("Credential stuffing across usernames does not lock out others")
+    void sprayDoesNotLockOutOthers() {
+
+        //Arrange: far more usernames than the 1024 keys kept, each failing up to the limit
+        for (int i = 0; i < 20_000; i++) {
+            for (int j = 0; j < 3; j++) {
+                loginThrottle.recordFailure("victim" + i, "10.0.0.1");
+            }
+        }
+
+        //Act & Assert
+        assertDoesNotThrow(() -> loginThrottle.check("alice", "10.0.0.1"));
+        assertDoesNotThrow(() -> loginThrottle.check("bob", "10.0.0.1"));
+    }
+
+    //TEST-6 A USERNAME UNDER ATTACK FROM MANY ADDRESSES: ONE TRY EACH, THE RIDER STILL GETS IN
+    @Test
+    @DisplayName("Past the username limit, failed addresses are cut to one try and new ones still pass")
+    void usernameSoftLimit() {
+
+        //Arrange: six addresses fail once each, reaching the username limit
+        for (int i = 0; i < 6; i++) {
+            loginThrottle.recordFailure("alice", "203.0.113." + i);
+        }
+
+        //Act & Assert
+        assertThrows(TooManyRequestsException.class, () -> loginThrottle.check("alice", "203.0.113.0"));
+        assertDoesNotThrow(() -> loginThrottle.check("alice", "198.51.100.7"));
+        assertDoesNotThrow(() -> loginThrottle.check("bob", "203.0.113.0"));
+    }
+}
@@ -0,0 +1,149 @@
+package net.otgon.backend.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Unit tests for transaction partition maintenance")
+@ActiveProfiles("test")
+public class PartitionMaintenanceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private JobLeaseService jobLeaseService;
+
+    //TEST-1 PARTITIONS ARE CREATED FOR THIS MONTH AND THE NEXT ONES
+    @Test
+    @DisplayName("Creates this month's partition and the configured months ahead")
+    void createsMonthsAhead() {
+
+        //Arrange
+        PartitionMaintenanceService service = new PartitionMaintenanceService(jdbcTemplate, jobLeaseService, 2, 0, "archive");
+
+        //Act
+        service.maintain(LocalDate.of(2026, 10, 19));
+
+        //Assert
+        for (String table : PartitionMaintenanceService.TABLES) {
+            for (String month : List.of("2026-10-01", "2026-11-01", "2026-12-01")) {
+                verify(jdbcTemplate).queryForList(anyString(), eq(table), eq(Date.valueOf(month)));
+            }
+        }
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    //TEST-2 ONLY MIGRATED MONTHS PAST THE HORIZON ARE DETACHED
+    @Test
+    @DisplayName("Archives old partitions, keeps recent ones and unmigrated history")
+    void archivesPartitionsPastRetention() {
+
+        //Arrange
+        PartitionMaintenanceService service = new PartitionMaintenanceService(jdbcTemplate, jobLeaseService, 0, 24, "archive");
+        stubPartitions("transactions", partition("transactions_y2024m08"), partition("transactions_y2024m09"),
+                partition("transactions_y2024m10"));
+        stubPartitions("topup_transactions");
+        when(jdbcTemplate.queryForObject(contains("transactions_y2024m08"), eq(Boolean.class))).thenReturn(true);
+        when(jdbcTemplate.queryForObject(contains("transactions_y2024m09"), eq(Boolean.class))).thenReturn(false);
+
+        //Act
+        service.maintain(LocalDate.of(2026, 10, 19));
+
+        //Assert
+        verify(jdbcTemplate).execute("ALTER TABLE transactions DETACH PARTITION transactions_y2024m09 CONCURRENTLY");
+        verify(jdbcTemplate).execute("ALTER TABLE transactions_y2024m09 SET SCHEMA archive");
+        verify(jdbcTemplate, times(2)).execute(anyString());
+    }
+
+    //TEST-3 DROP INSTEAD OF ARCHIVE
+    @Test
+    @DisplayName("Drops detached partitions when configured to")
+    void dropsPartitionsPastRetention() {
+
+        //Arrange
+        PartitionMaintenanceService service = new PartitionMaintenanceService(jdbcTemplate, jobLeaseService, 0, 12, "drop");
+        stubPartitions("transactions");
+        stubPartitions("topup_transactions", partition("topup_transactions_y2025m09"));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class))).thenReturn(false);
+
+        //Act
+        service.maintain(LocalDate.of(2026, 10, 1));
+
+        //Assert
+        verify(jdbcTemplate).execute("ALTER TABLE topup_transactions DETACH PARTITION topup_transactions_y2025m09 CONCURRENTLY");
+        verify(jdbcTemplate).execute("DROP TABLE topup_transactions_y2025m09");
+    }
+
+    //TEST-5 AN INTERRUPTED CONCURRENT DETACH IS FINALIZED
+    @Test
+    @DisplayName("Finalizes a partition left pending detach")
+    void finalizesPendingDetach() {
+
+        //Arrange
+        PartitionMaintenanceService service = new PartitionMaintenanceService(jdbcTemplate, jobLeaseService, 0, 12, "drop");
+        stubPartitions("transactions", new PartitionMaintenanceService.Partition("transactions_y2025m01", true));
+        stubPartitions("topup_transactions");
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class))).thenReturn(false);
+
+        //Act
+        service.maintain(LocalDate.of(2026, 10, 1));
+
+        //Assert
+        verify(jdbcTemplate).execute("ALTER TABLE transactions DETACH PARTITION transactions_y2025m01 FINALIZE");
+        verify(jdbcTemplate).execute("DROP TABLE transactions_y2025m01");
+    }
+
+    //TEST-4 PARTITION NAMES
+    @Test
+    @DisplayName("Reads the month from partition names of its own table only")
+    void monthOf() {
+
+        //Act & Assert
+        assertEquals(LocalDate.of(2025, 3, 1), PartitionMaintenanceService.monthOf("transactions", "transactions_y2025m03"));
+        assertNull(PartitionMaintenanceService.monthOf("transactions", "topup_transactions_y2025m03"));
+        assertNull(PartitionMaintenanceService.monthOf("transactions", "transactions_old"));
+    }
+
+    //TEST-6 THE STARTUP RUN DOES NOT SLEEP THE JITTER
+    @Test
+    @DisplayName("Startup maintenance takes the lease without the jitter")
+    @SuppressWarnings("unchecked")
+    void startupSkipsJitter() {
+
+        //Arrange
+        PartitionMaintenanceService service = new PartitionMaintenanceService(jdbcTemplate, jobLeaseService, 3, 24, "archive");
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+
+        //Act
+        service.maintainOnStartup();
+
+        //Assert
+        verify(jobLeaseService).runExclusiveNow(eq("partition-maintenance"), any());
+        verify(jobLeaseService, never()).runExclusive(anyString(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubPartitions(String table, PartitionMaintenanceService.Partition... partitions) {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(table))).thenReturn(List.of(partitions));
+    }
+
+    private static PartitionMaintenanceService.Partition partition(String name) {
+        return new PartitionMaintenanceService.Partition(name, false);
+    }
+}
@@ -0,0 +1,162 @@
+package net.otgon.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.otgon.backend.config.SecurityConfig;
+import net.otgon.backend.exception.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Unit tests for Password Hashing Service")
+@ActiveProfiles("test")
+public class PasswordHashingTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashingService passwordHashingService;
+
+    @AfterEach
+    void tearDown() {
+        if (passwordHashingService != null) {
+            passwordHashingService.shutdown();
+        }
+    }
+
+    //TEST-1 ENCODE AND MATCH ON THE DEDICATED POOL
+    @Test
+    @DisplayName("Success path: encode and verify")
+    void encodeAndMatches() {
+
+        //Arrange
+        passwordHashingService = new PasswordHashingService(
+                new BCryptPasswordEncoder(4), new AuthMetrics(meterRegistry), 1, 4, 5000);
+
+        //Act
+        String hash = passwordHashingService.encode("alice", "password");
+
+        //Assert
+        assertTrue(passwordHashingService.matches("alice", "password", hash));
+        assertFalse(passwordHashingService.matches("alice", "wrong", hash));
+        assertEquals(3, meterRegistry.get("auth.password.hash").timer().count());
+        assertEquals(3, meterRegistry.get("auth.password.queue.wait").timer().count());
+    }
+
+    //TEST-2 SATURATED POOL SHEDS LOAD INSTEAD OF QUEUEING
+    @Test
+    @DisplayName("Fail: saturated pool rejects fast")
+    void saturatedPoolRejects() throws Exception {
+
+        //Arrange: one thread, one queue slot, encoder blocked until released
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                running.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash";
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return true;
+            }
+        };
+        passwordHashingService = new PasswordHashingService(
+                blocking, new AuthMetrics(meterRegistry), 1, 1, 5000);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(
+                () -> passwordHashingService.encode("alice", "p1"));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(
+                () -> passwordHashingService.encode("bob", "p2"));
+        waitForQueued(1);
+
+        //Act & Assert
+        ServiceBusyException ex = assertThrows(ServiceBusyException.class,
+                () -> passwordHashingService.encode("carol", "p3"));
+        assertTrue(ex.getRetryAfterSeconds() >= 1);
+        assertEquals(1.0, meterRegistry.get("auth.password.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("hash", first.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    //TEST-3 WAITING LONGER THAN THE TIMEOUT GIVES UP
+    @Test
+    @DisplayName("Fail: hash exceeding timeout is abandoned")
+    void timeoutAbandonsHash() {
+
+        //Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash";
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return true;
+            }
+        };
+        passwordHashingService = new PasswordHashingService(
+                slow, new AuthMetrics(meterRegistry), 1, 1, 50);
+
+        //Act & Assert
+        assertThrows(ServiceBusyException.class, () -> passwordHashingService.encode("alice", "p1"));
+        release.countDown();
+    }
+
+    //TEST-4 HASHES CARRY THE ENCODER ID; CHEAPER COSTS AND LEGACY ROWS NEED A REHASH
+    @Test
+    @DisplayName("Rehash when cost is lower or encoder id is missing, never downgrade")
+    void needsRehashOnCostOrIdChange() {
+
+        //Arrange
+        PasswordEncoder current = new SecurityConfig().passwordEncoder(5, 250, 10, 14);
+        PasswordEncoder weaker = new SecurityConfig().passwordEncoder(4, 250, 10, 14);
+        PasswordEncoder stronger = new SecurityConfig().passwordEncoder(6, 250, 10, 14);
+        passwordHashingService = new PasswordHashingService(
+                current, new AuthMetrics(meterRegistry), 1, 4, 5000);
+        String legacy = new BCryptPasswordEncoder(5).encode("password");
+
+        //Act
+        String hash = passwordHashingService.encode("alice", "password");
+
+        //Assert
+        assertTrue(hash.startsWith("{bcrypt}$2a$05$"));
+        assertFalse(passwordHashingService.needsRehash(hash));
+        assertTrue(passwordHashingService.needsRehash(weaker.encode("password")));
+        // Made by a node that calibrated higher: left as it is
+        assertFalse(passwordHashingService.needsRehash(stronger.encode("password")));
+        assertTrue(passwordHashingService.needsRehash(legacy));
+        assertTrue(passwordHashingService.matches("alice", "password", legacy));
+    }
+
+    private void waitForQueued(double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("auth.password.pool.queued").gauge().value() < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
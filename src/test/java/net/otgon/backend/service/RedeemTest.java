@@ -7,16 +7,19 @@ import net.otgon.backend.dto.RedeemResult;
 import net.otgon.backend.dto.TransactionPayload;
 import net.otgon.backend.entity.Card;
 import net.otgon.backend.entity.Device;
+import net.otgon.backend.entity.RedeemedTxId;
 import net.otgon.backend.entity.Transaction;
 import net.otgon.backend.entity.User;
 import net.otgon.backend.exception.ValidationException;
 import net.otgon.backend.repository.CardRepo;
 import net.otgon.backend.repository.DeviceRepo;
+import net.otgon.backend.repository.RedeemedTxIdRepo;
 import net.otgon.backend.repository.TransactionRepo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -24,6 +27,8 @@ import org.springframework.test.context.ActiveProfiles;
 
 import java.nio.charset.StandardCharsets;
 import java.security.*;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.Base64;
 import java.util.Optional;
 import java.util.UUID;
@@ -44,9 +49,19 @@ public class RedeemTest {
     @Mock
     private TransactionRepo transactionRepo;
     @Mock
+    private RedeemedTxIdRepo redeemedTxIdRepo;
+    @Mock
     private ObjectMapper objectMapper;
     @Mock
     private CryptoService cryptoService;
+    @Mock
+    private UserInfoCache userInfoCache;
+    @Mock
+    private LedgerService ledgerService;
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+    @Mock
+    private JobLeaseService jobLeaseService;
     @InjectMocks
     private RedeemService redeemService;
 
@@ -85,7 +100,7 @@ public class RedeemTest {
         Card card = user.getCard();
 
         Device device = new Device();
-        device.setId("device.id");
+        device.setId(UUID.randomUUID().toString());
         device.setPublicKey(publicKeyBase64);
         device.setUser(user);
 
@@ -104,7 +119,8 @@ public class RedeemTest {
         when(cryptoService.verify(any(), any(), any())).thenReturn(true);
         when(objectMapper.readValue(anyString(), eq(TransactionPayload.class)))
                 .thenReturn(transactionPayload);
-        when(transactionRepo.existsByTxId(anyString())).thenReturn(false);
+        when(ledgerService.lockCardOf(user.getId())).thenReturn(Optional.of(card));
+        when(redeemedTxIdRepo.existsById(anyString())).thenReturn(false);
 
         //Act
         RedeemResult result = redeemService.redeem(request);
@@ -115,6 +131,14 @@ public class RedeemTest {
         assertEquals(fare, result.getFareDeducted());
         verify(cardRepo, times(1)).save(card);
         verify(transactionRepo, times(1)).save(any(Transaction.class));
+        verify(cacheInvalidationBus).cardChangedAfterCommit(card.getId(), user.getId());
+
+        // tx_id is held until its payload would fail the 24h check, plus an hour of slack
+        ArgumentCaptor<RedeemedTxId> redeemed = ArgumentCaptor.forClass(RedeemedTxId.class);
+        verify(redeemedTxIdRepo).save(redeemed.capture());
+        assertEquals(txId, redeemed.getValue().getTxId());
+        assertEquals(Instant.ofEpochMilli(timestamp).plusSeconds(25 * 60 * 60),
+                redeemed.getValue().getExpiresAt().atZone(ZoneId.systemDefault()).toInstant());
     }
 
     //TEST-2 FAIL DEVICE NOT FOUND
@@ -123,7 +147,7 @@ public class RedeemTest {
     void redeemDeviceNotFound() throws Exception{
 
         //Arrange
-        String notExistingId = "notExistingId";
+        String notExistingId = UUID.randomUUID().toString();
 
         RedeemDeviceRequestDto request = new RedeemDeviceRequestDto();
         request.setDeviceId(notExistingId);
@@ -207,7 +231,7 @@ public class RedeemTest {
         User user = createUserByUsername("alice");
         Card card = user.getCard();
         Device device = new Device();
-        device.setId("device.id");
+        device.setId(UUID.randomUUID().toString());
         device.setPublicKey(publicKeyBase64);
         device.setUser(user);
 
@@ -221,7 +245,8 @@ public class RedeemTest {
         byte[] signatureBytes = signPayload(payloadBytes);
 
         String signatureBase64 = Base64.getEncoder().encodeToString(signatureBytes);
-        when(transactionRepo.existsByTxId(txId)).thenReturn(true);
+        when(ledgerService.lockCardOf(user.getId())).thenReturn(Optional.of(card));
+        when(redeemedTxIdRepo.existsById(txId)).thenReturn(true);
 
         //Act
         RedeemResult response = redeemService
@@ -231,6 +256,7 @@ public class RedeemTest {
         assertNotNull(response);
         assertEquals(fare, response.getFareDeducted());
         assertEquals("Already processed", response.getStatus());
+        assertEquals(card.getBalance(), response.getNewBalance());
 
         verify(transactionRepo, never()).save(any(Transaction.class));
     }
@@ -245,7 +271,7 @@ public class RedeemTest {
         Card card = user.getCard();
         card.setBalance(fare - 1);
         Device device = new Device();
-        device.setId("device.id");
+        device.setId(UUID.randomUUID().toString());
         device.setPublicKey(publicKeyBase64);
         device.setUser(user);
 
@@ -259,7 +285,8 @@ public class RedeemTest {
         byte[] signatureBytes = signPayload(payloadBytes);
 
         String signatureBase64 = Base64.getEncoder().encodeToString(signatureBytes);
-        when(transactionRepo.existsByTxId(txId)).thenReturn(false);
+        when(ledgerService.lockCardOf(user.getId())).thenReturn(Optional.of(card));
+        when(redeemedTxIdRepo.existsById(txId)).thenReturn(false);
         //Act
         RedeemResult response = redeemService
                 .processTransaction(device, transactionPayload, signatureBase64);
@@ -270,6 +297,8 @@ public class RedeemTest {
         assertEquals("Insufficient funds", response.getStatus());
         verify(cardRepo, never()).save(any(Card.class));
         verify(transactionRepo, never()).save(any(Transaction.class));
+        // Not redeemed, so the same tx_id can be retried after a top-up
+        verify(redeemedTxIdRepo, never()).save(any(RedeemedTxId.class));
     }
 
     //TEST-8 FAIL INVALID SIGNATURE
@@ -279,7 +308,7 @@ public class RedeemTest {
 
         //Arrange
         Device device = new Device();
-        device.setId("device.id");
+        device.setId(UUID.randomUUID().toString());
         device.setPublicKey(publicKeyBase64);
 
         //String signature
@@ -325,6 +354,7 @@ public class RedeemTest {
 
     User createUserByUsername(String username){
         User user = new User();
+        user.setId(UUID.randomUUID().toString());
         user.setUsername(username);
         user.setPassword("password");
         user.setEmail("email");
@@ -0,0 +1,227 @@
+package net.otgon.backend.service;
+
+import net.otgon.backend.dto.AuthTokens;
+import net.otgon.backend.entity.RefreshToken;
+import net.otgon.backend.entity.User;
+import net.otgon.backend.exception.InvalidRefreshTokenException;
+import net.otgon.backend.repository.RefreshTokenRepo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Unit tests for Refresh Token Service")
+@ActiveProfiles("test")
+public class RefreshTokenTest {
+
+    @Mock
+    private RefreshTokenRepo refreshTokenRepo;
+    @Mock
+    private JwtService jwtService;
+    @Mock
+    private AuthMetrics authMetrics;
+    @Mock
+    private JobLeaseService jobLeaseService;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    //TEST-1 ISSUE STORES ONLY THE HASH
+    @Test
+    @DisplayName("Issue stores hash, not raw token")
+    void issueStoresHash() {
+
+        //Arrange
+        User user = createUser("alice");
+
+        //Act
+        String raw = refreshTokenService.issue(user);
+
+        //Assert
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepo).save(captor.capture());
+        RefreshToken saved = captor.getValue();
+        assertNotNull(raw);
+        assertNotEquals(raw, saved.getTokenHash());
+        assertEquals(RefreshTokenService.hash(raw), saved.getTokenHash());
+        assertEquals(user, saved.getUser());
+        assertNotNull(saved.getFamilyId());
+    }
+
+    //TEST-2 ROTATE SUCCESS PATH
+    @Test
+    @DisplayName("Rotate revokes old token and issues a new pair in the same family")
+    void rotateSuccessPath() {
+
+        //Arrange
+        User user = createUser("alice");
+        RefreshToken current = createToken(user, "raw", LocalDateTime.now().plusDays(1));
+        when(refreshTokenRepo.findByTokenHash(RefreshTokenService.hash("raw"))).thenReturn(Optional.of(current));
+        when(refreshTokenRepo.revokeIfActive(eq(current.getId()), any(LocalDateTime.class))).thenReturn(1);
+        when(jwtService.generateToken(user)).thenReturn("access.token");
+        when(jwtService.getExpirationSeconds()).thenReturn(3600L);
+
+        //Act
+        AuthTokens tokens = refreshTokenService.rotate("raw");
+
+        //Assert
+        assertEquals("access.token", tokens.getAccessToken());
+        assertNotEquals("raw", tokens.getRefreshToken());
+        assertEquals(3600L, tokens.getExpiresIn());
+        verify(refreshTokenRepo).revokeIfActive(eq(current.getId()), any(LocalDateTime.class));
+
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepo).save(captor.capture());
+        RefreshToken issued = captor.getValue();
+        assertEquals(current.getFamilyId(), issued.getFamilyId());
+        verify(authMetrics).recordRefresh("alice");
+    }
+
+    //TEST-3 REUSE OF A ROTATED TOKEN REVOKES THE FAMILY
+    @Test
+    @DisplayName("Reusing a rotated token revokes the whole family")
+    void rotateReuseDetected() {
+
+        //Arrange
+        User user = createUser("alice");
+        RefreshToken current = createToken(user, "raw", LocalDateTime.now().plusDays(1));
+        current.setRevokedAt(LocalDateTime.now().minusMinutes(5));
+        when(refreshTokenRepo.findByTokenHash(RefreshTokenService.hash("raw"))).thenReturn(Optional.of(current));
+
+        //Act & Assert
+        InvalidRefreshTokenException ex = assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate("raw"));
+        assertEquals("Refresh token reuse detected", ex.getMessage());
+        verify(refreshTokenRepo).revokeFamily(eq(current.getFamilyId()), any(LocalDateTime.class));
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    //TEST-4 EXPIRED TOKEN
+    @Test
+    @DisplayName("Expired token is rejected")
+    void rotateExpired() {
+
+        //Arrange
+        User user = createUser("alice");
+        RefreshToken current = createToken(user, "raw", LocalDateTime.now().minusMinutes(1));
+        when(refreshTokenRepo.findByTokenHash(RefreshTokenService.hash("raw"))).thenReturn(Optional.of(current));
+
+        //Act & Assert
+        InvalidRefreshTokenException ex = assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate("raw"));
+        assertEquals("Refresh token expired", ex.getMessage());
+        verify(refreshTokenRepo, never()).save(any());
+    }
+
+    //TEST-5 UNKNOWN TOKEN
+    @Test
+    @DisplayName("Unknown token is rejected")
+    void rotateUnknown() {
+
+        //Arrange
+        when(refreshTokenRepo.findByTokenHash(anyString())).thenReturn(Optional.empty());
+
+        //Act & Assert
+        InvalidRefreshTokenException ex = assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate("nope"));
+        assertEquals("Invalid refresh token", ex.getMessage());
+    }
+
+    //TEST-6 A CONCURRENT ROTATION OF THE SAME TOKEN IS A RETRY WHILE THE FAMILY IS LIVE
+    @Test
+    @DisplayName("Rotating a token another request just rotated issues a new pair in the family")
+    void rotateLosesRaceToRetry() {
+
+        //Arrange: the token looked active, but the conditional revoke found it revoked
+        User user = createUser("alice");
+        RefreshToken current = createToken(user, "raw", LocalDateTime.now().plusDays(1));
+        when(refreshTokenRepo.findByTokenHash(RefreshTokenService.hash("raw"))).thenReturn(Optional.of(current));
+        when(refreshTokenRepo.revokeIfActive(eq(current.getId()), any(LocalDateTime.class))).thenReturn(0);
+        when(refreshTokenRepo.existsByFamilyIdAndRevokedAtIsNull(current.getFamilyId())).thenReturn(true);
+        when(jwtService.generateToken(user)).thenReturn("access.token");
+
+        //Act
+        AuthTokens tokens = refreshTokenService.rotate("raw");
+
+        //Assert
+        assertEquals("access.token", tokens.getAccessToken());
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepo).save(captor.capture());
+        assertEquals(current.getFamilyId(), captor.getValue().getFamilyId());
+        verify(refreshTokenRepo, never()).revokeFamily(anyString(), any(LocalDateTime.class));
+    }
+
+    //TEST-7 A RETRY AFTER THE FIRST ROTATION COMMITTED KEEPS THE RIDER LOGGED IN
+    @Test
+    @DisplayName("A token rotated seconds ago is retried, not treated as reuse")
+    void rotateRetryWithinGrace() {
+
+        //Arrange: the first response was lost, the app sends the old token again
+        User user = createUser("alice");
+        RefreshToken current = createToken(user, "raw", LocalDateTime.now().plusDays(1));
+        current.setRevokedAt(LocalDateTime.now().minusSeconds(5));
+        when(refreshTokenRepo.findByTokenHash(RefreshTokenService.hash("raw"))).thenReturn(Optional.of(current));
+        when(refreshTokenRepo.existsByFamilyIdAndRevokedAtIsNull(current.getFamilyId())).thenReturn(true);
+        when(jwtService.generateToken(user)).thenReturn("access.token");
+
+        //Act
+        AuthTokens tokens = refreshTokenService.rotate("raw");
+
+        //Assert
+        assertEquals("access.token", tokens.getAccessToken());
+        verify(refreshTokenRepo, never()).revokeIfActive(anyString(), any(LocalDateTime.class));
+        verify(refreshTokenRepo, never()).revokeFamily(anyString(), any(LocalDateTime.class));
+        verify(refreshTokenRepo).save(any(RefreshToken.class));
+    }
+
+    //TEST-8 A RECENTLY REVOKED TOKEN OF A LOGGED-OUT FAMILY IS STILL REUSE
+    @Test
+    @DisplayName("Within the grace period a revoked family gets no new pair")
+    void rotateWithinGraceAfterLogout() {
+
+        //Arrange
+        User user = createUser("alice");
+        RefreshToken current = createToken(user, "raw", LocalDateTime.now().plusDays(1));
+        current.setRevokedAt(LocalDateTime.now().minusSeconds(5));
+        when(refreshTokenRepo.findByTokenHash(RefreshTokenService.hash("raw"))).thenReturn(Optional.of(current));
+        when(refreshTokenRepo.existsByFamilyIdAndRevokedAtIsNull(current.getFamilyId())).thenReturn(false);
+
+        //Act & Assert
+        InvalidRefreshTokenException ex = assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate("raw"));
+        assertEquals("Refresh token reuse detected", ex.getMessage());
+        verify(refreshTokenRepo, never()).save(any());
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setId(UUID.randomUUID().toString());
+        user.setUsername(username);
+        return user;
+    }
+
+    private RefreshToken createToken(User user, String raw, LocalDateTime expiresAt) {
+        RefreshToken token = new RefreshToken();
+        token.setId(UUID.randomUUID().toString());
+        token.setTokenHash(RefreshTokenService.hash(raw));
+        token.setFamilyId(UUID.randomUUID().toString());
+        token.setUser(user);
+        token.setCreatedAt(LocalDateTime.now().minusDays(1));
+        token.setExpiresAt(expiresAt);
+        return token;
+    }
+}
@@ -1,21 +1,31 @@
 package net.otgon.backend.service;
 
+import net.otgon.backend.dto.HistoryCursor;
+import net.otgon.backend.dto.HistoryFilter;
+import net.otgon.backend.dto.SpendSummaryResponse;
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.dto.TransactionPageResponse;
 import net.otgon.backend.dto.TransactionResponseDto;
 import net.otgon.backend.entity.Card;
-import net.otgon.backend.entity.TopUpTransaction;
-import net.otgon.backend.entity.Transaction;
+import net.otgon.backend.entity.DailyRollup;
+import net.otgon.backend.entity.LedgerEntry;
 import net.otgon.backend.entity.User;
-import net.otgon.backend.repository.TopUpTransactionRepo;
-import net.otgon.backend.repository.TransactionRepo;
-import net.otgon.backend.repository.UserRepo;
+import net.otgon.backend.exception.ValidationException;
+import net.otgon.backend.repository.DailyRollupRepo;
+import net.otgon.backend.repository.LedgerEntryRepo;
+import net.otgon.backend.repository.LedgerSearchRepo;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -31,13 +41,19 @@ import static org.mockito.Mockito.*;
 public class TransactionTest {
 
     @Mock
-    private UserRepo userRepo;
+    private LedgerEntryRepo ledgerEntryRepo;
     @Mock
-    private TransactionRepo transactionRepo;
+    private LedgerService ledgerService;
     @Mock
-    private TopUpTransactionRepo topUpTransactionRepo;
+    private AccountResolver accountResolver;
     @Mock
-    private JwtService jwtService;
+    private HistoryCache historyCache;
+    @Mock
+    private DailyRollupRepo dailyRollupRepo;
+    @Mock
+    private LedgerSearchRepo ledgerSearchRepo;
+    @Spy
+    private ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofSeconds(5), 100);
 
     @InjectMocks
     private TransactionService transactionService;
@@ -53,19 +69,13 @@ public class TransactionTest {
         User user = createUserByUsername(username);
         Card card = user.getCard();
 
-        //Mock transaction
-        Transaction tx = new Transaction();
-        tx.setCard(card);
-        tx.setSyncedAt(LocalDateTime.of(2025, 1, 1, 10, 0));
-
-        TopUpTransaction ttx = new TopUpTransaction();
-        ttx.setCard(card);
-        ttx.setCreatedAt(LocalDateTime.of(2025, 6, 1, 10, 0));
+        LedgerEntry topUp = new LedgerEntry(card.getId(), 2, LedgerEntry.TOPUP, 5, 13,
+                "SUCCESS", "topup-1", LocalDateTime.of(2025, 6, 1, 10, 0));
+        LedgerEntry deduction = new LedgerEntry(card.getId(), 1, LedgerEntry.DEDUCT, -2, 8,
+                "SUCCESS", "tx-1", LocalDateTime.of(2025, 1, 1, 10, 0));
 
-        when(jwtService.extractUsername(token)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
-        when(transactionRepo.findByCardOrderBySyncedAtDesc(card)).thenReturn(List.of(tx));
-        when(topUpTransactionRepo.findByCardOrderByCreatedAtDesc(card)).thenReturn(List.of(ttx));
+        when(accountResolver.resolve(token)).thenReturn(new TokenIdentity(username, "user-1", card.getId()));
+        when(ledgerEntryRepo.findByCardIdOrderBySeqDesc(card.getId())).thenReturn(List.of(topUp, deduction));
 
         //Act
         List<TransactionResponseDto> allTransactions = transactionService.getAllUserTransactions(token);
@@ -74,12 +84,15 @@ public class TransactionTest {
         assertNotNull(allTransactions);
         assertEquals(2, allTransactions.size());
         assertEquals("TOPUP", allTransactions.get(0).getType());
+        assertEquals("topup-1", allTransactions.get(0).getId());
+        assertEquals(13, allTransactions.get(0).getBalanceAfter());
         assertEquals("DEDUCT", allTransactions.get(1).getType());
+        assertEquals(2, allTransactions.get(1).getAmount());
+        assertEquals(8, allTransactions.get(1).getBalanceAfter());
 
-        verify(transactionRepo, times(1)).findByCardOrderBySyncedAtDesc(card);
-        verify(topUpTransactionRepo, times(1)).findByCardOrderByCreatedAtDesc(card);
-        verify(jwtService, times(1)).extractUsername(token);
-        verify(userRepo, times(1)).findByUsername(username);
+        verify(ledgerEntryRepo, times(1)).findByCardIdOrderBySeqDesc(card.getId());
+        verify(ledgerService, never()).ensureBackfilled(anyString());
+        verify(accountResolver, times(1)).resolve(token);
     }
 
     //TEST-2 SUCCESS PATH WHERE USER HAS NO TRANSACTION HISTORY
@@ -93,10 +106,9 @@ public class TransactionTest {
         User user = createUserByUsername(username);
         Card card = user.getCard();
 
-        when(jwtService.extractUsername(token)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
-        when(transactionRepo.findByCardOrderBySyncedAtDesc(card)).thenReturn(List.of());
-        when(topUpTransactionRepo.findByCardOrderByCreatedAtDesc(card)).thenReturn(List.of());
+        when(accountResolver.resolve(token)).thenReturn(new TokenIdentity(username, "user-1", card.getId()));
+        when(ledgerEntryRepo.findByCardIdOrderBySeqDesc(card.getId())).thenReturn(List.of());
+        when(ledgerService.ensureBackfilled(card.getId())).thenReturn(false);
 
         //Act
         List<TransactionResponseDto> allTransactions = transactionService.getAllUserTransactions(token);
@@ -105,10 +117,30 @@ public class TransactionTest {
         assertNotNull(allTransactions);
         assertTrue(allTransactions.isEmpty());
 
-        verify(transactionRepo, times(1)).findByCardOrderBySyncedAtDesc(card);
-        verify(topUpTransactionRepo, times(1)).findByCardOrderByCreatedAtDesc(card);
-        verify(jwtService, times(1)).extractUsername(token);
-        verify(userRepo, times(1)).findByUsername(username);
+        verify(ledgerEntryRepo, times(1)).findByCardIdOrderBySeqDesc(card.getId());
+        verify(accountResolver, times(1)).resolve(token);
+    }
+
+    //TEST-2B CARD WITH ONLY LEGACY HISTORY IS MIGRATED ON FIRST READ
+    @Test
+    @DisplayName("Legacy history is backfilled and re-read")
+    void getAllUserTransactionsBackfillsLegacyHistory(){
+
+        //Arrange
+        when(accountResolver.resolve("token")).thenReturn(new TokenIdentity("alice", "user-1", "card-1"));
+        LedgerEntry migrated = new LedgerEntry("card-1", 1, LedgerEntry.TOPUP, 10, 10,
+                "SUCCESS", "topup-1", LocalDateTime.of(2025, 1, 1, 10, 0));
+        when(ledgerEntryRepo.findByCardIdOrderBySeqDesc("card-1"))
+                .thenReturn(List.of())
+                .thenReturn(List.of(migrated));
+        when(ledgerService.ensureBackfilled("card-1")).thenReturn(true);
+
+        //Act
+        List<TransactionResponseDto> allTransactions = transactionService.getAllUserTransactions("token");
+
+        //Assert
+        assertEquals(1, allTransactions.size());
+        verify(ledgerEntryRepo, times(2)).findByCardIdOrderBySeqDesc("card-1");
     }
 
     //TEST-3 FAIL: INVALID TOKEN THROWS EXCEPTION
@@ -118,9 +150,8 @@ public class TransactionTest {
 
         //Arrange
         String invalidToken = "invalid.token";
-        String username = "alice";
 
-        when(jwtService.extractUsername(invalidToken))
+        when(accountResolver.resolve(invalidToken))
                 .thenThrow(new RuntimeException("Invalid token"));
 
         //Act & Assert
@@ -129,8 +160,8 @@ public class TransactionTest {
                 () -> transactionService.getAllUserTransactions(invalidToken),
                 "Expected RuntimeEx when invalid token" );
         assertEquals("Invalid token", ex.getMessage());
-        verify(jwtService, times(1)).extractUsername(invalidToken);
-        verify(userRepo, never()).findByUsername(username);
+        verify(accountResolver, times(1)).resolve(invalidToken);
+        verify(ledgerEntryRepo, never()).findByCardIdOrderBySeqDesc(anyString());
     }
 
     //TEST-4 FAIL: USER NOT FOUND
@@ -140,10 +171,8 @@ public class TransactionTest {
 
         //Arrange
         String token = "token";
-        String username = "alice";
 
-        when(jwtService.extractUsername(token)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenReturn(Optional.empty());
+        when(accountResolver.resolve(token)).thenThrow(new RuntimeException("User not found"));
 
         //Act & Assert
         RuntimeException ex = assertThrows(
@@ -161,12 +190,8 @@ public class TransactionTest {
 
         //Arrange
         String token = "token";
-        String username = "alice";
-        User user = createUserByUsername(username);
-        user.setCard(null);
 
-        when(jwtService.extractUsername(token)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
+        when(accountResolver.resolve(token)).thenThrow(new RuntimeException("Card not found for user"));
 
         //Act & Assert
         RuntimeException ex = assertThrows(
@@ -174,10 +199,155 @@ public class TransactionTest {
                 () -> transactionService.getAllUserTransactions(token),
                 "Expected RuntimeEx when card not found");
         assertEquals("Card not found for user", ex.getMessage());
-        verify(jwtService, times(1)).extractUsername(token);
-        verify(userRepo, times(1)).findByUsername(username);
-        verify(topUpTransactionRepo, never()).findByCardOrderByCreatedAtDesc(any());
+        verify(accountResolver, times(1)).resolve(token);
+        verify(ledgerEntryRepo, never()).findByCardIdOrderBySeqDesc(any());
+
+    }
+
+    //TEST-P1 FULL PAGE RETURNS A CURSOR POINTING AT ITS LAST ENTRY
+    @Test
+    @DisplayName("Full page returns next cursor")
+    void getTransactionPageFull(){
+
+        //Arrange
+        LocalDateTime t1 = LocalDateTime.of(2025, 1, 2, 10, 0);
+        LocalDateTime t2 = LocalDateTime.of(2025, 1, 1, 10, 0);
+        when(accountResolver.resolve("token")).thenReturn(new TokenIdentity("alice", "user-1", "card-1"));
+        when(ledgerEntryRepo.findByCardIdAndSeqLessThanOrderBySeqDesc(eq("card-1"), eq(Long.MAX_VALUE), any(Pageable.class)))
+                .thenReturn(List.of(
+                        new LedgerEntry("card-1", 7, LedgerEntry.TOPUP, 5, 10, "SUCCESS", "id-1", t1),
+                        new LedgerEntry("card-1", 6, LedgerEntry.DEDUCT, -2, 5, "SUCCESS", "id-2", t2)));
+
+        //Act
+        TransactionPageResponse page = transactionService.getTransactionPage("token", null, 2);
+
+        //Assert
+        assertEquals(2, page.getItems().size());
+        assertNotNull(page.getNextCursor());
+        assertEquals(6, HistoryCursor.decode(page.getNextCursor()).getSeq());
+    }
+
+    //TEST-P2 SHORT PAGE IS THE LAST ONE; CURSOR IS PASSED THROUGH
+    @Test
+    @DisplayName("Short page has no next cursor")
+    void getTransactionPageLast(){
+
+        //Arrange
+        String cursor = new HistoryCursor(6).encode();
+        when(accountResolver.resolve("token")).thenReturn(new TokenIdentity("alice", "user-1", "card-1"));
+        when(ledgerEntryRepo.findByCardIdAndSeqLessThanOrderBySeqDesc(eq("card-1"), eq(6L), any(Pageable.class)))
+                .thenReturn(List.of(new LedgerEntry("card-1", 5, LedgerEntry.DEDUCT, -2, 7, "SUCCESS", "id-3",
+                        LocalDateTime.of(2024, 12, 31, 10, 0))));
+
+        //Act
+        TransactionPageResponse page = transactionService.getTransactionPage("token", cursor, 2);
+
+        //Assert
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    //TEST-P3 TAMPERED CURSOR
+    @Test
+    @DisplayName("Invalid cursor is rejected before any query")
+    void getTransactionPageInvalidCursor(){
+
+        assertThrows(ValidationException.class,
+                () -> transactionService.getTransactionPage("token", "not-a-cursor!", 2));
+        verifyNoInteractions(ledgerEntryRepo, accountResolver);
+    }
+
+    //TEST-C1 CACHED WINDOW ANSWERS WITHOUT A QUERY
+    @Test
+    @DisplayName("Page served from the history cache skips the repository")
+    void getTransactionPageFromCache(){
+
+        //Arrange
+        when(accountResolver.resolve("token")).thenReturn(new TokenIdentity("alice", "user-1", "card-1"));
+        when(historyCache.newest(eq("card-1"), eq(Long.MAX_VALUE), eq(1), any())).thenReturn(Optional.of(List.of(
+                new LedgerEntry("card-1", 3, LedgerEntry.TOPUP, 5, 15, "SUCCESS", "id-3",
+                        LocalDateTime.of(2025, 1, 3, 10, 0)))));
+
+        //Act
+        TransactionPageResponse page = transactionService.getTransactionPage("token", null, 1);
+
+        //Assert
+        assertEquals("id-3", page.getItems().get(0).getId());
+        assertEquals(3, HistoryCursor.decode(page.getNextCursor()).getSeq());
+        verifyNoInteractions(ledgerEntryRepo, ledgerService);
+    }
+
+    //TEST-F1 FILTERED SEARCH PAGES BY THE SEQ OF ITS LAST MATCH
+    @Test
+    @DisplayName("Filtered search returns a page with next cursor")
+    void searchTransactionsFullPage(){
+
+        //Arrange
+        HistoryFilter filter = new HistoryFilter("DEDUCT", null, null, 1.0, 5.0, null);
+        String cursor = new HistoryCursor(40).encode();
+        when(accountResolver.resolve("token")).thenReturn(new TokenIdentity("alice", "user-1", "card-1"));
+        when(ledgerSearchRepo.search("card-1", filter, 40, 1)).thenReturn(List.of(new LedgerSearchRepo.Row(31,
+                new TransactionResponseDto("id-31", "DEDUCT", 2, 8, LocalDateTime.of(2025, 1, 1, 10, 0), "SUCCESS"))));
+
+        //Act
+        TransactionPageResponse page = transactionService.searchTransactions("token", filter, cursor, 1);
+
+        //Assert
+        assertEquals("id-31", page.getItems().get(0).getId());
+        assertEquals(31, HistoryCursor.decode(page.getNextCursor()).getSeq());
+        verifyNoInteractions(historyCache, ledgerService);
+    }
+
+    //TEST-F2 INVALID FILTER
+    @Test
+    @DisplayName("Inconsistent amount range is rejected before any query")
+    void searchTransactionsInvalidFilter(){
+
+        HistoryFilter filter = new HistoryFilter(null, null, null, 10.0, 5.0, null);
+
+        assertThrows(ValidationException.class,
+                () -> transactionService.searchTransactions("token", filter, null, 20));
+        verifyNoInteractions(ledgerSearchRepo, accountResolver);
+    }
+
+    //TEST-S1 SUMMARY ADDS UP THE DAILY ROLLUPS
+    @Test
+    @DisplayName("Summary totals come from the rollup rows")
+    void getSummaryTotals(){
+
+        //Arrange
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 3, 7);
+        DailyRollup monday = new DailyRollup("card-1", LocalDate.of(2025, 3, 3));
+        monday.add(LedgerEntry.DEDUCT, -2);
+        monday.add(LedgerEntry.DEDUCT, -2);
+        DailyRollup friday = new DailyRollup("card-1", LocalDate.of(2025, 3, 7));
+        friday.add(LedgerEntry.TOPUP, 20);
+        friday.add(LedgerEntry.DEDUCT, -1.5);
+        when(accountResolver.resolve("token")).thenReturn(new TokenIdentity("alice", "user-1", "card-1"));
+        when(dailyRollupRepo.findByIdCardIdAndIdDayBetweenOrderByIdDayAsc("card-1", from, to))
+                .thenReturn(List.of(monday, friday));
+
+        //Act
+        SpendSummaryResponse summary = transactionService.getSummary("token", from, to);
+
+        //Assert
+        assertEquals(5.5, summary.getSpent());
+        assertEquals(3, summary.getTrips());
+        assertEquals(20, summary.getToppedUp());
+        assertEquals(1, summary.getTopUps());
+        assertEquals(2, summary.getDays().size());
+        verifyNoInteractions(ledgerEntryRepo);
+    }
+
+    //TEST-S2 INVALID RANGE
+    @Test
+    @DisplayName("Summary rejects from after to")
+    void getSummaryInvalidRange(){
 
+        assertThrows(ValidationException.class, () -> transactionService.getSummary("token",
+                LocalDate.of(2025, 3, 8), LocalDate.of(2025, 3, 1)));
+        verifyNoInteractions(accountResolver, dailyRollupRepo);
     }
 
     User createUserByUsername(String username){
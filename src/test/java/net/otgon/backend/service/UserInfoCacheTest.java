@@ -0,0 +1,96 @@
+package net.otgon.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.otgon.backend.dto.UserInfoView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Unit tests for User Info Cache")
+@ActiveProfiles("test")
+public class UserInfoCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private UserInfoCache userInfoCache;
+
+    @BeforeEach
+    void setUp() {
+        userInfoCache = new UserInfoCache(meterRegistry, 100, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    //TEST-1 SECOND READ IS A HIT
+    @Test
+    @DisplayName("Second read is served from the cache")
+    void secondReadHits() {
+
+        //Act
+        UserInfoView first = userInfoCache.get("user-1", this::load);
+        UserInfoView second = userInfoCache.get("user-1", this::load);
+
+        //Assert
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "userinfo").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    //TEST-2 EVICTION OUTSIDE A TRANSACTION IS IMMEDIATE
+    @Test
+    @DisplayName("Evict without a transaction reloads on next read")
+    void evictWithoutTransaction() {
+
+        //Arrange
+        userInfoCache.get("user-1", this::load);
+
+        //Act
+        userInfoCache.evictAfterCommit("user-1");
+        userInfoCache.get("user-1", this::load);
+
+        //Assert
+        assertEquals(2, loads.get());
+    }
+
+    //TEST-3 EVICTION INSIDE A TRANSACTION WAITS FOR COMMIT
+    @Test
+    @DisplayName("Evict inside a transaction happens only after commit")
+    void evictWaitsForCommit() {
+
+        //Arrange
+        userInfoCache.get("user-1", this::load);
+        TransactionSynchronizationManager.initSynchronization();
+
+        //Act
+        userInfoCache.evictAfterCommit("user-1");
+        userInfoCache.get("user-1", this::load);
+        int loadsBeforeCommit = loads.get();
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCommit();
+        }
+        userInfoCache.get("user-1", this::load);
+
+        //Assert
+        assertEquals(1, loadsBeforeCommit);
+        assertEquals(2, loads.get());
+    }
+
+    private UserInfoView load(String userId) {
+        loads.incrementAndGet();
+        return new UserInfoView("alice", "alice@test.com", "card-1", 10.0);
+    }
+}
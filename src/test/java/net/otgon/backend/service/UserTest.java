@@ -1,10 +1,15 @@
 package net.otgon.backend.service;
 
+import net.otgon.backend.dto.AuthTokens;
 import net.otgon.backend.dto.DeviceRegisterRequest;
 import net.otgon.backend.dto.DeviceRegisterResponse;
+import net.otgon.backend.dto.TokenIdentity;
+import net.otgon.backend.dto.UserInfoView;
 import net.otgon.backend.entity.Card;
 import net.otgon.backend.entity.Device;
 import net.otgon.backend.entity.User;
+import net.otgon.backend.exception.InvalidTokenException;
+import net.otgon.backend.exception.TooManyRequestsException;
 import net.otgon.backend.repository.DeviceRepo;
 import net.otgon.backend.repository.UserRepo;
 import org.junit.jupiter.api.DisplayName;
@@ -14,12 +19,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 
-import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -40,7 +44,19 @@ public class UserTest {
     JwtService jwtService;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Mock
+    RefreshTokenService refreshTokenService;
+
+    @Mock
+    LoginThrottle loginThrottle;
+
+    @Mock
+    UserInfoCache userInfoCache;
+
+    @Mock
+    CacheInvalidationBus cacheInvalidationBus;
 
     @InjectMocks
     UserService userService;
@@ -58,16 +74,18 @@ public class UserTest {
 
         when(userRepo.findByUsername(username)).thenReturn(Optional.empty());
         when(userRepo.findByEmail(email)).thenReturn(Optional.empty());
-        when(passwordEncoder.encode(password)).thenReturn(hashedPassword);
+        when(passwordHashingService.encode(username, password)).thenReturn(hashedPassword);
         when(userRepo.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(jwtService.generateToken(username)).thenReturn("generated.token");
+        when(jwtService.generateToken(any(User.class))).thenReturn("generated.token");
+        when(refreshTokenService.issue(any(User.class))).thenReturn("refresh.token");
 
         //Act
-        String token = userService.register(username, password, email);
+        AuthTokens tokens = userService.register(username, password, email);
 
         //Assert
-        assertNotNull(token);
-        assertEquals("generated.token", token);
+        assertNotNull(tokens);
+        assertEquals("generated.token", tokens.getAccessToken());
+        assertEquals("refresh.token", tokens.getRefreshToken());
 
         verify(userRepo, times(1)).findByUsername(username);
         verify(userRepo, times(1)).findByEmail(email);
@@ -83,7 +101,7 @@ public class UserTest {
         assertNotNull(savedUser.getCard());
         assertEquals(10, savedUser.getCard().getBalance());
 
-        verify(passwordEncoder, times(1)).encode(password);
+        verify(passwordHashingService, times(1)).encode(username, password);
     }
 
     //TEST-2 FAIL: USERNAME ALREADY EXISTS
@@ -113,7 +131,7 @@ public class UserTest {
         verify(userRepo, times(1)).findByUsername(username);
         verify(userRepo, never()).save(any(User.class));
 
-        verify(passwordEncoder, never()).encode(anyString());
+        verify(passwordHashingService, never()).encode(anyString(), anyString());
     }
 
     //TEST-3 FAIL: EMAIL ALREADY EXISTS
@@ -140,7 +158,7 @@ public class UserTest {
 
         assertEquals("Email already registered", exception.getMessage());
         verify(userRepo, never()).save(any(User.class));
-        verify(passwordEncoder, never()).encode(anyString());
+        verify(passwordHashingService, never()).encode(anyString(), anyString());
     }
 
     //TEST-4 LOG IN SUCCESS WITH CORRECT PASSWORD
@@ -158,19 +176,49 @@ public class UserTest {
         existingUser.setPassword("correctHashedPassword");
 
         when(userRepo.findByUsername(username)).thenReturn(Optional.of(existingUser));
-        when(passwordEncoder.matches(password, existingUser.getPassword())).thenReturn(true);
-        when(jwtService.generateToken(username)).thenReturn("generated.token");
+        when(passwordHashingService.matches(username, password, existingUser.getPassword())).thenReturn(true);
+        when(jwtService.generateToken(existingUser)).thenReturn("generated.token");
+        when(refreshTokenService.issue(existingUser)).thenReturn("refresh.token");
 
         //Act
-        String token = userService.loginWithPassword(username, password);
+        AuthTokens tokens = userService.loginWithPassword(username, password);
 
         //Assert
-        assertNotNull(token);
-        assertEquals("generated.token", token);
+        assertNotNull(tokens);
+        assertEquals("generated.token", tokens.getAccessToken());
+        assertEquals("refresh.token", tokens.getRefreshToken());
 
         verify(userRepo, times(1)).findByUsername(username);
-        verify(passwordEncoder, times(1)).matches(password,  existingUser.getPassword());
-        verify(jwtService, times(1)).generateToken(username);
+        verify(passwordHashingService, times(1)).matches(username, password, existingUser.getPassword());
+        verify(jwtService, times(1)).generateToken(existingUser);
+        verify(loginThrottle, times(1)).recordSuccess(username, null);
+    }
+
+    //TEST-4b SUCCESS: LOG IN REHASHES A PASSWORD STORED WITH OLD SETTINGS
+    @Test
+    @DisplayName("Success path log in with rehash")
+    void loginRehashesOutdatedPassword() {
+
+        //Arrange
+        String username = "alice";
+        String password = "password";
+
+        User existingUser = new User();
+        existingUser.setUsername(username);
+        existingUser.setPassword("$2a$10$legacyHash");
+
+        when(userRepo.findByUsername(username)).thenReturn(Optional.of(existingUser));
+        when(passwordHashingService.matches(username, password, "$2a$10$legacyHash")).thenReturn(true);
+        when(passwordHashingService.needsRehash("$2a$10$legacyHash")).thenReturn(true);
+        when(passwordHashingService.encode(username, password)).thenReturn("{bcrypt}$2a$12$newHash");
+        when(jwtService.generateToken(existingUser)).thenReturn("generated.token");
+
+        //Act
+        userService.loginWithPassword(username, password);
+
+        //Assert
+        assertEquals("{bcrypt}$2a$12$newHash", existingUser.getPassword());
+        verify(userRepo, times(1)).save(existingUser);
     }
 
     //TEST-5 FAIL: INCORRECT PASSWORD WHEN LOG IN
@@ -188,7 +236,7 @@ public class UserTest {
         existingUser.setPassword("correctHashedPassword");
 
         when(userRepo.findByUsername(username)).thenReturn(Optional.of(existingUser));
-        when(passwordEncoder.matches(wrongPassword, existingUser.getPassword())).thenReturn(false);
+        when(passwordHashingService.matches(username, wrongPassword, existingUser.getPassword())).thenReturn(false);
 
         //Act & Assert
         RuntimeException exception = assertThrows(RuntimeException.class,
@@ -197,8 +245,30 @@ public class UserTest {
 
         assertEquals("Invalid password", exception.getMessage());
         verify(userRepo, times(1)).findByUsername(username);
-        verify(passwordEncoder, times(1)).matches(wrongPassword, existingUser.getPassword());
-        verify(jwtService, never()).generateToken(username);
+        verify(passwordHashingService, times(1)).matches(username, wrongPassword, existingUser.getPassword());
+        verify(jwtService, never()).generateToken(any(User.class));
+        verify(refreshTokenService, never()).issue(any(User.class));
+        verify(loginThrottle, times(1)).recordFailure(username, null);
+        verify(loginThrottle, never()).recordSuccess(anyString(), any());
+    }
+
+    //TEST-5b FAIL: THROTTLED LOGIN NEVER REACHES THE DATABASE OR BCRYPT
+    @Test
+    @DisplayName("Fail: throttled log in skips password check")
+    void loginThrottled(){
+
+        //Arrange
+        String username = "alice";
+        doThrow(new TooManyRequestsException("Too many login attempts, retry later", 4))
+                .when(loginThrottle).check(username, "10.0.0.1");
+
+        //Act & Assert
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> userService.loginWithPassword(username, "password", "10.0.0.1"));
+
+        assertEquals(4, exception.getRetryAfterSeconds());
+        verify(userRepo, never()).findByUsername(anyString());
+        verify(passwordHashingService, never()).matches(anyString(), anyString(), anyString());
     }
 
     //TEST-6 FAIL: USERNAME NOT FOUND WHEN LOG IN
@@ -220,8 +290,8 @@ public class UserTest {
 
         assertEquals("User not found", exception.getMessage());
         verify(userRepo, times(1)).findByUsername(username);
-        verify(passwordEncoder, never()).matches(anyString(), anyString());
-        verify(jwtService, never()).generateToken(anyString());
+        verify(passwordHashingService, never()).matches(anyString(), anyString(), anyString());
+        verify(jwtService, never()).generateToken(any(User.class));
     }
 
     //TEST-7 SUCCESS: GET USER INFO WITH VALID TOKEN
@@ -238,21 +308,25 @@ public class UserTest {
         double balance = user.getCard().getBalance();
         String validToken = "valid.token";
 
-        when(jwtService.extractUsername(validToken)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
+        //Token issued before identity claims existed
+        when(jwtService.extractIdentity(validToken)).thenReturn(new TokenIdentity(username, null, null));
+        when(userRepo.findUserInfoByUsername(username))
+                .thenReturn(Optional.of(new UserInfoView(username, email, cardId, balance)));
 
         //Act
-        Map<String, Object> info = userService.getUserInfo(validToken);
+        UserInfoView info = userService.getUserInfo(validToken);
 
         //Assert
         assertNotNull(info);
-        assertEquals(username, info.get("username"));
-        assertEquals(email, info.get("email"));
-        assertEquals(cardId, info.get("cardId"));
-        assertEquals(balance, info.get("balance"));
+        assertEquals(username, info.getUsername());
+        assertEquals(email, info.getEmail());
+        assertEquals(cardId, info.getCardId());
+        assertEquals(balance, info.getBalance());
 
-        verify(jwtService, times(1)).extractUsername(validToken);
-        verify(userRepo, times(1)).findByUsername(username);
+        verify(jwtService, times(1)).extractIdentity(validToken);
+        verify(userRepo, times(1)).findUserInfoByUsername(username);
+        verify(userRepo, never()).findByUsername(anyString());
+        verify(userInfoCache, never()).get(anyString(), any());
     }
 
     //TEST-8 FAIL: GET USER INFO WITH INVALID TOKEN
@@ -263,7 +337,7 @@ public class UserTest {
 
         //Arrange
         String invalidToken = "invalid.token";
-        when(jwtService.extractUsername(invalidToken))
+        when(jwtService.extractIdentity(invalidToken))
                 .thenThrow(new RuntimeException("Invalid token"));
 
         //Act & Assert
@@ -273,7 +347,7 @@ public class UserTest {
                 "Expected RuntimeException for invalid token");
 
         assertEquals("Invalid token", exception.getMessage());
-        verify(jwtService, times(1)).extractUsername(invalidToken);
+        verify(jwtService, times(1)).extractIdentity(invalidToken);
         verify(userRepo, never()).findByUsername(anyString());
 
     }
@@ -287,8 +361,8 @@ public class UserTest {
         //Arrange
         String username = "alice";
         String validToken = "valid.token";
-        when(jwtService.extractUsername(validToken)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenThrow(new RuntimeException("User not found"));
+        when(jwtService.extractIdentity(validToken)).thenReturn(new TokenIdentity(username, null, null));
+        when(userRepo.findUserInfoByUsername(username)).thenReturn(Optional.empty());
 
         //Act & Assert
         RuntimeException exception = assertThrows(
@@ -298,8 +372,58 @@ public class UserTest {
         );
 
         assertEquals("User not found", exception.getMessage());
-        verify(jwtService, times(1)).extractUsername(validToken);
-        verify(userRepo, times(1)).findByUsername(username);
+        verify(jwtService, times(1)).extractIdentity(validToken);
+        verify(userRepo, times(1)).findUserInfoByUsername(username);
+    }
+
+    //TEST-9a SUCCESS: GET USER INFO FROM USER ID CLAIM THROUGH THE CACHE
+
+    @Test
+    @DisplayName("Success: get user info from identity claims")
+    void getUserInfoFromIdentityClaims(){
+
+        //Arrange
+        String validToken = "valid.token";
+        UserInfoView view = new UserInfoView("alice", "alice@test.com", "card-1", 7.5);
+
+        when(jwtService.extractIdentity(validToken))
+                .thenReturn(new TokenIdentity("alice", "user-1", "card-1"));
+        when(userInfoCache.get(eq("user-1"), any())).thenAnswer(invocation -> {
+            Function<String, UserInfoView> loader = invocation.getArgument(1);
+            return loader.apply(invocation.getArgument(0));
+        });
+        when(userRepo.findUserInfoById("user-1")).thenReturn(Optional.of(view));
+
+        //Act
+        UserInfoView info = userService.getUserInfo(validToken);
+
+        //Assert
+        assertSame(view, info);
+        verify(userRepo, times(1)).findUserInfoById("user-1");
+        verify(userRepo, never()).findByUsername(anyString());
+        verify(userRepo, never()).findUserInfoByUsername(anyString());
+    }
+
+    //TEST-9b SUCCESS: CACHE HIT SKIPS THE DATABASE
+
+    @Test
+    @DisplayName("Success: cached user info served without a query")
+    void getUserInfoCacheHit(){
+
+        //Arrange
+        String validToken = "valid.token";
+        UserInfoView cached = new UserInfoView("alice", "alice@test.com", "card-1", 7.5);
+
+        when(jwtService.extractIdentity(validToken))
+                .thenReturn(new TokenIdentity("alice", "user-1", "card-1"));
+        when(userInfoCache.get(eq("user-1"), any())).thenReturn(cached);
+
+        //Act
+        UserInfoView info = userService.getUserInfo(validToken);
+
+        //Assert
+        assertSame(cached, info);
+        verifyNoInteractions(userRepo);
     }
 
     //TEST-10 SUCCESS: DEVICE REGISTER
@@ -317,7 +441,7 @@ public class UserTest {
         String username = "alice";
         User user = createUserByUsername(username);
 
-        when(jwtService.extractUsername(validToken)).thenReturn(username);
+        when(jwtService.extractIdentity(validToken)).thenReturn(identityOf(user));
         when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
         when(deviceRepo.findByUser(user)).thenReturn(Optional.empty());
         when(deviceRepo.save(any(Device.class))).thenAnswer(invocation -> {
@@ -334,7 +458,7 @@ public class UserTest {
         assertNotNull(response.getDeviceId());
         assertEquals("Device registered successfully", response.getMessage());
 
-        verify(jwtService, times(1)).extractUsername(validToken);
+        verify(jwtService, times(1)).extractIdentity(validToken);
         verify(userRepo, times(1)).findByUsername(username);
         verify(deviceRepo, times(1)).findByUser(user);
         ArgumentCaptor<Device> deviceCaptor = ArgumentCaptor.forClass(Device.class);
@@ -367,7 +491,7 @@ public class UserTest {
         existingDevice.setUser(user);
         existingDevice.setPublicKey(publicKey);
 
-        when(jwtService.extractUsername(validToken)).thenReturn(username);
+        when(jwtService.extractIdentity(validToken)).thenReturn(identityOf(user));
         when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
         when(deviceRepo.findByUser(user)).thenReturn(Optional.of(existingDevice));
 
@@ -405,7 +529,7 @@ public class UserTest {
         existingDevice.setUser(user);
         existingDevice.setPublicKey(publicKeyOld);
 
-        when(jwtService.extractUsername(validToken)).thenReturn(username);
+        when(jwtService.extractIdentity(validToken)).thenReturn(identityOf(user));
         when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
         when(deviceRepo.findByUser(user)).thenReturn(Optional.of(existingDevice));
         when(deviceRepo.save(any(Device.class))).thenAnswer(invocation -> {
@@ -441,7 +565,7 @@ public class UserTest {
         deviceRegisterRequest.setAlias("alias");
         deviceRegisterRequest.setPublicKey(publicKey);
 
-        when(jwtService.extractUsername(inValidToken))
+        when(jwtService.extractIdentity(inValidToken))
                 .thenThrow(new RuntimeException("Invalid token"));
 
         //Act & Assert
@@ -454,8 +578,40 @@ public class UserTest {
 
     }
 
+    //TEST-14 FAIL: TOKEN CARRIES A CARD THE USER NO LONGER OWNS
+
+    @Test
+    @DisplayName("Fail: register device with a token for a reassigned card")
+    void registerDeviceWithReassignedCard(){
+
+        //Arrange
+        String staleToken = "stale.token";
+        DeviceRegisterRequest deviceRegisterRequest = new DeviceRegisterRequest();
+        deviceRegisterRequest.setAlias("alias");
+        deviceRegisterRequest.setPublicKey("publicKey");
+
+        String username = "alice";
+        User user = createUserByUsername(username);
+
+        when(jwtService.extractIdentity(staleToken))
+                .thenReturn(new TokenIdentity(username, user.getId(), UUID.randomUUID().toString()));
+        when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
+
+        //Act & Assert
+        InvalidTokenException ex = assertThrows(InvalidTokenException.class,
+                () -> userService.registerDevice(staleToken, deviceRegisterRequest));
+
+        assertEquals("Card does not belong to user", ex.getMessage());
+        verifyNoInteractions(deviceRepo);
+    }
+
+    TokenIdentity identityOf(User user){
+        return new TokenIdentity(user.getUsername(), user.getId(), user.getCard().getId());
+    }
+
     User createUserByUsername(String username){
         User user = new User();
+        user.setId(UUID.randomUUID().toString());
         user.setUsername(username);
         user.setPassword("password");
         user.setEmail("email");
@@ -0,0 +1,172 @@
+package net.otgon.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.otgon.backend.dto.WalletEvent;
+import net.otgon.backend.entity.LedgerEntry;
+import net.otgon.backend.exception.ServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Unit tests for Wallet Event Hub")
+@ActiveProfiles("test")
+public class WalletEventHubTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    // Tasks are held until the test runs them, standing in for the dispatch pool
+    private final List<Runnable> pending = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    //TEST-1 EVENTS ARE PUBLISHED ONLY AFTER COMMIT
+    @Test
+    @DisplayName("Ledger event is queued only once the transaction commits")
+    void publishAfterCommit() {
+
+        //Arrange
+        WalletEventHub hub = hub(8);
+        hub.subscribe("card-1", () -> new WalletEvent(1, 10, null));
+        runPending();
+        TransactionSynchronizationManager.initSynchronization();
+
+        //Act
+        hub.publishAfterCommit(entry("card-1", 2));
+        int beforeCommit = pending.size();
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCommit();
+        }
+
+        //Assert
+        assertEquals(0, beforeCommit);
+        assertEquals(1, pending.size());
+    }
+
+    //TEST-2 OTHER CARDS ARE NOT NOTIFIED
+    @Test
+    @DisplayName("Publishing for a card without streams does nothing")
+    void publishOtherCard() {
+
+        //Arrange
+        WalletEventHub hub = hub(8);
+        hub.subscribe("card-1", () -> new WalletEvent(1, 10, null));
+        runPending();
+
+        //Act
+        hub.publish(entry("card-2", 2));
+
+        //Assert
+        assertTrue(pending.isEmpty());
+    }
+
+    //TEST-3 SLOW CONSUMER IS DISCONNECTED INSTEAD OF BUFFERING FOREVER
+    @Test
+    @DisplayName("Queue overflow drops the connection")
+    void slowConsumerDropped() {
+
+        //Arrange: capacity 2, snapshot already queued and never drained
+        WalletEventHub hub = hub(2);
+        hub.subscribe("card-1", () -> new WalletEvent(1, 10, null));
+
+        //Act
+        hub.publish(entry("card-1", 2));
+        hub.publish(entry("card-1", 3));
+
+        //Assert
+        assertEquals(0, hub.connectionCount());
+        assertEquals(1.0, meterRegistry.get("wallet.stream.slow.disconnects").counter().count());
+    }
+
+    //TEST-4 PER-CARD LIMIT
+    @Test
+    @DisplayName("Extra streams for one card are rejected")
+    void perCardLimit() {
+
+        //Arrange
+        WalletEventHub hub = hub(8);
+        hub.subscribe("card-1", () -> new WalletEvent(1, 10, null));
+        hub.subscribe("card-1", () -> new WalletEvent(1, 10, null));
+
+        //Act & Assert
+        assertThrows(ServiceBusyException.class, () -> hub.subscribe("card-1", () -> new WalletEvent(1, 10, null)));
+        assertEquals(2, hub.connectionCount());
+    }
+
+    //TEST-5 A COMMIT RACING THE SNAPSHOT READ IS SHOWN EXACTLY ONCE
+    @Test
+    @DisplayName("Events published while the snapshot is read follow it, minus those it covers")
+    void publishDuringSubscribe() {
+
+        //Arrange
+        WalletEventHub hub = hub(8);
+        int[] queuedDuringRead = new int[1];
+
+        //Act: the stream is registered; seq 2 commits before the snapshot read, seq 3 after it
+        hub.subscribe("card-1", () -> {
+            hub.publish(entry("card-1", 2));
+            hub.publish(entry("card-1", 3));
+            queuedDuringRead[0] = pending.size();
+            return new WalletEvent(2, 8, null);
+        });
+        runPending();
+
+        //Assert: held until the snapshot, then the snapshot and seq 3 only
+        assertEquals(0, queuedDuringRead[0]);
+        assertEquals(2.0, meterRegistry.get("wallet.stream.events").counter().count());
+
+        // Later events flow as usual; a late duplicate of a covered seq does not
+        hub.publish(entry("card-1", 2));
+        hub.publish(entry("card-1", 4));
+        runPending();
+        assertEquals(3.0, meterRegistry.get("wallet.stream.events").counter().count());
+    }
+
+    //TEST-6 A FAILED SNAPSHOT READ DOES NOT LEAVE THE STREAM REGISTERED
+    @Test
+    @DisplayName("Snapshot failure unregisters the stream")
+    void snapshotFailureUnregisters() {
+
+        //Arrange
+        WalletEventHub hub = hub(8);
+
+        //Act & Assert
+        assertThrows(IllegalStateException.class, () -> hub.subscribe("card-1", () -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertEquals(0, hub.connectionCount());
+        hub.publish(entry("card-1", 2));
+        assertTrue(pending.isEmpty());
+    }
+
+    private WalletEventHub hub(int queueCapacity) {
+        return new WalletEventHub(objectMapper, meterRegistry, pending::add, 60_000, queueCapacity, 100, 2);
+    }
+
+    // No servlet response behind these emitters: sends are buffered by the emitter itself
+    private void runPending() {
+        List<Runnable> tasks = new ArrayList<>(pending);
+        pending.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    private LedgerEntry entry(String cardId, long seq) {
+        return new LedgerEntry(cardId, seq, LedgerEntry.DEDUCT, -2, 8, "SUCCESS", "tx-" + seq,
+                LocalDateTime.of(2025, 1, 1, 10, 0));
+    }
+}
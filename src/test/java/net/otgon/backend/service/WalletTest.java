@@ -1,9 +1,12 @@
 package net.otgon.backend.service;
 
+import net.otgon.backend.dto.TokenIdentity;
 import net.otgon.backend.dto.TopUpResponse;
 import net.otgon.backend.entity.Card;
+import net.otgon.backend.entity.LedgerEntry;
 import net.otgon.backend.entity.TopUpTransaction;
 import net.otgon.backend.entity.User;
+import net.otgon.backend.exception.InvalidTokenException;
 import net.otgon.backend.repository.CardRepo;
 import net.otgon.backend.repository.TopUpTransactionRepo;
 import net.otgon.backend.repository.UserRepo;
@@ -37,6 +40,16 @@ public class WalletTest {
     TopUpTransactionRepo topUpTransactionRepo;
     @Mock
     JwtService jwtService;
+    @Mock
+    UserInfoCache userInfoCache;
+    @Mock
+    LedgerService ledgerService;
+    @Mock
+    AccountResolver accountResolver;
+    @Mock
+    WalletEventHub walletEventHub;
+    @Mock
+    CacheInvalidationBus cacheInvalidationBus;
     @InjectMocks
     WalletService walletService;
 
@@ -54,8 +67,9 @@ public class WalletTest {
         double balance = user.getCard().getBalance();
         double newBalance = balance + amount;
 
-        when(jwtService.extractUsername(token)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
+        when(jwtService.extractIdentity(token)).thenReturn(identityOf(user));
+        when(userRepo.findIdByUsername(username)).thenReturn(Optional.of(user.getId()));
+        when(ledgerService.lockCardOf(user.getId())).thenReturn(Optional.of(user.getCard()));
 
         when(cardRepo.save(any(Card.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -72,8 +86,8 @@ public class WalletTest {
         assertEquals(newBalance, response.getNewBalance());
         assertEquals(newBalance, user.getCard().getBalance());
 
-        verify(jwtService, times(1)).extractUsername(token);
-        verify(userRepo, times(1)).findByUsername(username);
+        verify(jwtService, times(1)).extractIdentity(token);
+        verify(userRepo, times(1)).findIdByUsername(username);
         ArgumentCaptor<TopUpTransaction> txnCaptor = ArgumentCaptor.forClass(TopUpTransaction.class);
         verify(topUpTransactionRepo, times(1)).save(txnCaptor.capture());
         TopUpTransaction txn = txnCaptor.getValue();
@@ -81,6 +95,11 @@ public class WalletTest {
         assertEquals(user.getCard(), txn.getCard());
         assertEquals(amount, txn.getAmount());
         assertNotNull(txn.getCreatedAt());
+
+        verify(ledgerService).lockCardOf(user.getId());
+        verify(cacheInvalidationBus).cardChangedAfterCommit(user.getCard().getId(), user.getId());
+        verify(ledgerService).append(user.getCard(), LedgerEntry.TOPUP, amount, "SUCCESS",
+                txn.getId(), txn.getCreatedAt());
     }
 
     //TEST-2 FAIL: INVALID TOKEN
@@ -93,7 +112,7 @@ public class WalletTest {
         String invalidToken = "invalid.token";
         double amount = 10;
 
-        when(jwtService.extractUsername(invalidToken))
+        when(jwtService.extractIdentity(invalidToken))
                 .thenThrow(new RuntimeException("Invalid token"));
 
         //Act & Assert
@@ -103,7 +122,7 @@ public class WalletTest {
                 "Expected Runtime Exception for invalid token");
 
         assertEquals("Invalid token", exception.getMessage());
-        verify(jwtService, times(1)).extractUsername(invalidToken);
+        verify(jwtService, times(1)).extractIdentity(invalidToken);
         verify(cardRepo, never()).save(any(Card.class));
         verify(topUpTransactionRepo, never()).save(any());
 
@@ -176,8 +195,8 @@ public class WalletTest {
         double amount = 10;
         String username = "alice";
 
-        when(jwtService.extractUsername(token)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenReturn(Optional.empty());
+        when(jwtService.extractIdentity(token)).thenReturn(new TokenIdentity(username, null, null));
+        when(userRepo.findIdByUsername(username)).thenReturn(Optional.empty());
 
         //Act & Assert
         ResponseStatusException e = assertThrows(
@@ -199,10 +218,10 @@ public class WalletTest {
         double amount = 10;
         String username = "alice";
         User user = createUserByUsername(username);
-        user.setCard(null);
 
-        when(jwtService.extractUsername(token)).thenReturn(username);
-        when(userRepo.findByUsername(username)).thenReturn(Optional.of(user));
+        when(jwtService.extractIdentity(token)).thenReturn(identityOf(user));
+        when(userRepo.findIdByUsername(username)).thenReturn(Optional.of(user.getId()));
+        when(ledgerService.lockCardOf(user.getId())).thenReturn(Optional.empty());
 
         //Act & Arrange
         ResponseStatusException e = assertThrows(
@@ -216,8 +235,40 @@ public class WalletTest {
         verify(topUpTransactionRepo, never()).save(any());
     }
 
+    //TEST-8 FAIL: TOKEN CARRIES A CARD THE USER NO LONGER OWNS
+    @Test
+    @DisplayName("Fail: top up with a token for a reassigned card")
+    void topupWithReassignedCard(){
+
+        //Arrange
+        String token = "token";
+        double amount = 10;
+        String username = "alice";
+        User user = createUserByUsername(username);
+
+        when(jwtService.extractIdentity(token))
+                .thenReturn(new TokenIdentity(username, user.getId(), UUID.randomUUID().toString()));
+        when(userRepo.findIdByUsername(username)).thenReturn(Optional.of(user.getId()));
+        when(ledgerService.lockCardOf(user.getId())).thenReturn(Optional.of(user.getCard()));
+
+        //Act & Assert
+        InvalidTokenException e = assertThrows(
+                InvalidTokenException.class,
+                () -> walletService.topup(token, amount));
+
+        assertEquals("Card does not belong to user", e.getMessage());
+        assertEquals(10, user.getCard().getBalance());
+        verify(cardRepo, never()).save(any(Card.class));
+        verify(ledgerService, never()).append(any(), any(), anyDouble(), any(), any(), any());
+    }
+
+    TokenIdentity identityOf(User user){
+        return new TokenIdentity(user.getUsername(), user.getId(), user.getCard().getId());
+    }
+
     User createUserByUsername(String username){
         User user = new User();
+        user.setId(UUID.randomUUID().toString());
         user.setUsername(username);
         user.setPassword("password");
         user.setEmail("email");
@@ -0,0 +1,55 @@
+package net.otgon.backend.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Unit tests for UuidV7")
+@ActiveProfiles("test")
+public class UuidV7Test {
+
+    //TEST-1 VERSION, VARIANT AND TIMESTAMP BITS
+    @Test
+    @DisplayName("Layout follows RFC 9562 version 7")
+    void layout() {
+
+        //Arrange
+        long millis = 1_760_000_000_000L;
+
+        //Act
+        UUID uuid = UuidV7.generate(millis);
+
+        //Assert
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertEquals(millis, uuid.getMostSignificantBits() >>> 16);
+    }
+
+    //TEST-2 LATER IDS SORT LATER, AS TEXT AND AS UUID
+    @Test
+    @DisplayName("Ids from later milliseconds sort after earlier ones")
+    void timeOrdered() {
+
+        //Act
+        String earlier = UuidV7.generate(1_760_000_000_000L).toString();
+        String later = UuidV7.generate(1_760_000_000_001L).toString();
+
+        //Assert: PostgreSQL compares uuid bytewise, which matches the text order
+        assertTrue(earlier.compareTo(later) < 0);
+        assertTrue(UuidV7.isUuid(UuidV7.next()));
+    }
+
+    //TEST-3 MALFORMED IDS
+    @Test
+    @DisplayName("Only canonical UUID text is accepted")
+    void isUuid() {
+
+        assertTrue(UuidV7.isUuid(UUID.randomUUID().toString()));
+        assertFalse(UuidV7.isUuid("nonExistentDeviceId"));
+        assertFalse(UuidV7.isUuid(null));
+    }
+}